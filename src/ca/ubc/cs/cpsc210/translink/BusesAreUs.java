@@ -8,7 +8,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
@@ -16,17 +15,17 @@ import android.view.MenuItem;
 import android.widget.TextView;
 import android.widget.Toast;
 import ca.ubc.cs.cpsc210.translink.model.exception.StopException;
-import ca.ubc.cs.cpsc210.translink.parsers.ArrivalsParser;
-import ca.ubc.cs.cpsc210.translink.parsers.exception.ArrivalsDataMissingException;
-import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
 import ca.ubc.cs.cpsc210.translink.model.StopManager;
-import ca.ubc.cs.cpsc210.translink.providers.HttpArrivalDataProvider;
+import ca.ubc.cs.cpsc210.translink.providers.ArrivalCache;
+import ca.ubc.cs.cpsc210.translink.providers.DataCallback;
+import ca.ubc.cs.cpsc210.translink.providers.HttpResult;
 import ca.ubc.cs.cpsc210.translink.ui.LocationListener;
 import ca.ubc.cs.cpsc210.translink.ui.MapDisplayFragment;
 import ca.ubc.cs.cpsc210.translink.ui.StopSelectionListener;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
-import org.json.JSONException;
+
+import java.io.IOException;
 
 /**
  * Main activity
@@ -197,50 +196,64 @@ public class BusesAreUs extends Activity implements LocationListener, StopSelect
     }
 
     /**
-     * Task that will download and parse arrivals data
+     * Task that will download and parse arrivals data, or take them from the arrival cache.
+     * No thread is held while the arrivals are fetched, so the arrivals at several stops can be
+     * requested at once; they are shown on the UI thread as each arrives.
      */
-    private class DownloadArrivalDataTask extends AsyncTask<Stop, Integer, String> {
+    private class DownloadArrivalDataTask implements DataCallback<ArrivalCache.Entry> {
         private ProgressDialog progressDialog;
         private Stop stop;
 
-        @Override
-        protected void onPreExecute() {
+        /**
+         * Start getting the arrivals at a stop
+         *
+         * @param stop  the stop
+         */
+        void execute(Stop stop) {
+            this.stop = stop;
             progressDialog = ProgressDialog.show(BusesAreUs.this, getString(R.string.arrivals_download_title),
                     getString(R.string.arrivals_download_msg), true, false);
+            ArrivalCache.getInstance().getAsync(stop, this);
         }
 
         @Override
-        protected String doInBackground(Stop... stops) {
-            stop = stops[0];
-            DataProvider dataProvider = new HttpArrivalDataProvider(stop);
-            String response = null;
-
-            try {
-                response = dataProvider.dataSourceToString();
-            } catch (Exception e) {
-                Log.d(BusesAreUs.TSA_TAG, e.getMessage(), e);
-                Toast.makeText(getApplicationContext(), "Error downloading Translink data", Toast.LENGTH_LONG).show();
-            }
-
-            return response;
+        public void onData(final ArrivalCache.Entry entry) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    showArrivals(entry);
+                }
+            });
         }
 
         @Override
-        protected void onPostExecute(String response) {
-            if (response == null) {
+        public void onError(final IOException e) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    Log.d(BusesAreUs.TSA_TAG, e.getMessage(), e);
+                    showArrivals(null);
+                }
+            });
+        }
+
+        private void showArrivals(ArrivalCache.Entry entry) {
+            HttpResult result = entry == null ? null : entry.getResult();
+            if (result == null) {
                 Toast.makeText(getApplicationContext(), R.string.api_network, Toast.LENGTH_LONG).show();
-            } else if (response.equals("Error")) {
-                Log.d(BusesAreUs.TSA_TAG, "No arrivals data");
+            } else if (result.getStatus() == HttpResult.Status.TIMEOUT || result.getStatus() == HttpResult.Status.NETWORK_ERROR) {
+                Log.d(BusesAreUs.TSA_TAG, result.toString(), result.getError());
+                Toast.makeText(getApplicationContext(), R.string.api_network, Toast.LENGTH_LONG).show();
+            } else if (result.getStatus() == HttpResult.Status.HTTP_ERROR) {
+                Log.d(BusesAreUs.TSA_TAG, "No arrivals data: " + result);
                 Toast.makeText(getApplicationContext(), "No arrivals information available", Toast.LENGTH_LONG).show();
+            } else if (entry.getArrivals() == null) {
+                Log.d(BusesAreUs.TSA_TAG, "Arrivals data could not be parsed");
+                Toast.makeText(getApplicationContext(), R.string.api_json, Toast.LENGTH_LONG).show();
             } else {
-                try {
-                    stop.clearArrivals();
-                    ArrivalsParser.parseArrivals(stop, response);
-                    startArrivalActivity(stop);
-                } catch (JSONException | ArrivalsDataMissingException e) {
-                    Log.d(BusesAreUs.TSA_TAG, e.getMessage(), e);
-                    Toast.makeText(getApplicationContext(), R.string.api_json, Toast.LENGTH_LONG).show();
-                }
+                stop.clearArrivals();
+                stop.addArrivals(entry.getArrivals());
+                startArrivalActivity(stop);
             }
 
             progressDialog.dismiss();
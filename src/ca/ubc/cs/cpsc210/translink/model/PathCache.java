@@ -0,0 +1,132 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the paths of route patterns that are decoded on demand from a PathSource.
+ * Paths are evicted in least recently used order once the total number of coordinates
+ * held exceeds the coordinate budget.
+ *
+ * Singleton pattern applied to ensure only a single instance of this class that
+ * is globally accessible throughout application.
+ */
+public class PathCache {
+    public static final int DEFAULT_COORDINATE_BUDGET = 100000;
+    private static PathCache instance;
+
+    private Map<PathSource, double[]> paths;
+    private int coordinateBudget;
+    private int coordinates;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty cache with the default coordinate budget
+     */
+    private PathCache() {
+        paths = new LinkedHashMap<>(16, 0.75f, true);
+        coordinateBudget = DEFAULT_COORDINATE_BUDGET;
+    }
+
+    /**
+     * Gets one and only instance of this class
+     *
+     * @return  instance of class
+     */
+    public static synchronized PathCache getInstance() {
+        if (instance == null) {
+            instance = new PathCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Get the path decoded from the given source, decoding it if it is not in the cache
+     *
+     * @param source    the source of the path
+     * @return          the path, packed as interleaved latitudes and longitudes
+     */
+    public synchronized double[] get(PathSource source) {
+        double[] path = paths.get(source);
+        if (path != null) {
+            hits++;
+            return path;
+        }
+
+        misses++;
+        path = source.decode();
+        paths.put(source, path);
+        coordinates += path.length / 2;
+        evict();
+        return path;
+    }
+
+    /**
+     * Remove the path decoded from the given source, if it is in the cache
+     *
+     * @param source    the source of the path
+     */
+    public synchronized void remove(PathSource source) {
+        double[] path = paths.remove(source);
+        if (path != null) {
+            coordinates -= path.length / 2;
+        }
+    }
+
+    /**
+     * Set the maximum number of coordinates held, evicting paths if necessary.  The most
+     * recently used path is always kept, even if it alone exceeds the budget.
+     *
+     * @param coordinateBudget  the maximum number of coordinates
+     */
+    public synchronized void setCoordinateBudget(int coordinateBudget) {
+        this.coordinateBudget = coordinateBudget;
+        evict();
+    }
+
+    public synchronized int getCoordinateBudget() {
+        return coordinateBudget;
+    }
+
+    /**
+     * Get the number of coordinates currently held
+     */
+    public synchronized int getNumCoordinates() {
+        return coordinates;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Remove all paths from the cache and reset the counters
+     */
+    public synchronized void clear() {
+        paths.clear();
+        coordinates = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    private void evict() {
+        Iterator<double[]> it = paths.values().iterator();
+        while (coordinates > coordinateBudget && paths.size() > 1) {
+            coordinates -= it.next().length / 2;
+            it.remove();
+            evictions++;
+        }
+    }
+}
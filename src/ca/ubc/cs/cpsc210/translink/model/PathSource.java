@@ -0,0 +1,23 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+/**
+ * A source of the coordinates of a route pattern, decoded only when the path is first needed.
+ * Decoded paths are kept in the PathCache.
+ */
+public interface PathSource {
+
+    /**
+     * Decode the path
+     *
+     * @return  the coordinates making up the path, packed as interleaved latitudes and
+     *          longitudes in an array of exactly twice the number of points
+     */
+    double[] decode();
+
+    /**
+     * Get the number of points in the path, without decoding it
+     *
+     * @return  the number of points in the path returned by decode
+     */
+    int getNumPoints();
+}
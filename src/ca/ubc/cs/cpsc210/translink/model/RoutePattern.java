@@ -1,14 +1,23 @@
 package ca.ubc.cs.cpsc210.translink.model;
 
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.MicroDegrees;
+import ca.ubc.cs.cpsc210.translink.util.PathIndex;
+import ca.ubc.cs.cpsc210.translink.util.PathPyramid;
+import ca.ubc.cs.cpsc210.translink.util.SegmentRanges;
+import ca.ubc.cs.cpsc210.translink.util.VisibleRunBuilder;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.List;
 
 /**
  * A description of one pattern of a route
  * Each pattern has a name, destination, direction, list of points (of class LatLon), and Route
+ *
+ * The points are stored packed into a single array of interleaved latitudes and longitudes,
+ * [lat0, lon0, lat1, lon1, ...], rather than as LatLon objects.  Once quantized, the array
+ * holds microdegrees in ints rather than degrees in doubles, halving its size; the path in
+ * degrees is then held in the PathCache while it is in use, like a path decoded on first use.
  */
 
 public class RoutePattern {
@@ -16,7 +25,20 @@ public class RoutePattern {
     private String name;
     private String destination;
     private String direction;
-    private List<LatLon> paths;
+    private static final double[] NO_COORDINATES = new double[0];
+
+    private double[] coords;
+    // the path in microdegrees, used in place of coords once quantized
+    private int[] coordsE6;
+    // the source of the path in degrees, decoded from coordsE6 into the PathCache
+    private PathSource quantizedSource;
+    private int numPoints;
+    private PathSource pathSource;
+    // built when first needed, and dropped whenever the path changes
+    private PathIndex pathIndex;
+    // built when first drawn at a low zoom level, possibly on another thread, and dropped
+    // whenever the path changes
+    private volatile PathPyramid pyramid;
 
     /**
      * Construct a new RoutePattern with the given information
@@ -31,7 +53,8 @@ public class RoutePattern {
         this.name = name;
         this.destination = destination;
         this.direction = direction;
-        paths = new ArrayList<>();
+        coords = NO_COORDINATES;
+        numPoints = 0;
     }
 
     /**
@@ -91,17 +114,245 @@ public class RoutePattern {
      * @param path      the path
      */
     public void setPath(List<LatLon> path) {
-        paths.addAll(path);
+        double[] packed = new double[path.size() * 2];
+        int i = 0;
+        for (LatLon point : path) {
+            packed[i++] = point.getLatitude();
+            packed[i++] = point.getLongitude();
+        }
+        setPath(packed, path.size());
+    }
+
+    /**
+     * Add points to the pattern path
+     *
+     * @param coordinates   the points as interleaved latitudes and longitudes
+     * @param count         the number of points in coordinates to add
+     */
+    public void setPath(double[] coordinates, int count) {
+        pathIndex = null;
+        pyramid = null;
+        if (pathSource != null) {
+            double[] decoded = PathCache.getInstance().get(pathSource);
+            PathCache.getInstance().remove(pathSource);
+            pathSource = null;
+            coords = decoded;
+        }
+        if (coordsE6 != null) {
+            coords = MicroDegrees.toDegrees(coordsE6);
+            dropQuantized();
+        }
+        if (numPoints == 0 && coordinates.length == count * 2) {
+            coords = coordinates;
+        } else {
+            double[] bigger = new double[(numPoints + count) * 2];
+            System.arraycopy(coords, 0, bigger, 0, numPoints * 2);
+            System.arraycopy(coordinates, 0, bigger, numPoints * 2, count * 2);
+            coords = bigger;
+        }
+        numPoints += count;
+    }
+
+    /**
+     * Set the source from which the pattern path is decoded when it is first needed, replacing
+     * any path already set.  The decoded path is held in the PathCache rather than in this pattern.
+     *
+     * @param source    the source of the path
+     */
+    public void setPathSource(PathSource source) {
+        pathIndex = null;
+        pyramid = null;
+        if (pathSource != null) {
+            PathCache.getInstance().remove(pathSource);
+        }
+        coords = NO_COORDINATES;
+        dropQuantized();
+        numPoints = source.getNumPoints();
+        pathSource = source;
+    }
+
+    /**
+     * Return the points of this pattern packed as interleaved latitudes and longitudes,
+     * [lat0, lon0, lat1, lon1, ...].  The array holds exactly 2 * getNumPoints() values and
+     * must not be modified.  This is the fastest way to walk the path.
+     *
+     * @return      the packed coordinates
+     */
+    public double[] getCoordinates() {
+        if (pathSource != null) {
+            return PathCache.getInstance().get(pathSource);
+        }
+        if (quantizedSource != null) {
+            return PathCache.getInstance().get(quantizedSource);
+        }
+        return coords;
+    }
+
+    /**
+     * Hold the path in microdegrees from now on, rounding each coordinate to the nearest
+     * microdegree.  A path decoded on first use from a PathSource is not quantized: it is held in
+     * degrees only while it is in the PathCache, and otherwise stays in its source, so there is
+     * nothing to halve.
+     */
+    public void quantize() {
+        if (pathSource == null && coordsE6 == null) {
+            pathIndex = null;
+            final int[] quantized = MicroDegrees.fromDegrees(coords);
+            coordsE6 = quantized;
+            coords = NO_COORDINATES;
+            quantizedSource = new PathSource() {
+                @Override
+                public double[] decode() {
+                    return MicroDegrees.toDegrees(quantized);
+                }
+
+                @Override
+                public int getNumPoints() {
+                    return quantized.length / 2;
+                }
+            };
+        }
+    }
+
+    // stop holding the path in microdegrees, along with its path in degrees in the PathCache
+    private void dropQuantized() {
+        if (quantizedSource != null) {
+            PathCache.getInstance().remove(quantizedSource);
+            quantizedSource = null;
+        }
+        coordsE6 = null;
+    }
+
+    /**
+     * Get the number of points in the pattern path.  A path decoded on first use is not decoded
+     * to count its points.
+     *
+     * @return      the number of points
+     */
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    /**
+     * Get the latitude of the point at the given index of the path.  A path decoded on first use
+     * is looked up in the PathCache on each call, so to walk the path take getCoordinates() once.
+     *
+     * @param i     the index of the point
+     * @return      the latitude
+     */
+    public double getLatitude(int i) {
+        if (coordsE6 != null) {
+            return MicroDegrees.toDegrees(coordsE6[2 * i]);
+        }
+        return getCoordinates()[2 * i];
+    }
+
+    /**
+     * Get the longitude of the point at the given index of the path.  A path decoded on first use
+     * is looked up in the PathCache on each call, so to walk the path take getCoordinates() once.
+     *
+     * @param i     the index of the point
+     * @return      the longitude
+     */
+    public double getLongitude(int i) {
+        if (coordsE6 != null) {
+            return MicroDegrees.toDegrees(coordsE6[2 * i + 1]);
+        }
+        return getCoordinates()[2 * i + 1];
+    }
+
+    /**
+     * Get the index of the segments of the path, with the bounding box of the whole path.
+     * The index is built when first needed and kept until the path changes.
+     *
+     * @return      the index of the path
+     */
+    public PathIndex getPathIndex() {
+        if (pathIndex == null) {
+            pathIndex = new PathIndex(getCoordinates());
+        }
+        return pathIndex;
+    }
+
+    /**
+     * Get the simplified versions of the path drawn at low zoom levels, building them the first
+     * time they are needed after the path is set.  Building them decodes a path read lazily.
+     *
+     * @return      the simplified versions of the path
+     */
+    public PathPyramid getPyramid() {
+        PathPyramid levels = pyramid;
+        if (levels == null) {
+            levels = new PathPyramid(getCoordinates());
+            pyramid = levels;
+        }
+        return levels;
+    }
+
+    /**
+     * Add the runs of the path to draw at a zoom level that are visible in a rectangle: runs of
+     * the simplified version of the path for the zoom level, or of the full path above the
+     * simplified levels.  The points and index drawn are taken from the same version of the path.
+     *
+     * @param zoom      the zoom level of the map
+     * @param runs      the builder to which the visible runs are added
+     * @param north     latitude of the north edge of the rectangle
+     * @param west      longitude of the west edge of the rectangle
+     * @param south     latitude of the south edge of the rectangle
+     * @param east      longitude of the east edge of the rectangle
+     */
+    public void addVisibleRuns(int zoom, VisibleRunBuilder runs, double north, double west, double south, double east) {
+        if (zoom <= PathPyramid.MAX_ZOOM) {
+            PathPyramid levels = getPyramid();
+            runs.addVisibleRuns(levels.getCoordinates(zoom), levels.getPathIndex(zoom), north, west, south, east);
+        } else {
+            runs.addVisibleRuns(getCoordinates(), getPathIndex(), north, west, south, east);
+        }
+    }
+
+    /**
+     * Find the segments of the path that intersect a rectangle, where segment i joins point i
+     * to point i + 1.  A pattern whose bounding box misses the rectangle is rejected without
+     * looking at its path.
+     *
+     * @param north     latitude of the north edge of the rectangle
+     * @param west      longitude of the west edge of the rectangle
+     * @param south     latitude of the south edge of the rectangle
+     * @param east      longitude of the east edge of the rectangle
+     * @param result    the ranges of segments that intersect the rectangle, in order along the
+     *                  path, replacing its contents
+     */
+    public void findVisibleSegments(double north, double west, double south, double east, SegmentRanges result) {
+        PathIndex index = getPathIndex();
+        if (index.boundsIntersect(north, west, south, east)) {
+            index.findSegments(getCoordinates(), north, west, south, east, result);
+        } else {
+            result.clear();
+        }
     }
 
     /**
-     * Return the list of coordinates making up this pattern
+     * Return the list of coordinates making up this pattern.  The list is a read-only view of
+     * the packed coordinates, creating a LatLon for each point as it is accessed.
      *
      * @return      the list of coordinates
      */
     public List<LatLon> getPath() {
+        final double[] packed = getCoordinates();
+        return new AbstractList<LatLon>() {
+            @Override
+            public LatLon get(int i) {
+                if (i < 0 || i >= size()) {
+                    throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+                }
+                return new LatLon(packed[2 * i], packed[2 * i + 1]);
+            }
 
-        return Collections.unmodifiableList(paths);
+            @Override
+            public int size() {
+                return packed.length / 2;
+            }
+        };
     }
 
     /**
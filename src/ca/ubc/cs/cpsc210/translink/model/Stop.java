@@ -1,9 +1,14 @@
 package ca.ubc.cs.cpsc210.translink.model;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.MicroDegrees;
+import ca.ubc.cs.cpsc210.translink.util.WebMercator;
 import java.util.*;
 /**
  * Represents a bus stop with an number, name, location (lat/lon)
  * set of routes which stop at this stop and a list of arrivals.
+ *
+ * Once quantized, the location is held in microdegrees rather than as a LatLon.
+ * The location is also projected onto Web Mercator world coordinates whenever it is set.
  */
 public class Stop implements Iterable<Arrival> {
     private List<Arrival> arrivals;
@@ -11,6 +16,13 @@ public class Stop implements Iterable<Arrival> {
     private int number;
     private String name;
     private LatLon locn;
+    // location in microdegrees, used when locn is null and the stop is quantized
+    private boolean quantized;
+    private int latE6;
+    private int lonE6;
+    // location in Web Mercator world coordinates
+    private int mercatorX;
+    private int mercatorY;
     /**
      * Constructs a stop with given number, name and location.
      * Set of routes and list of arrivals are empty.
@@ -25,6 +37,7 @@ public class Stop implements Iterable<Arrival> {
         this.locn = locn;
         this.routes = new HashSet<>();
         this.arrivals = new ArrayList<>();
+        project();
     }
     /**
      * getter for name
@@ -34,12 +47,76 @@ public class Stop implements Iterable<Arrival> {
         return this.name;
     }
     /**
-     * getter for locn
-     * @return      the location
+     * getter for locn.  Once quantized, the LatLon is created again on the first call and then
+     * kept, so code that reads many locations should use getLatitude and getLongitude, or their
+     * microdegree forms.
+     * @return      the location, or null if the stop has none
      */
     public LatLon getLocn() {
+        if (locn == null && quantized) {
+            locn = new LatLon(MicroDegrees.toDegrees(latE6), MicroDegrees.toDegrees(lonE6));
+        }
         return this.locn;
     }
+    /**
+     * getter for latitude of location, without creating a LatLon
+     * @return      the latitude
+     */
+    public double getLatitude() {
+        return locn == null ? MicroDegrees.toDegrees(latE6) : locn.getLatitude();
+    }
+    /**
+     * getter for longitude of location, without creating a LatLon
+     * @return      the longitude
+     */
+    public double getLongitude() {
+        return locn == null ? MicroDegrees.toDegrees(lonE6) : locn.getLongitude();
+    }
+    /**
+     * getter for latitude of location in microdegrees
+     * @return      the latitude in microdegrees
+     */
+    public int getLatitudeE6() {
+        return locn == null ? latE6 : MicroDegrees.fromDegrees(locn.getLatitude());
+    }
+    /**
+     * getter for longitude of location in microdegrees
+     * @return      the longitude in microdegrees
+     */
+    public int getLongitudeE6() {
+        return locn == null ? lonE6 : MicroDegrees.fromDegrees(locn.getLongitude());
+    }
+    /**
+     * getter for x coordinate of location in Web Mercator world coordinates
+     * @return      the x coordinate
+     */
+    public int getMercatorX() {
+        return mercatorX;
+    }
+    /**
+     * getter for y coordinate of location in Web Mercator world coordinates
+     * @return      the y coordinate
+     */
+    public int getMercatorY() {
+        return mercatorY;
+    }
+    /**
+     * Hold the location in microdegrees from now on, rounding it to the nearest microdegree.
+     * A stop without a location is left as it is.
+     */
+    public void quantize() {
+        if (locn != null) {
+            latE6 = MicroDegrees.fromDegrees(locn.getLatitude());
+            lonE6 = MicroDegrees.fromDegrees(locn.getLongitude());
+            quantized = true;
+            locn = null;
+            project();
+        }
+    }
+    private void project() {
+        mercatorX = WebMercator.lonToX(getLongitude());
+        mercatorY = WebMercator.latToY(getLatitude());
+    }
     /**
      * getter for number
      * @return      the number
@@ -92,6 +169,19 @@ public class Stop implements Iterable<Arrival> {
         this.arrivals.add(arrival);
         Collections.sort(arrivals);
     }
+    /**
+     * Add many bus arrivals at this stop, sorting the arrivals only once.
+     * Arrivals are to be sorted in order by arrival time.  Sorting is fastest when the given
+     * arrivals are made up of runs that are already in order, such as the arrivals of each route.
+     * The stop ends with the arrivals in the same order as adding each with addArrival, including
+     * arrivals at the same time, which keep the order in which they were given.
+     *
+     * @param arrivals  the bus arrivals to add to stop
+     */
+    public void addArrivals(Collection<Arrival> arrivals) {
+        this.arrivals.addAll(arrivals);
+        Collections.sort(this.arrivals);
+    }
     /**
      * Remove all arrivals from this stop
      */
@@ -136,7 +226,12 @@ public class Stop implements Iterable<Arrival> {
      * @param locn      the new location
      */
     public void setLocn(LatLon locn) {
+        int oldLatE6 = getLatitudeE6();
+        int oldLonE6 = getLongitudeE6();
         this.locn = locn;
+        quantized = false;
+        project();
+        StopManager.getInstance().stopMoved(this, oldLatE6, oldLonE6);
     }
 
     public List<Arrival> getArrivals() {
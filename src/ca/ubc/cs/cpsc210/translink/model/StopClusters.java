@@ -0,0 +1,242 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.IntList;
+import ca.ubc.cs.cpsc210.translink.util.PointIndex;
+import ca.ubc.cs.cpsc210.translink.util.WebMercator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The stops grouped into clusters for each zoom level of the map, computed once for all stops.
+ *
+ * Each level is built from the level above it, starting from the individual stops above
+ * MAX_ZOOM: taking each point of the level above in turn, the points not yet taken within
+ * getRadius(zoom) screen pixels of it are merged with it into a cluster, at their centre weighted
+ * by the number of stops in each.  Distances are measured in the Web Mercator world coordinates
+ * of the stops, projected when their locations are set, as on the map.  Stops with no valid
+ * location are left out.
+ *
+ * Each level is held in arrays of world coordinates, sizes and stops, laid out as a k-d tree
+ * by PointIndex, so that the clusters in the visible area are found without looking at every
+ * cluster.  The clusters of a level are identified by their index in the level.
+ */
+public class StopClusters {
+    public static final int MAX_ZOOM = 17;
+
+    private final Stop[] stops;
+    private final Level[] levels = new Level[MAX_ZOOM + 2];
+
+    // the clusters of one zoom level; a cluster of a single stop holds the index of the stop
+    private static class Level {
+        int[] xs;
+        int[] ys;
+        int[] sizes;
+        int[] stopIndexes;
+        int size;
+    }
+
+    /**
+     * Cluster the given stops at every zoom level
+     *
+     * @param all   the stops to cluster
+     */
+    StopClusters(Iterable<Stop> all) {
+        List<Stop> placed = new ArrayList<>();
+        for (Stop stop : all) {
+            if (WebMercator.canProject(stop.getLatitude(), stop.getLongitude())) {
+                placed.add(stop);
+            }
+        }
+        // the order in which points are taken decides the clusters, so keep it independent of the stop map
+        Collections.sort(placed, new Comparator<Stop>() {
+            @Override
+            public int compare(Stop a, Stop b) {
+                return a.getNumber() < b.getNumber() ? -1 : (a.getNumber() == b.getNumber() ? 0 : 1);
+            }
+        });
+        stops = placed.toArray(new Stop[placed.size()]);
+
+        Level base = new Level();
+        base.size = stops.length;
+        base.xs = new int[base.size];
+        base.ys = new int[base.size];
+        base.sizes = new int[base.size];
+        base.stopIndexes = new int[base.size];
+        for (int i = 0; i < base.size; i++) {
+            base.xs[i] = stops[i].getMercatorX();
+            base.ys[i] = stops[i].getMercatorY();
+            base.sizes[i] = 1;
+            base.stopIndexes[i] = i;
+        }
+        levels[MAX_ZOOM + 1] = index(base);
+
+        IntList near = new IntList();
+        for (int zoom = MAX_ZOOM; zoom >= 0; zoom--) {
+            long radius = Math.min((long) getRadius(zoom) * WebMercator.pixelSize(zoom), WebMercator.WORLD_SIZE);
+            levels[zoom] = index(cluster(levels[zoom + 1], radius, near));
+        }
+    }
+
+    /**
+     * Get the radius within which points are merged into a cluster at a zoom level
+     *
+     * @param zoom      the zoom level
+     * @return          the radius in screen pixels
+     */
+    public static int getRadius(int zoom) {
+        return 1000 / Math.max(zoom, 1);
+    }
+
+    /**
+     * Find the clusters at a zoom level inside of, or on the boundary of, a rectangle.  Above
+     * MAX_ZOOM, each cluster is a single stop.
+     *
+     * @param zoom      the zoom level
+     * @param north     latitude of the north edge of the rectangle
+     * @param west      longitude of the west edge of the rectangle
+     * @param south     latitude of the south edge of the rectangle
+     * @param east      longitude of the east edge of the rectangle
+     * @param result    the indexes of the clusters found, in no particular order, replacing its contents
+     */
+    public void find(int zoom, double north, double west, double south, double east, IntList result) {
+        find(zoom, WebMercator.lonToX(west), WebMercator.latToY(north), WebMercator.lonToX(east),
+                WebMercator.latToY(south), result);
+    }
+
+    /**
+     * Find the clusters at a zoom level inside of, or on the boundary of, a rectangle of Web
+     * Mercator world coordinates.  Above MAX_ZOOM, each cluster is a single stop.
+     *
+     * @param zoom      the zoom level
+     * @param minX      the west edge of the rectangle
+     * @param minY      the north edge of the rectangle
+     * @param maxX      the east edge of the rectangle
+     * @param maxY      the south edge of the rectangle
+     * @param result    the indexes of the clusters found, in no particular order, replacing its contents
+     */
+    public void find(int zoom, long minX, long minY, long maxX, long maxY, IntList result) {
+        Level level = level(zoom);
+        PointIndex.range(level.xs, level.ys, level.size, minX, minY, maxX, maxY, result);
+    }
+
+    /**
+     * @param zoom  the zoom level
+     * @return      the number of clusters at the zoom level
+     */
+    public int getNumClusters(int zoom) {
+        return level(zoom).size;
+    }
+
+    /**
+     * @param zoom  the zoom level
+     * @param i     the index of a cluster at the zoom level
+     * @return      the latitude of the centre of the cluster
+     */
+    public double getLatitude(int zoom, int i) {
+        return WebMercator.yToLat(level(zoom).ys[i]);
+    }
+
+    /**
+     * @param zoom  the zoom level
+     * @param i     the index of a cluster at the zoom level
+     * @return      the longitude of the centre of the cluster
+     */
+    public double getLongitude(int zoom, int i) {
+        return WebMercator.xToLon(level(zoom).xs[i]);
+    }
+
+    /**
+     * @param zoom  the zoom level
+     * @param i     the index of a cluster at the zoom level
+     * @return      the number of stops in the cluster
+     */
+    public int getSize(int zoom, int i) {
+        return level(zoom).sizes[i];
+    }
+
+    /**
+     * @param zoom  the zoom level
+     * @param i     the index of a cluster at the zoom level
+     * @return      the stop making up the cluster, or null if there is more than one stop in it
+     */
+    public Stop getStop(int zoom, int i) {
+        Level level = level(zoom);
+        return level.stopIndexes[i] < 0 ? null : stops[level.stopIndexes[i]];
+    }
+
+    private Level level(int zoom) {
+        return levels[Math.max(0, Math.min(zoom, MAX_ZOOM + 1))];
+    }
+
+    // merge the points of a level within radius of each other into the clusters of the level below
+    private static Level cluster(Level above, long radius, IntList near) {
+        Level below = new Level();
+        below.xs = new int[above.size];
+        below.ys = new int[above.size];
+        below.sizes = new int[above.size];
+        below.stopIndexes = new int[above.size];
+        boolean[] taken = new boolean[above.size];
+
+        for (int i = 0; i < above.size; i++) {
+            if (taken[i]) {
+                continue;
+            }
+            taken[i] = true;
+            long x = (long) above.xs[i] * above.sizes[i];
+            long y = (long) above.ys[i] * above.sizes[i];
+            int size = above.sizes[i];
+
+            PointIndex.within(above.xs, above.ys, above.size, above.xs[i], above.ys[i], radius, near);
+            for (int j = 0; j < near.size(); j++) {
+                int k = near.get(j);
+                if (!taken[k]) {
+                    taken[k] = true;
+                    x += (long) above.xs[k] * above.sizes[k];
+                    y += (long) above.ys[k] * above.sizes[k];
+                    size += above.sizes[k];
+                }
+            }
+
+            int c = below.size++;
+            if (size == above.sizes[i]) {
+                below.xs[c] = above.xs[i];
+                below.ys[c] = above.ys[i];
+                below.stopIndexes[c] = above.stopIndexes[i];
+            } else {
+                below.xs[c] = (int) ((x + size / 2) / size);
+                below.ys[c] = (int) ((y + size / 2) / size);
+                below.stopIndexes[c] = -1;
+            }
+            below.sizes[c] = size;
+        }
+        return below;
+    }
+
+    // lay out a level as a k-d tree, trimming its arrays to its size
+    private static Level index(Level level) {
+        int n = level.size;
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        int[] xs = Arrays.copyOf(level.xs, n);
+        int[] ys = Arrays.copyOf(level.ys, n);
+        PointIndex.sort(xs, ys, ids, n);
+
+        Level indexed = new Level();
+        indexed.size = n;
+        indexed.xs = xs;
+        indexed.ys = ys;
+        indexed.sizes = new int[n];
+        indexed.stopIndexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            indexed.sizes[i] = level.sizes[ids[i]];
+            indexed.stopIndexes[i] = level.stopIndexes[ids[i]];
+        }
+        return indexed;
+    }
+}
@@ -0,0 +1,352 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.MicroDegrees;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid of stops, indexed by location, used by the StopManager to find stops near
+ * a point without looking at every stop.
+ *
+ * Each cell of the grid is CELL_SIZE microdegrees square and lists the stops whose location, in
+ * microdegrees, falls inside it.  Only occupied cells are held.  A stop far from the equator or
+ * near the antimeridian, where the grid does not give useful bounds on distance, is instead held
+ * in a list of outliers that is always searched in full.
+ */
+class StopGrid {
+    // about 550m of latitude and 360m of longitude at Vancouver
+    static final int CELL_SIZE = 5000;
+    private static final int MAX_LATITUDE = 80 * 1000000;
+    private static final int MAX_LONGITUDE = 170 * 1000000;
+    private static final double EARTH_RADIUS = 6371000;
+    // allowance for rounding in the distance calculations
+    private static final double TOLERANCE = 1e-3;
+
+    private Map<Long, List<Stop>> cells;
+    private List<Stop> outliers;
+    private Found found;
+    // extents of the cells that have been occupied since the grid was last cleared
+    private int minRow, maxRow, minCol, maxCol;
+
+    StopGrid() {
+        cells = new HashMap<>();
+        outliers = new ArrayList<>();
+        found = new Found();
+        clear();
+    }
+
+    /**
+     * Add stop to the grid at its current location
+     */
+    synchronized void add(Stop stop) {
+        int latE6 = stop.getLatitudeE6();
+        int lonE6 = stop.getLongitudeE6();
+        if (isOutlier(latE6, lonE6)) {
+            outliers.add(stop);
+            return;
+        }
+        int row = cellOf(latE6);
+        int col = cellOf(lonE6);
+        Long key = key(row, col);
+        List<Stop> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(4);
+            cells.put(key, cell);
+        }
+        cell.add(stop);
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+    }
+
+    /**
+     * Remove stop from the grid, where it was added at the given location in microdegrees
+     */
+    synchronized void remove(Stop stop, int latE6, int lonE6) {
+        if (isOutlier(latE6, lonE6)) {
+            outliers.remove(stop);
+            return;
+        }
+        Long key = key(cellOf(latE6), cellOf(lonE6));
+        List<Stop> cell = cells.get(key);
+        if (cell != null && cell.remove(stop) && cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    /**
+     * Remove all stops from the grid
+     */
+    synchronized void clear() {
+        cells.clear();
+        outliers.clear();
+        minRow = Integer.MAX_VALUE;
+        maxRow = Integer.MIN_VALUE;
+        minCol = Integer.MAX_VALUE;
+        maxCol = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Find the stop nearest to the given point that is less than radius metres from it.  Of stops
+     * at the same distance, the one with the lowest number is chosen.
+     *
+     * @param lat       latitude of the point
+     * @param lon       longitude of the point
+     * @param radius    distance in metres within which the stop must be found
+     * @return          the nearest stop, or null if there is no stop within radius metres
+     */
+    synchronized Stop findNearest(double lat, double lon, double radius) {
+        search(lat, lon, radius, 1);
+        Stop nearest = found.size == 0 ? null : found.stops[0];
+        found.clearStops();
+        return nearest;
+    }
+
+    /**
+     * Find up to count stops that are less than radius metres from the given point, nearest first.
+     * Of stops at the same distance, the one with the lowest number comes first.
+     *
+     * @param lat       latitude of the point
+     * @param lon       longitude of the point
+     * @param radius    distance in metres within which stops must be found
+     * @param count     the maximum number of stops to find
+     * @param result    the list to which the stops are added, after it is cleared
+     */
+    synchronized void find(double lat, double lon, double radius, int count, List<Stop> result) {
+        result.clear();
+        if (count <= 0) {
+            return;
+        }
+        search(lat, lon, radius, count);
+        for (int i = 0; i < found.size; i++) {
+            result.add(found.stops[i]);
+        }
+        found.clearStops();
+    }
+
+    /**
+     * Search for the stops to be found into the field found.
+     *
+     * Cells are searched in rings of increasing distance from the cell holding the point.  Before
+     * each ring is searched, a lower bound on the distance to any stop in it is computed; the search
+     * ends as soon as that bound is no closer than the farthest stop that can still be found.
+     */
+    private void search(double lat, double lon, double radius, int count) {
+        found.start(lat, lon, radius, count);
+        for (Stop stop : outliers) {
+            found.offer(stop);
+        }
+        if (cells.isEmpty() || Double.isNaN(lat) || Double.isNaN(lon)) {
+            found.finish();
+            return;
+        }
+
+        int row = cellOf(MicroDegrees.fromDegrees(Math.max(-90, Math.min(90, lat))));
+        int col = cellOf(MicroDegrees.fromDegrees(Math.max(-180, Math.min(180, lon))));
+        for (int k = 0; ; k++) {
+            if (k > 0 && ringBound(lat, lon, row, col, k) >= found.limit()) {
+                break;
+            }
+            // rows along the top and bottom of the ring, then the columns down each side between them
+            for (int r = row - k; r <= row + k; r += Math.max(1, 2 * k)) {
+                if (r >= minRow && r <= maxRow) {
+                    for (int c = Math.max(col - k, minCol); c <= Math.min(col + k, maxCol); c++) {
+                        offerCell(r, c);
+                    }
+                }
+            }
+            for (int c = col - k; k > 0 && c <= col + k; c += 2 * k) {
+                if (c >= minCol && c <= maxCol) {
+                    for (int r = Math.max(row - k + 1, minRow); r <= Math.min(row + k - 1, maxRow); r++) {
+                        offerCell(r, c);
+                    }
+                }
+            }
+        }
+        found.finish();
+    }
+
+    private void offerCell(int row, int col) {
+        List<Stop> cell = cells.get(key(row, col));
+        if (cell != null) {
+            for (Stop stop : cell) {
+                found.offer(stop);
+            }
+        }
+    }
+
+    /**
+     * The stops found so far in a search, with their distances from the point searched from.
+     * When a limited number of stops is sought, they are kept in order as they are found;
+     * otherwise they are put in order when the search is finished.  The arrays are reused from
+     * one search to the next.
+     */
+    private static class Found {
+        private double lat;
+        private double lon;
+        private double radius;
+        private int count;
+        Stop[] stops = new Stop[16];
+        double[] distances = new double[16];
+        int size;
+
+        void start(double lat, double lon, double radius, int count) {
+            this.lat = lat;
+            this.lon = lon;
+            this.radius = radius;
+            this.count = count;
+            size = 0;
+        }
+
+        /**
+         * The distance that a stop must be closer than to be found
+         */
+        double limit() {
+            return size == count ? distances[size - 1] : radius;
+        }
+
+        void offer(Stop stop) {
+            double d = SphericalGeometry.distanceBetween(stop.getLatitude(), stop.getLongitude(), lat, lon);
+            if (!(d < radius)) {
+                return;
+            }
+            if (count == Integer.MAX_VALUE) {
+                append(d, stop);
+            } else if (size < count) {
+                insert(d, stop);
+            } else if (precedes(d, stop, size - 1)) {
+                size--;
+                insert(d, stop);
+            }
+        }
+
+        void finish() {
+            if (count == Integer.MAX_VALUE) {
+                sort();
+            }
+        }
+
+        void clearStops() {
+            for (int i = 0; i < size; i++) {
+                stops[i] = null;
+            }
+        }
+
+        private boolean precedes(double d, Stop stop, int i) {
+            return d < distances[i] || (d == distances[i] && stop.getNumber() < stops[i].getNumber());
+        }
+
+        private void append(double d, Stop stop) {
+            ensureCapacity();
+            stops[size] = stop;
+            distances[size] = d;
+            size++;
+        }
+
+        private void insert(double d, Stop stop) {
+            ensureCapacity();
+            int i = size;
+            while (i > 0 && precedes(d, stop, i - 1)) {
+                stops[i] = stops[i - 1];
+                distances[i] = distances[i - 1];
+                i--;
+            }
+            stops[i] = stop;
+            distances[i] = d;
+            size++;
+        }
+
+        private void ensureCapacity() {
+            if (size == stops.length) {
+                stops = Arrays.copyOf(stops, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+        }
+
+        /**
+         * Shell sort of the stops found, by distance then number
+         */
+        private void sort() {
+            int gap = 1;
+            while (gap < size / 3) {
+                gap = gap * 3 + 1;
+            }
+            for (; gap > 0; gap /= 3) {
+                for (int i = gap; i < size; i++) {
+                    Stop stop = stops[i];
+                    double d = distances[i];
+                    int j = i;
+                    while (j >= gap && precedes(d, stop, j - gap)) {
+                        stops[j] = stops[j - gap];
+                        distances[j] = distances[j - gap];
+                        j -= gap;
+                    }
+                    stops[j] = stop;
+                    distances[j] = d;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return a lower bound on the distance in metres from the point to any occupied cell in the ring
+     * of cells k cells from (row, col).  Such a cell lies beyond one of the edges of the block of cells
+     * less than k cells from (row, col), so the bound is the distance to the nearest of those edges
+     * that has occupied cells beyond it.
+     */
+    private double ringBound(double lat, double lon, int row, int col, int k) {
+        double bound = Double.POSITIVE_INFINITY;
+        // a location is rounded by up to half a microdegree when placed in a cell
+        if (row + k <= maxRow) {
+            bound = Math.min(bound, latitudeBound(MicroDegrees.toDegrees((row + k) * CELL_SIZE - 1) - lat));
+        }
+        if (row - k >= minRow) {
+            bound = Math.min(bound, latitudeBound(lat - MicroDegrees.toDegrees((row - k + 1) * CELL_SIZE + 1)));
+        }
+        if (col + k <= maxCol) {
+            bound = Math.min(bound, longitudeBound(lat, MicroDegrees.toDegrees((col + k) * CELL_SIZE - 1) - lon));
+        }
+        if (col - k >= minCol) {
+            bound = Math.min(bound, longitudeBound(lat, lon - MicroDegrees.toDegrees((col - k + 1) * CELL_SIZE + 1)));
+        }
+        return bound - TOLERANCE;
+    }
+
+    private static double latitudeBound(double deltaLat) {
+        return deltaLat <= 0 ? 0 : EARTH_RADIUS * Math.toRadians(deltaLat);
+    }
+
+    /**
+     * Return the distance in metres from a point at latitude lat to the nearest point on the meridian
+     * deltaLon degrees east or west of it, or to the nearer pole if that is closer
+     */
+    private static double longitudeBound(double lat, double deltaLon) {
+        if (deltaLon <= 0) {
+            return 0;
+        }
+        // going the other way round the earth, a stop in the grid is at least this far from any point
+        deltaLon = Math.min(deltaLon, 180 - MicroDegrees.toDegrees(MAX_LONGITUDE));
+        double phi = Math.toRadians(Math.abs(lat));
+        double toPole = EARTH_RADIUS * (Math.PI / 2 - phi);
+        return Math.min(toPole, EARTH_RADIUS * Math.asin(Math.cos(phi) * Math.sin(Math.toRadians(deltaLon))));
+    }
+
+    private static boolean isOutlier(int latE6, int lonE6) {
+        return latE6 < -MAX_LATITUDE || latE6 > MAX_LATITUDE || lonE6 < -MAX_LONGITUDE || lonE6 > MAX_LONGITUDE;
+    }
+
+    private static int cellOf(int e6) {
+        // floor division, so cells either side of zero are the same size
+        return e6 >= 0 ? e6 / CELL_SIZE : -((-e6 - 1) / CELL_SIZE) - 1;
+    }
+
+    private static Long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
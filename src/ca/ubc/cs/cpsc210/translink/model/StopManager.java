@@ -2,13 +2,17 @@ package ca.ubc.cs.cpsc210.translink.model;
 
 import ca.ubc.cs.cpsc210.translink.model.exception.StopException;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
-import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
 
 import java.util.*;
 
 /**
  * Manages all bus stops.
  *
+ * Stops are also indexed by location in a grid, kept in step with the stops managed, so that
+ * the stops nearest to a point can be found without looking at every stop.  The clusters of stops
+ * drawn at each zoom level of the map are computed when first needed, and again after any stop
+ * is added or moved.
+ *
  * Singleton pattern applied to ensure only a single instance of this class that
  * is globally accessible throughout application.
  */
@@ -19,6 +23,8 @@ public class StopManager implements Iterable<Stop> {
     // Use this field to hold all of the stops.
     // Do not change this field or its type, as the iterator method depends on it
     private Map<Integer, Stop> stopMap;
+    private StopGrid grid;
+    private volatile StopClusters clusters;
     private Stop selected;
 
     /**
@@ -27,6 +33,7 @@ public class StopManager implements Iterable<Stop> {
     private StopManager() {
 
         stopMap = new HashMap<>();
+        grid = new StopGrid();
         selected = null;
     }
 
@@ -67,6 +74,8 @@ public class StopManager implements Iterable<Stop> {
             LatLon l = new LatLon(-1000.896, 45.9875656);
             Stop s = new Stop(id, "", l);
             stopMap.put(id, s);
+            grid.add(s);
+            clusters = null;
             return s;
         }
     }
@@ -84,6 +93,8 @@ public class StopManager implements Iterable<Stop> {
         } else {
             Stop stop = new Stop (id, name, locn);
             stopMap.put(id, stop);
+            grid.add(stop);
+            clusters = null;
             return stop;
         }
     }
@@ -123,28 +134,104 @@ public class StopManager implements Iterable<Stop> {
      */
     public void clearStops() {
         stopMap.clear();
+        grid.clear();
+        clusters = null;
         clearSelectedStop();
 
     }
 
     /**
      * Find nearest stop to given point.  Returns null if no stop is closer than RADIUS metres.
+     * Of stops at the same distance from pt, the one with the lowest number is returned.
      *
      * @param pt  point to which nearest stop is sought
      * @return    stop closest to pt but less than 10,000m away; null if no stop is within RADIUS metres of pt
      */
     public Stop findNearestTo(LatLon pt) {
-        double closestDistanceSoFar = RADIUS;
-        Stop nearest = null;
-        for (Stop stop : stopMap.values()) {
-            double d2 = SphericalGeometry.distanceBetween(stop.getLocn(), pt);
-            if (d2 < closestDistanceSoFar) {
-                nearest = stop;
-                closestDistanceSoFar = SphericalGeometry.distanceBetween(stop.getLocn(), pt);
-            }
+        return grid.findNearest(pt.getLatitude(), pt.getLongitude(), RADIUS);
+    }
+
+    /**
+     * Find the k stops nearest to given point, nearest first.  Of stops at the same distance from pt,
+     * the one with the lowest number comes first.
+     *
+     * @param pt  point to which nearest stops are sought
+     * @param k   the number of stops sought
+     * @return    a new list of the k stops closest to pt, or of all stops if there are fewer than k
+     */
+    public List<Stop> findKNearest(LatLon pt, int k) {
+        return findKNearest(pt, k, new ArrayList<Stop>());
+    }
+
+    /**
+     * Find the k stops nearest to given point, nearest first, into a list supplied by the caller.
+     * Reusing the same list for repeated queries avoids allocating a new one each time.
+     *
+     * @param pt      point to which nearest stops are sought
+     * @param k       the number of stops sought
+     * @param result  the list into which the stops are put, replacing its contents
+     * @return        result
+     */
+    public List<Stop> findKNearest(LatLon pt, int k, List<Stop> result) {
+        grid.find(pt.getLatitude(), pt.getLongitude(), Double.POSITIVE_INFINITY, k, result);
+        return result;
+    }
+
+    /**
+     * Find all stops less than radius metres from given point, nearest first.  Of stops at the same
+     * distance from pt, the one with the lowest number comes first.
+     *
+     * @param pt      point around which stops are sought
+     * @param radius  distance in metres
+     * @return        a new list of the stops within radius metres of pt
+     */
+    public List<Stop> findWithin(LatLon pt, double radius) {
+        return findWithin(pt, radius, new ArrayList<Stop>());
+    }
+
+    /**
+     * Find all stops less than radius metres from given point, nearest first, into a list supplied
+     * by the caller.  Reusing the same list for repeated queries avoids allocating a new one each time.
+     *
+     * @param pt      point around which stops are sought
+     * @param radius  distance in metres
+     * @param result  the list into which the stops are put, replacing its contents
+     * @return        result
+     */
+    public List<Stop> findWithin(LatLon pt, double radius, List<Stop> result) {
+        grid.find(pt.getLatitude(), pt.getLongitude(), radius, Integer.MAX_VALUE, result);
+        return result;
+    }
+
+    /**
+     * Move a managed stop to its new place in the grid after its location has changed
+     *
+     * @param stop      the stop that has moved
+     * @param oldLatE6  the latitude of its old location in microdegrees
+     * @param oldLonE6  the longitude of its old location in microdegrees
+     */
+    void stopMoved(Stop stop, int oldLatE6, int oldLonE6) {
+        if (stopMap.get(stop.getNumber()) == stop) {
+            grid.remove(stop, oldLatE6, oldLonE6);
+            grid.add(stop);
+            clusters = null;
         }
-        return nearest;
+    }
+
+    /**
+     * Get the clusters of stops at each zoom level of the map, computing them if any stop has
+     * been added or moved since they were last computed
+     *
+     * @return  the clusters of all stops
+     */
+    public synchronized StopClusters getClusters() {
+        StopClusters current = clusters;
+        if (current == null) {
+            current = new StopClusters(this);
+            clusters = current;
         }
+        return current;
+    }
 
     @Override
     public Iterator<Stop> iterator() {
@@ -0,0 +1,176 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.IntList;
+import ca.ubc.cs.cpsc210.translink.util.VisibleRunBuilder;
+import ca.ubc.cs.cpsc210.translink.util.WebMercator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the map shows for a snapshot of its viewport: the visible runs of the route patterns of
+ * each route through the selected stop, clipped to the viewport, and the clusters of stops in or
+ * just outside the viewport.  Made on the UI thread and computed on another, so compute must not
+ * use anything of the UI; once computed, it is only read.
+ *
+ * The runs of all routes are held in one VisibleRunBuilder.  Once they have been drawn, the
+ * builder can be released and given to the next snapshot, so that its buffers are reused from
+ * one viewport to the next.
+ */
+public class VisibleOverlays {
+    private final double north;
+    private final double west;
+    private final double south;
+    private final double east;
+    private final int zoom;
+    private final Stop selected;
+
+    private final List<Route> routes = new ArrayList<>();
+    // the runs of route i are runs routeRuns.get(i) up to but not including routeRuns.get(i + 1)
+    private final IntList routeRuns = new IntList();
+    private VisibleRunBuilder runs;
+    private StopClusters clusters;
+    private final IntList clusterIndexes = new IntList();
+
+    /**
+     * Take a snapshot of the viewport of the map
+     *
+     * @param north             latitude of the north edge of the viewport
+     * @param west              longitude of the west edge of the viewport
+     * @param south             latitude of the south edge of the viewport
+     * @param east              longitude of the east edge of the viewport
+     * @param zoom              the zoom level of the map
+     * @param selected          the selected stop (null if no stop is selected)
+     */
+    public VisibleOverlays(double north, double west, double south, double east, int zoom, Stop selected) {
+        this(north, west, south, east, zoom, selected, null);
+    }
+
+    /**
+     * Take a snapshot of the viewport of the map, reusing the builder released by an earlier snapshot
+     *
+     * @param north             latitude of the north edge of the viewport
+     * @param west              longitude of the west edge of the viewport
+     * @param south             latitude of the south edge of the viewport
+     * @param east              longitude of the east edge of the viewport
+     * @param zoom              the zoom level of the map
+     * @param selected          the selected stop (null if no stop is selected)
+     * @param runs              the builder to hold the visible runs, whose runs are cleared; if
+     *                          null, a new builder is made
+     */
+    public VisibleOverlays(double north, double west, double south, double east, int zoom, Stop selected,
+                           VisibleRunBuilder runs) {
+        this.north = north;
+        this.west = west;
+        this.south = south;
+        this.east = east;
+        this.zoom = zoom;
+        this.selected = selected;
+        this.runs = runs != null ? runs : new VisibleRunBuilder();
+    }
+
+    /**
+     * Find the visible runs of the routes through the selected stop and the clusters of stops in
+     * the viewport.  At low zoom levels the simplified version of each path for the zoom level
+     * is clipped.
+     */
+    public void compute() {
+        routes.clear();
+        routeRuns.clear();
+        runs.clear();
+        if (selected != null) {
+            for (Route r : selected.getRoutes()) {
+                routeRuns.add(runs.getNumRuns());
+                for (RoutePattern rp : r.getPatterns()) {
+                    rp.addVisibleRuns(zoom, runs, north, west, south, east);
+                }
+                routes.add(r);
+            }
+        }
+        routeRuns.add(runs.getNumRuns());
+
+        // include clusters just outside the viewport whose icons reach into it
+        long margin = (long) StopClusters.getRadius(zoom) * WebMercator.pixelSize(Math.min(zoom, WebMercator.MAX_ZOOM));
+        clusters = StopManager.getInstance().getClusters();
+        clusters.find(zoom, WebMercator.lonToX(west) - margin, WebMercator.latToY(north) - margin,
+                WebMercator.lonToX(east) + margin, WebMercator.latToY(south) + margin, clusterIndexes);
+    }
+
+    /**
+     * @return  the zoom level of the map in the snapshot
+     */
+    public int getZoom() {
+        return zoom;
+    }
+
+    /**
+     * @return  the selected stop in the snapshot (null if no stop was selected)
+     */
+    public Stop getSelected() {
+        return selected;
+    }
+
+    /**
+     * @return  the number of routes through the selected stop (0 if no stop was selected)
+     */
+    public int getNumRoutes() {
+        return routes.size();
+    }
+
+    /**
+     * @param i     the index of a route
+     * @return      the route
+     */
+    public Route getRoute(int i) {
+        return routes.get(i);
+    }
+
+    /**
+     * @return  the visible runs of the patterns of all routes, or null once released
+     */
+    public VisibleRunBuilder getRuns() {
+        return runs;
+    }
+
+    /**
+     * @param i     the index of a route
+     * @return      the index in getRuns() of the first visible run of the route
+     */
+    public int getFirstRun(int i) {
+        return routeRuns.get(i);
+    }
+
+    /**
+     * @param i     the index of a route
+     * @return      the index in getRuns() one past the last visible run of the route
+     */
+    public int getEndRun(int i) {
+        return routeRuns.get(i + 1);
+    }
+
+    /**
+     * Give up the visible runs once they have been drawn, so that the builder holding them can
+     * be reused by a later snapshot
+     *
+     * @return  the builder that held the visible runs
+     */
+    public VisibleRunBuilder releaseRuns() {
+        VisibleRunBuilder released = runs;
+        runs = null;
+        return released;
+    }
+
+    /**
+     * @return  the clusters of stops from which the visible clusters were found
+     */
+    public StopClusters getClusters() {
+        return clusters;
+    }
+
+    /**
+     * @return  the indexes of the visible clusters at the zoom level of the snapshot
+     */
+    public IntList getClusterIndexes() {
+        return clusterIndexes;
+    }
+}
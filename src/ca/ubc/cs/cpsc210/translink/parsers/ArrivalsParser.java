@@ -7,6 +7,13 @@ import ca.ubc.cs.cpsc210.translink.model.Stop;
 import ca.ubc.cs.cpsc210.translink.parsers.exception.ArrivalsDataMissingException;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 
 
@@ -15,12 +22,57 @@ import org.json.JSONException;
  */
 public class ArrivalsParser {
 
+    // fields of the objects read by the streaming parser, in the order of the constants below
+    private static final String[] ROUTE_FIELDS = {"RouteNo", "RouteName", "Schedules"};
+    private static final int ROUTE_NO = 0;
+    private static final int ROUTE_NAME = 1;
+    private static final int SCHEDULES = 2;
+    private static final String[] SCHEDULE_FIELDS = {"ExpectedCountdown", "Destination", "ScheduleStatus"};
+    private static final int EXPECTED_COUNTDOWN = 0;
+    private static final int DESTINATION = 1;
+    private static final int SCHEDULE_STATUS = 2;
+
+    /**
+     * The fields of the schedules of one route, kept until the route itself is known, as the
+     * route number and name may follow the schedules
+     */
+    private static class Schedules {
+        int[] countdowns = new int[8];
+        String[] destinations = new String[8];
+        String[] statuses = new String[8];
+        int size;
+
+        void add(int countdown, String destination, String status) {
+            if (size == countdowns.length) {
+                countdowns = Arrays.copyOf(countdowns, size * 2);
+                destinations = Arrays.copyOf(destinations, size * 2);
+                statuses = Arrays.copyOf(statuses, size * 2);
+            }
+            countdowns[size] = countdown;
+            destinations[size] = destination;
+            statuses[size] = status;
+            size++;
+        }
+
+        String lastDestination() {
+            return size == 0 ? null : destinations[size - 1];
+        }
+
+        String lastStatus() {
+            return size == 0 ? null : statuses[size - 1];
+        }
+    }
+
     /**
      * Parse arrivals from JSON response produced by TransLink query.  All parsed arrivals are
      * added to the given stop assuming that corresponding JSON object has a RouteNo: and an
      * array of Schedules:
      * Each schedule must have an ExpectedCountdown, ScheduleStatus, and Destination.  If
      * any of the aforementioned elements is missing, the arrival is not added to the stop.
+     * The arrivals of all routes are added to the stop together, once the whole response has been
+     * parsed, so when a later route is missing data no arrivals are added.  (Arrivals were once added
+     * route by route, which left the arrivals of the routes before the error on the stop.)  The
+     * routes parsed before the error are still added to the stop.
      *
      * @param stop         stop to which parsed arrivals are to be added
      * @param jsonResponse the JSON response produced by Translink
@@ -28,29 +80,185 @@ public class ArrivalsParser {
      * @throws ArrivalsDataMissingException when no arrivals are found in the reply
      */
     public static void parseArrivals(Stop stop, String jsonResponse) throws JSONException, ArrivalsDataMissingException {
+        stop.addArrivals(parseArrivalList(stop, jsonResponse, !stop.getArrivals().isEmpty()));
+    }
+
+    /**
+     * Parse arrivals from JSON response produced by TransLink query, as parseArrivals does, but
+     * return them rather than adding them to the stop.  The routes of the arrivals are still
+     * added to the stop.
+     *
+     * @param stop         stop at which the arrivals are expected
+     * @param jsonResponse the JSON response produced by Translink
+     * @return             the parsed arrivals, with the arrivals of each route in order
+     * @throws JSONException                when JSON response does not have expected format
+     * @throws ArrivalsDataMissingException when no arrivals are found in the reply
+     */
+    public static List<Arrival> parseArrivalList(Stop stop, String jsonResponse)
+            throws JSONException, ArrivalsDataMissingException {
+        return parseArrivalList(stop, jsonResponse, false);
+    }
+
+    /**
+     * Parse arrivals from a stream of JSON data produced by TransLink query, as parseArrivalList
+     * does for a String, but creating the arrivals as the data is read, without building a String
+     * or a JSONArray for the response.  Only the fields used are decoded; all others are skipped.
+     * The stream is closed when parsing is complete.
+     *
+     * The arrivals are the same, or the same exception is thrown, as for the same data as a String,
+     * except that data which is not JSON but which JSONArray accepts, such as a trailing comma in
+     * an array or an unquoted string, is rejected with a JSONException.
+     *
+     * @param stop  stop at which the arrivals are expected
+     * @param in    stream of UTF-8 encoded JSON data produced by Translink
+     * @return      the parsed arrivals, with the arrivals of each route in order
+     * @throws JSONException                when JSON data is not well formed or is not an array
+     * @throws ArrivalsDataMissingException when no arrivals are found in the reply
+     * @throws IOException                  when error occurs reading from stream
+     */
+    public static List<Arrival> parseArrivalList(Stop stop, InputStream in)
+            throws JSONException, ArrivalsDataMissingException, IOException {
+        JsonStreamReader reader = new JsonStreamReader(in);
+        List<Arrival> parsed = new ArrayList<>();
+        Schedules schedules = new Schedules();
+
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readRoute(reader, stop, schedules, parsed);
+                if (parsed.isEmpty()) {
+                    throw new ArrivalsDataMissingException();
+                }
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+        return parsed;
+    }
+
+    /**
+     * Read the arrivals of one route object, adding the route to the stop
+     */
+    private static void readRoute(JsonStreamReader reader, Stop stop, Schedules schedules, List<Arrival> parsed)
+            throws JSONException, ArrivalsDataMissingException, IOException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+            throw new ArrivalsDataMissingException();
+        }
+        String routeNumber = null;
+        String name = null;
+        boolean hasSchedules = false;
+        schedules.size = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = reader.selectName(ROUTE_FIELDS);
+            JsonStreamReader.Token t = reader.peek();
+            if (field == ROUTE_NO && t == JsonStreamReader.Token.STRING) {
+                routeNumber = reader.nextString();
+            } else if (field == ROUTE_NAME && t == JsonStreamReader.Token.STRING) {
+                name = reader.nextString();
+            } else if (field == SCHEDULES && t == JsonStreamReader.Token.BEGIN_ARRAY) {
+                readSchedules(reader, schedules);
+                hasSchedules = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (routeNumber == null || name == null || routeNumber.isEmpty() || name.isEmpty() || !hasSchedules) {
+            throw new ArrivalsDataMissingException();
+        }
+        Route r = RouteManager.getInstance().getRouteWithNumber(routeNumber, name);
+        stop.addRoute(r);
+        for (int i = 0; i < schedules.size; i++) {
+            Arrival arrival = new Arrival(schedules.countdowns[i], schedules.destinations[i], r);
+            arrival.setStatus(schedules.statuses[i]);
+            parsed.add(arrival);
+        }
+    }
+
+    /**
+     * Read an array of schedule objects, keeping the fields used of each
+     */
+    private static void readSchedules(JsonStreamReader reader, Schedules schedules)
+            throws JSONException, ArrivalsDataMissingException, IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                throw new ArrivalsDataMissingException();
+            }
+            boolean hasCountdown = false;
+            int countdown = 0;
+            String destination = null;
+            String status = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                int field = reader.selectName(SCHEDULE_FIELDS);
+                JsonStreamReader.Token t = reader.peek();
+                if (field == EXPECTED_COUNTDOWN
+                        && (t == JsonStreamReader.Token.NUMBER || t == JsonStreamReader.Token.STRING)) {
+                    countdown = readCountdown(reader);
+                    hasCountdown = true;
+                } else if (field == DESTINATION && t == JsonStreamReader.Token.STRING) {
+                    destination = reader.nextString(schedules.lastDestination());
+                } else if (field == SCHEDULE_STATUS && t == JsonStreamReader.Token.STRING) {
+                    status = reader.nextString(schedules.lastStatus());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (!hasCountdown || destination == null || status == null) {
+                throw new ArrivalsDataMissingException();
+            }
+            schedules.add(countdown, destination, status);
+        }
+        reader.endArray();
+    }
+
+    // a countdown that is not an int is missing, as it is to JSONObject.getInt
+    private static int readCountdown(JsonStreamReader reader)
+            throws ArrivalsDataMissingException, IOException {
+        try {
+            return reader.nextInt();
+        } catch (JSONException e) {
+            throw new ArrivalsDataMissingException();
+        }
+    }
+
+    private static List<Arrival> parseArrivalList(Stop stop, String jsonResponse, boolean stopHasArrivals)
+            throws JSONException, ArrivalsDataMissingException {
         JSONArray arrivals = new JSONArray(jsonResponse);
+        List<Arrival> parsed = new ArrayList<>();
 
         for (int i = 0; i < arrivals.length(); i++) {
             try {
-                String name = arrivals.getJSONObject(i).getString("RouteName");
-                String routeNumber = arrivals.getJSONObject(i).getString("RouteNo");
+                JSONObject routeArrivals = arrivals.getJSONObject(i);
+                String name = routeArrivals.getString("RouteName");
+                String routeNumber = routeArrivals.getString("RouteNo");
                 Route r = RouteManager.getInstance().getRouteWithNumber(routeNumber, name);
                 if (name.isEmpty() || routeNumber.isEmpty()) {
                     throw new ArrivalsDataMissingException();
                 }
                 stop.addRoute(r);
-                JSONArray schedules = arrivals.getJSONObject(i).getJSONArray("Schedules");
+                JSONArray schedules = routeArrivals.getJSONArray("Schedules");
 
+                // the schedules of a route are listed in order, so each route adds a sorted run
                 for (int j = 0; j < schedules.length(); j++) {
-                    int countdown = schedules.getJSONObject(j).getInt("ExpectedCountdown");
-                    String destination = schedules.getJSONObject(j).getString("Destination");
-                    String status = schedules.getJSONObject(j).getString("ScheduleStatus");
+                    JSONObject schedule = schedules.getJSONObject(j);
+                    int countdown = schedule.getInt("ExpectedCountdown");
+                    String destination = schedule.getString("Destination");
+                    String status = schedule.getString("ScheduleStatus");
                     Arrival arrival = new Arrival(countdown, destination, r);
                     arrival.setStatus(status);
-                    stop.addArrival(arrival);
+                    parsed.add(arrival);
                 }
 
-                if (stop.getArrivals().isEmpty()) {
+                if (!stopHasArrivals && parsed.isEmpty()) {
                     throw new ArrivalsDataMissingException();
                 }
 
@@ -59,6 +267,7 @@ public class ArrivalsParser {
             }
         }
 
+        return parsed;
 
        /*
         JSONArray arr = new JSONArray(jsonResponse);
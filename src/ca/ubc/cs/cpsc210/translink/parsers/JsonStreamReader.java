@@ -0,0 +1,508 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import org.json.JSONException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A pull parser that tokenizes UTF-8 encoded JSON directly from an input stream,
+ * one value at a time, without building a JSONArray/JSONObject tree.
+ */
+public class JsonStreamReader implements Closeable {
+
+    /**
+     * The kinds of token that can be returned by peek()
+     */
+    public enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // scopes kept on the nesting stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+
+    private Token peeked = null;
+    private char[] text = new char[64];
+    private int textLength = 0;
+
+    /**
+     * Construct a reader over the given stream
+     *
+     * @param in    the stream of UTF-8 encoded JSON data
+     */
+    public JsonStreamReader(InputStream in) {
+        this.in = in;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Return the type of the next token without consuming it
+     *
+     * @return      the next token
+     * @throws JSONException    when data is not well formed JSON
+     * @throws IOException      when error occurs reading from stream
+     */
+    public Token peek() throws JSONException, IOException {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    /**
+     * Return true if the current array or object has another element
+     */
+    public boolean hasNext() throws JSONException, IOException {
+        Token t = peek();
+        return t != Token.END_ARRAY && t != Token.END_OBJECT && t != Token.END_DOCUMENT;
+    }
+
+    public void beginArray() throws JSONException, IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws JSONException, IOException {
+        expect(Token.END_ARRAY);
+        stackSize--;
+    }
+
+    public void beginObject() throws JSONException, IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws JSONException, IOException {
+        expect(Token.END_OBJECT);
+        stackSize--;
+    }
+
+    /**
+     * Consume the next property name and return it
+     *
+     * @return      the property name
+     */
+    public String nextName() throws JSONException, IOException {
+        expect(Token.NAME);
+        return new String(text, 0, textLength);
+    }
+
+    /**
+     * Consume the next property name and return its position in names, without creating a String for it.
+     *
+     * @param names     the property names of interest
+     * @return          index of the name in names, or -1 if it is not one of them
+     */
+    public int selectName(String[] names) throws JSONException, IOException {
+        expect(Token.NAME);
+        for (int i = 0; i < names.length; i++) {
+            if (textEquals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Consume the next string or number value and return its text
+     *
+     * @return      the text of the string, or the literal text of the number
+     * @throws JSONException    when the next value is not a string or a number
+     */
+    public String nextString() throws JSONException, IOException {
+        Token t = peek();
+        if (t != Token.STRING && t != Token.NUMBER) {
+            throw syntaxError("Expected a string but was " + t);
+        }
+        peeked = null;
+        return new String(text, 0, textLength);
+    }
+
+    /**
+     * Consume the next string or number value, as nextString does, but return the given string
+     * rather than a new one when the text is the same.  Values repeated from one record to the
+     * next then cost no allocation.
+     *
+     * @param reuse     the string to return if it has the same text, or null
+     * @return          the text of the string, or the literal text of the number
+     * @throws JSONException    when the next value is not a string or a number
+     */
+    public String nextString(String reuse) throws JSONException, IOException {
+        Token t = peek();
+        if (t != Token.STRING && t != Token.NUMBER) {
+            throw syntaxError("Expected a string but was " + t);
+        }
+        peeked = null;
+        if (reuse != null && textEquals(reuse)) {
+            return reuse;
+        }
+        return new String(text, 0, textLength);
+    }
+
+    /**
+     * Consume the next number (or numeric string) value
+     *
+     * @return      the value as a double
+     * @throws JSONException    when the next value is not a number
+     */
+    public double nextDouble() throws JSONException, IOException {
+        Token t = peek();
+        if (t != Token.STRING && t != Token.NUMBER) {
+            throw syntaxError("Expected a number but was " + t);
+        }
+        peeked = null;
+        try {
+            return Double.parseDouble(new String(text, 0, textLength));
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was " + new String(text, 0, textLength));
+        }
+    }
+
+    /**
+     * Consume the next number (or numeric string) value as an int, as JSONObject.getInt does.
+     * Numbers with a fractional part or exponent are truncated, and integers too large for an int
+     * wrap around; a string must hold a decimal int.
+     *
+     * @return      the value as an int
+     * @throws JSONException    when the next value is not a number, or is a string not holding an int
+     */
+    public int nextInt() throws JSONException, IOException {
+        Token t = peek();
+        if (t == Token.STRING) {
+            String value = new String(text, 0, textLength);
+            try {
+                int result = Integer.parseInt(value);
+                peeked = null;
+                return result;
+            } catch (NumberFormatException e) {
+                throw syntaxError("Expected an int but was " + value);
+            }
+        }
+        if (t == Token.NUMBER && isPlainInteger()) {
+            peeked = null;
+            long value = 0;
+            int i = text[0] == '-' ? 1 : 0;
+            for (; i < textLength; i++) {
+                value = value * 10 + (text[i] - '0');
+            }
+            return (int) (text[0] == '-' ? -value : value);
+        }
+        return (int) nextDouble();
+    }
+
+    public boolean nextBoolean() throws JSONException, IOException {
+        expect(Token.BOOLEAN);
+        return text[0] == 't';
+    }
+
+    public void nextNull() throws JSONException, IOException {
+        expect(Token.NULL);
+    }
+
+    /**
+     * Skip the next value, including any nested arrays or objects
+     */
+    public void skipValue() throws JSONException, IOException {
+        int depth = 0;
+        do {
+            Token t = peek();
+            peeked = null;
+            switch (t) {
+                case BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    depth++;
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    stackSize--;
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of input");
+                default:
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void expect(Token expected) throws JSONException, IOException {
+        Token t = peek();
+        if (t != expected) {
+            throw syntaxError("Expected " + expected + " but was " + t);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] bigger = new int[stackSize * 2];
+            System.arraycopy(stack, 0, bigger, 0, stackSize);
+            stack = bigger;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private Token doPeek() throws JSONException, IOException {
+        int scope = stack[stackSize - 1];
+        int c;
+
+        switch (scope) {
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return Token.END_ARRAY;
+                }
+                pos--;
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return Token.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated array");
+                }
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                stack[stackSize - 1] = DANGLING_NAME;
+                c = nextNonWhitespace();
+                if (c == '}' && scope == EMPTY_OBJECT) {
+                    return Token.END_OBJECT;
+                } else if (scope == NONEMPTY_OBJECT) {
+                    if (c == '}') {
+                        return Token.END_OBJECT;
+                    } else if (c != ',') {
+                        throw syntaxError("Unterminated object");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                readString();
+                return Token.NAME;
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                break;
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                return nextNonWhitespace() == -1 ? Token.END_DOCUMENT : syntaxTokenError();
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '"':
+                readString();
+                return Token.STRING;
+            case 't':
+            case 'f':
+            case 'n':
+                pos--;
+                readLiteral();
+                if (textEquals("true") || textEquals("false")) {
+                    return Token.BOOLEAN;
+                } else if (textEquals("null")) {
+                    return Token.NULL;
+                }
+                throw syntaxError("Unexpected literal " + new String(text, 0, textLength));
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    readLiteral();
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private Token syntaxTokenError() throws JSONException {
+        throw syntaxError("Expected end of input");
+    }
+
+    private boolean fill() throws IOException {
+        pos = 0;
+        limit = in.read(buffer, 0, buffer.length);
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    /**
+     * Read the characters of a number or literal into the text buffer
+     */
+    private void readLiteral() throws IOException {
+        textLength = 0;
+        while (true) {
+            if (pos == limit && !fill()) {
+                return;
+            }
+            int c = buffer[pos];
+            if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E') {
+                append((char) c);
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read a quoted string (opening quote already consumed) into the text buffer, decoding
+     * escapes and UTF-8 sequences
+     */
+    private void readString() throws JSONException, IOException {
+        textLength = 0;
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else if (c == '\\') {
+                readEscape();
+            } else if (c < 0x80) {
+                append((char) c);
+            } else if (c < 0xe0) {
+                append((char) (((c & 0x1f) << 6) | continuation()));
+            } else if (c < 0xf0) {
+                append((char) (((c & 0x0f) << 12) | (continuation() << 6) | continuation()));
+            } else {
+                int codePoint = ((c & 0x07) << 18) | (continuation() << 12) | (continuation() << 6) | continuation();
+                codePoint -= 0x10000;
+                append((char) (0xd800 | (codePoint >>> 10)));
+                append((char) (0xdc00 | (codePoint & 0x3ff)));
+            }
+        }
+    }
+
+    private int continuation() throws JSONException, IOException {
+        int c = read();
+        if ((c & 0xc0) != 0x80) {
+            throw syntaxError("Malformed UTF-8 sequence");
+        }
+        return c & 0x3f;
+    }
+
+    private void readEscape() throws JSONException, IOException {
+        int c = read();
+        switch (c) {
+            case 'b': append('\b'); break;
+            case 't': append('\t'); break;
+            case 'n': append('\n'); break;
+            case 'f': append('\f'); break;
+            case 'r': append('\r'); break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                append((char) value);
+                break;
+            case '"':
+            case '\\':
+            case '/':
+                append((char) c);
+                break;
+            default:
+                throw syntaxError("Illegal escape");
+        }
+    }
+
+    private void append(char c) {
+        if (textLength == text.length) {
+            char[] bigger = new char[textLength * 2];
+            System.arraycopy(text, 0, bigger, 0, textLength);
+            text = bigger;
+        }
+        text[textLength++] = c;
+    }
+
+    private boolean textEquals(String s) {
+        if (s.length() != textLength) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (s.charAt(i) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isPlainInteger() {
+        int start = text[0] == '-' ? 1 : 0;
+        // up to 18 digits fit in a long
+        if (textLength == start || textLength - start > 18) {
+            return false;
+        }
+        for (int i = start; i < textLength; i++) {
+            if (text[i] < '0' || text[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private JSONException syntaxError(String msg) {
+        return new JSONException(msg);
+    }
+}
@@ -0,0 +1,301 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.*;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.RouteDataMissingException;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.SnapshotInvalidException;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
+import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Loads the bus network into the StopManager and RouteManager.  The network is rebuilt from a
+ * binary snapshot when a valid one is available; otherwise the text resources are parsed and
+ * a new snapshot is compiled from the result for use on the next launch.
+ *
+ * When more than one thread is allowed, the three text resources are parsed at the same time
+ * into intermediate results, which are then linked into the managers on the calling thread in
+ * the same order as the sequential parse, giving the same model.  The two differ only when a
+ * resource is missing data: the sequential parse keeps what was parsed before the error, while
+ * nothing of that resource is linked after a parallel parse.
+ *
+ * The time taken by each phase of the load is recorded and available from getPhaseTimes().
+ */
+public class NetworkLoader {
+    public static final String ROUTES_FILE = "allroutes";
+    public static final String STOPS_FILE = "stops";
+    public static final String ROUTE_MAP_FILE = "allroutemapstxt";
+    // one task per text resource
+    private static final int MAX_THREADS = 3;
+
+    private File snapshotFile;
+    private long sourceStamp;
+    private int threads;
+    private boolean lazyPaths;
+    private boolean quantized;
+    private Map<String, Long> phaseTimes = new LinkedHashMap<>();
+
+    /**
+     * Construct a loader that uses up to one thread per available processor
+     *
+     * @param snapshotFile  the file holding the snapshot (need not exist)
+     * @param sourceStamp   stamp identifying the text resources, such as the time the app was installed
+     */
+    public NetworkLoader(File snapshotFile, long sourceStamp) {
+        this(snapshotFile, sourceStamp, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param snapshotFile  the file holding the snapshot (need not exist)
+     * @param sourceStamp   stamp identifying the text resources, such as the time the app was installed
+     * @param threads       maximum number of threads used to parse the text resources
+     */
+    public NetworkLoader(File snapshotFile, long sourceStamp, int threads) {
+        this.snapshotFile = snapshotFile;
+        this.sourceStamp = sourceStamp;
+        this.threads = Math.max(1, Math.min(threads, MAX_THREADS));
+    }
+
+    /**
+     * Set whether pattern paths are decoded when first used, rather than while loading.
+     * Decoded paths are then held in the PathCache.
+     *
+     * @param lazyPaths     true if pattern paths are to be decoded on first use
+     */
+    public void setLazyPaths(boolean lazyPaths) {
+        this.lazyPaths = lazyPaths;
+    }
+
+    /**
+     * Set whether the locations of stops and the paths of patterns are held in microdegrees once
+     * loaded, which halves the memory taken by coordinates.  Paths decoded on first use are not
+     * quantized, so with lazy paths only the locations of stops are.
+     *
+     * @param quantized     true if coordinates are to be held in microdegrees
+     */
+    public void setQuantizedCoordinates(boolean quantized) {
+        this.quantized = quantized;
+    }
+
+    /**
+     * Load the network, falling back to the text resources if the snapshot is missing, stale or corrupt
+     *
+     * @return  true if the network was loaded from the snapshot
+     */
+    public boolean load() {
+        long start = System.nanoTime();
+        if (snapshotFile.exists()) {
+            try {
+                new SnapshotParser(snapshotFile, sourceStamp, lazyPaths).parse();
+                recordPhase("snapshot", start);
+                quantize();
+                return true;
+            } catch (IOException | SnapshotInvalidException e) {
+                e.printStackTrace();
+                StopManager.getInstance().clearStops();
+                RouteManager.getInstance().clearRoutes();
+                PathCache.getInstance().clear();
+            }
+        }
+
+        if (parseText()) {
+            long writeStart = System.nanoTime();
+            try {
+                new SnapshotWriter(snapshotFile, sourceStamp).write();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            recordPhase("write snapshot", writeStart);
+        }
+        quantize();
+        recordPhase("total", start);
+        return false;
+    }
+
+    /**
+     * Parse the route, stop and route map text resources.  Routes are linked first so that
+     * route names are recorded before stops refer to the routes by number.
+     *
+     * Before the loader, the app parsed only the stops and route map resources.  Parsing
+     * allroutes as well is an intentional change: routes now have their names, and patterns their
+     * destinations and directions.  The extra parse is paid only on a launch without a valid
+     * snapshot, since the snapshot holds the names, destinations and directions too.
+     *
+     * @return  true if all resources were parsed without error
+     */
+    public boolean parseText() {
+        return threads > 1 ? parseTextInParallel() : parseTextSequentially();
+    }
+
+    /**
+     * Get the time taken by each phase of the last load, in milliseconds, in the order in which
+     * the phases finished.  When the text resources are parsed in parallel, the "wait" phase is
+     * the time until the slowest of them finished, which is the critical path of the parse.
+     *
+     * @return  map from phase name to time taken
+     */
+    public synchronized Map<String, Long> getPhaseTimes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phaseTimes));
+    }
+
+    private boolean parseTextSequentially() {
+        boolean ok = true;
+        long start = System.nanoTime();
+        try {
+            new RouteParser(ROUTES_FILE).parse();
+        } catch (IOException | RouteDataMissingException | JSONException e) {
+            e.printStackTrace();
+            ok = false;
+        }
+        recordPhase(ROUTES_FILE, start);
+
+        start = System.nanoTime();
+        try {
+            new StopParser(STOPS_FILE).parse();
+        } catch (IOException | StopDataMissingException | JSONException e) {
+            e.printStackTrace();
+            ok = false;
+        }
+        recordPhase(STOPS_FILE, start);
+
+        start = System.nanoTime();
+        try {
+            byte[] routeMap = new FileDataProvider(ROUTE_MAP_FILE).dataSourceToBytes();
+            if (routeMap == null) {
+                ok = false;
+            } else {
+                new RouteMapParser(ROUTE_MAP_FILE, lazyPaths).parse(routeMap, 0, routeMap.length);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            ok = false;
+        }
+        recordPhase(ROUTE_MAP_FILE, start);
+        return ok;
+    }
+
+    private boolean parseTextInParallel() {
+        final RouteParser routeParser = new RouteParser(ROUTES_FILE);
+        final StopParser stopParser = new StopParser(STOPS_FILE);
+        final RouteMapParser routeMapParser = new RouteMapParser(ROUTE_MAP_FILE, lazyPaths);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+
+        try {
+            Future<List<RouteParser.RouteData>> routes = executor.submit(new Callable<List<RouteParser.RouteData>>() {
+                @Override
+                public List<RouteParser.RouteData> call() throws Exception {
+                    long start = System.nanoTime();
+                    List<RouteParser.RouteData> result =
+                            routeParser.readRoutes(new FileDataProvider(ROUTES_FILE).dataSourceToString());
+                    recordPhase(ROUTES_FILE, start);
+                    return result;
+                }
+            });
+            Future<List<StopParser.StopData>> stops = executor.submit(new Callable<List<StopParser.StopData>>() {
+                @Override
+                public List<StopParser.StopData> call() throws Exception {
+                    long start = System.nanoTime();
+                    List<StopParser.StopData> result =
+                            stopParser.readStops(new FileDataProvider(STOPS_FILE).dataSourceToStream());
+                    recordPhase(STOPS_FILE, start);
+                    return result;
+                }
+            });
+            Future<List<RouteMapParser.PathData>> paths = executor.submit(new Callable<List<RouteMapParser.PathData>>() {
+                @Override
+                public List<RouteMapParser.PathData> call() throws Exception {
+                    long start = System.nanoTime();
+                    byte[] routeMap = new FileDataProvider(ROUTE_MAP_FILE).dataSourceToBytes();
+                    if (routeMap == null) {
+                        throw new IOException("Unable to read " + ROUTE_MAP_FILE);
+                    }
+                    List<RouteMapParser.PathData> result = routeMapParser.read(routeMap, 0, routeMap.length);
+                    recordPhase(ROUTE_MAP_FILE, start);
+                    return result;
+                }
+            });
+
+            List<RouteParser.RouteData> routeResults = await(routes);
+            List<StopParser.StopData> stopResults = await(stops);
+            List<RouteMapParser.PathData> pathResults = await(paths);
+            recordPhase("wait", start);
+
+            long linkStart = System.nanoTime();
+            if (routeResults != null) {
+                for (RouteParser.RouteData data : routeResults) {
+                    routeParser.storeRoute(data);
+                }
+            }
+            if (stopResults != null) {
+                for (StopParser.StopData data : stopResults) {
+                    stopParser.storeStop(data);
+                }
+            }
+            if (pathResults != null) {
+                for (RouteMapParser.PathData data : pathResults) {
+                    routeMapParser.storePath(data);
+                }
+            }
+            recordPhase("link", linkStart);
+
+            return routeResults != null && stopResults != null && pathResults != null;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Cluster the stops at each zoom level of the map, recording the time taken as the "cluster"
+     * phase.  The clusters are otherwise computed when first drawn, so this may be run on a
+     * background thread once the network is loaded.
+     */
+    public void clusterStops() {
+        long start = System.nanoTime();
+        StopManager.getInstance().getClusters();
+        recordPhase("cluster", start);
+    }
+
+    private void quantize() {
+        if (!quantized) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (Stop stop : StopManager.getInstance()) {
+            stop.quantize();
+        }
+        for (Route route : RouteManager.getInstance()) {
+            for (RoutePattern pattern : route.getPatterns()) {
+                pattern.quantize();
+            }
+        }
+        recordPhase("quantize", start);
+    }
+
+    /**
+     * Wait for the result of a parse task
+     *
+     * @return  the result, or null if the task failed
+     */
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private synchronized void recordPhase(String phase, long startNanos) {
+        phaseTimes.put(phase, (System.nanoTime() - startNanos) / 1000000);
+    }
+}
@@ -1,20 +1,100 @@
 package ca.ubc.cs.cpsc210.translink.parsers;
+import ca.ubc.cs.cpsc210.translink.model.PathSource;
 import ca.ubc.cs.cpsc210.translink.model.Route;
 import ca.ubc.cs.cpsc210.translink.model.RouteManager;
 import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
 import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
-import ca.ubc.cs.cpsc210.translink.util.LatLon;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 /**
  * Parser for routes stored in a compact format in a txt file
+ *
+ * Each line of the file describes one pattern as N{route}-{pattern};{lat};{lon};{lat};{lon};...
+ * The file is decoded directly from its bytes, without creating a String for the file, its lines
+ * or its coordinates.
  */
 public class RouteMapParser {
+    // powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // largest mantissa for which mantissa / 10^n is correctly rounded
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * The path of one pattern, as read before it is added to its route
+     */
+    static class PathData {
+        final String routeNumber;
+        final String patternName;
+        final double[] elements;
+        final PathSource source;
+
+        PathData(String routeNumber, String patternName, double[] elements) {
+            this.routeNumber = routeNumber;
+            this.patternName = patternName;
+            this.elements = elements;
+            this.source = null;
+        }
+
+        PathData(String routeNumber, String patternName, PathSource source) {
+            this.routeNumber = routeNumber;
+            this.patternName = patternName;
+            this.elements = null;
+            this.source = source;
+        }
+    }
+
+    /**
+     * The path of a pattern held undecoded in the route map data, decoded on first use
+     */
+    private static class EncodedPath implements PathSource {
+        private byte[] buf;
+        private int start;
+        private int end;
+        private int numPoints;
+
+        EncodedPath(byte[] buf, int start, int end) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+            this.numPoints = countPoints(buf, start, end);
+        }
+
+        @Override
+        public double[] decode() {
+            return decodePath(buf, start, end);
+        }
+
+        @Override
+        public int getNumPoints() {
+            return numPoints;
+        }
+    }
+
     private String fileName;
+    private boolean lazy;
+
     public RouteMapParser(String fileName) {
+        this(fileName, false);
+    }
+    /**
+     * Construct a parser that, if lazy is true, records only where each pattern's path lies in the
+     * route map data and decodes the path when it is first used.  The data itself is then
+     * retained for as long as the patterns refer to it.
+     *
+     * @param fileName  the name of the route map file
+     * @param lazy      true if paths are to be decoded on first use
+     */
+    public RouteMapParser(String fileName, boolean lazy) {
         this.fileName = fileName;
+        this.lazy = lazy;
     }
     /**
      * Parse the route map txt file
@@ -22,68 +102,181 @@ public class RouteMapParser {
     public void parse() {
         DataProvider dataProvider = new FileDataProvider(fileName);
         try {
-            String c = dataProvider.dataSourceToString();
-            if (!c.equals("")) {
-                int posn = 0;
-                while (posn < c.length()) {
-                    int endposn = c.indexOf('\n', posn);
-                    String line = c.substring(posn, endposn);
-                    parseOnePattern(line);
-                    posn = endposn + 1;
-                }
+            byte[] c = dataProvider.dataSourceToBytes();
+            if (c != null) {
+                parse(c, 0, c.length);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
     /**
-     * Parse one route pattern, adding it to the route that is named within it
-     * @param str
+     * Parse route map data held in buf[start..end), one pattern per line
+     *
+     * @param buf       the route map data
+     * @param start     index of first byte to parse
+     * @param end       index one past the last byte to parse
      */
-    private void parseOnePattern(String str) {
-        /*
-        String routeN = str.substring(str.indexOf("N") + 1, str.indexOf("-"));
-        String patternN = str.substring(str.indexOf("-") + 1, str.indexOf(";"));
-        if (!routeN.isEmpty() && !patternN.isEmpty()) {
-            String s = str.substring(str.indexOf(";") +1, str.length());
-            if (!s.isEmpty()) {
-                List<LatLon> paths = new ArrayList<>();
-                String[] split = s.split(";");
-                for (int i = 0; i < split.length; i+=2) {
-                    double lat = Double.parseDouble(split[i]);
-                    double lon = Double.parseDouble(split[i + 1]);
-                    LatLon locn = new LatLon(lat, lon);
-                    paths.add(locn);
-                }
-                storeRouteMap(routeN, patternN, paths);
-                paths.clear();
+    public void parse(byte[] buf, int start, int end) {
+        parse(buf, start, end, null);
+    }
+    /**
+     * Read route map data held in buf[start..end) without adding it to the RouteManager.
+     * The patterns are added later by passing each of the results to storePath.
+     *
+     * @return  the pattern paths read, in the order in which they appear in the data
+     */
+    List<PathData> read(byte[] buf, int start, int end) {
+        List<PathData> paths = new ArrayList<>();
+        parse(buf, start, end, paths);
+        return paths;
+    }
+    /**
+     * Add a pattern path read by read() to the route that is named within it
+     *
+     * @param data  the pattern path read
+     */
+    void storePath(PathData data) {
+        if (data.source != null) {
+            Route r = RouteManager.getInstance().getRouteWithNumber(data.routeNumber);
+            r.getPattern(data.patternName).setPathSource(data.source);
+        } else {
+            storeRouteMap(data.routeNumber, data.patternName, data.elements);
+        }
+    }
+    private void parse(byte[] buf, int start, int end, List<PathData> paths) {
+        int posn = start;
+        while (posn < end) {
+            int endposn = indexOf(buf, (byte) '\n', posn, end);
+            if (endposn < 0) {
+                endposn = end;
             }
+            parseOnePattern(buf, posn, endposn, paths);
+            posn = endposn + 1;
         }
     }
-    */
-
-            String routeNumber = str.substring(str.indexOf("N") +1, str.indexOf("-"));
-            String patternName = str.substring(str.indexOf("-") + 1, str.indexOf(";"));
-
-            if (!routeNumber.isEmpty() && !patternName.isEmpty()) {
-                String remainder = str.substring(str.indexOf(";") +1, str.length());
+    /**
+     * Parse one route pattern held in buf[start..end), adding it to the given list or, if the list
+     * is null, to the route that is named within it
+     */
+    private void parseOnePattern(byte[] buf, int start, int end, List<PathData> paths) {
+        int n = indexOf(buf, (byte) 'N', start, end);
+        int dash = indexOf(buf, (byte) '-', start, end);
+        int semi = indexOf(buf, (byte) ';', start, end);
+        if (n < 0 || dash < 0 || semi < 0 || dash <= n + 1 || semi <= dash + 1) {
+            return;
+        }
 
-                List<LatLon> elements = new ArrayList<>();
+        if (semi + 1 < end) {
+            String routeNumber = ascii(buf, n + 1, dash);
+            String patternName = ascii(buf, dash + 1, semi);
+            PathData data = lazy
+                    ? new PathData(routeNumber, patternName, new EncodedPath(buf, semi + 1, end))
+                    : new PathData(routeNumber, patternName, decodePath(buf, semi + 1, end));
+            if (paths == null) {
+                storePath(data);
+            } else {
+                paths.add(data);
+            }
+        }
+    }
+    /**
+     * Decode the ';' separated latitude and longitude pairs in buf[start..end).  A trailing
+     * latitude without a longitude is ignored.
+     *
+     * @return  the coordinates packed as interleaved latitudes and longitudes
+     */
+    static double[] decodePath(byte[] buf, int start, int end) {
+        // each coordinate takes about 10 bytes
+        double[] elements = new double[(end - start) / 10 + 2];
+        int count = 0;
+        int posn = start;
+        while (posn < end) {
+            int next = indexOf(buf, (byte) ';', posn, end);
+            if (next < 0) {
+                next = end;
+            }
+            if (next > posn) {
+                if (count == elements.length) {
+                    elements = Arrays.copyOf(elements, count * 2);
+                }
+                elements[count++] = parseDecimal(buf, posn, next);
+            }
+            posn = next + 1;
+        }
+        count &= ~1;
+        return count == elements.length ? elements : Arrays.copyOf(elements, count);
+    }
+    /**
+     * Count the points that decodePath would decode from buf[start..end), without decoding them
+     *
+     * @return  the number of latitude and longitude pairs
+     */
+    static int countPoints(byte[] buf, int start, int end) {
+        int count = 0;
+        boolean inField = false;
+        for (int i = start; i < end; i++) {
+            if (buf[i] == ';') {
+                inField = false;
+            } else if (!inField) {
+                inField = true;
+                count++;
+            }
+        }
+        return count / 2;
+    }
+    /**
+     * Parse a plain decimal number such as 49.217160 or -122.667252 held in buf[start..end).
+     * The digits are accumulated as a fixed-point integer which is then scaled by a single
+     * division, giving the same correctly rounded result as Double.parseDouble.  Numbers in
+     * any other format are handed to Double.parseDouble.
+     *
+     * @return  the value of the number
+     */
+    static double parseDecimal(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
 
-                if (!remainder.isEmpty()) {
-                    String[] string = remainder.split(";");
-                    for (int i = 0; i < string.length; i+=2) {
-                        double lat = Double.parseDouble(string[i]);
-                        double lon = Double.parseDouble(string[i + 1]);
-                        LatLon l = new LatLon(lat, lon);
-                        elements.add(l);
-                    }
-                    storeRouteMap(routeNumber, patternName, elements);
-                    //elements.clear();
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            int c = buf[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
                 }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
 
+        if (i < end || digits == 0 || digits > 18 || mantissa > MAX_EXACT_MANTISSA
+                || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(ascii(buf, start, end));
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+    private static int indexOf(byte[] buf, byte b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == b) {
+                return i;
             }
         }
+        return -1;
+    }
+    private static String ascii(byte[] buf, int start, int end) {
+        return new String(buf, start, end - start, ASCII);
+    }
     /**
      * Store the parsed pattern into the named route
      * Your parser should call this method to insert each route pattern into the corresponding route object
@@ -91,11 +284,11 @@ public class RouteMapParser {
      *
      * @param routeNumber       the number of the route
      * @param patternName       the name of the pattern
-     * @param elements          the coordinate list of the pattern
+     * @param elements          the coordinates of the pattern, as interleaved latitudes and longitudes
      */
-    private void storeRouteMap(String routeNumber, String patternName, List<LatLon> elements) {
+    private void storeRouteMap(String routeNumber, String patternName, double[] elements) {
         Route r = RouteManager.getInstance().getRouteWithNumber(routeNumber);
         RoutePattern rp = r.getPattern(patternName);
-        rp.setPath(elements);
+        rp.setPath(elements, elements.length / 2);
     }
-}
\ No newline at end of file
+}
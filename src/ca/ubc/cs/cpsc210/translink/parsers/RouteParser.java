@@ -11,6 +11,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Parse route information in JSON format.
@@ -18,6 +20,36 @@ import java.io.IOException;
 public class RouteParser {
     private String filename;
 
+    /**
+     * The number, name and patterns of one route, as read before the route is added to the
+     * RouteManager
+     */
+    static class RouteData {
+        final String number;
+        final String name;
+        final List<PatternData> patterns = new ArrayList<>();
+
+        RouteData(String number, String name) {
+            this.number = number;
+            this.name = name;
+        }
+    }
+
+    /**
+     * The name, destination and direction of one pattern, as read before it is added to its route
+     */
+    static class PatternData {
+        final String name;
+        final String destination;
+        final String direction;
+
+        PatternData(String name, String destination, String direction) {
+            this.name = name;
+            this.destination = destination;
+            this.direction = direction;
+        }
+    }
+
 
     public RouteParser(String filename) {
         this.filename = filename;
@@ -49,12 +81,10 @@ public class RouteParser {
 
         for (int s=0; s < arr.length(); s++) {
             try {
-                JSONObject stop = arr.getJSONObject(s);
-                String name = stop.getString("Name");
-                String stopNumber = stop.getString("RouteNo");
-                Route r = RouteManager.getInstance().getRouteWithNumber(stopNumber, name);
-                JSONArray patterns = arr.getJSONObject(s).getJSONArray("Patterns");
-                parseRoutesHelper(patterns, r);
+                JSONObject route = arr.getJSONObject(s);
+                Route r = RouteManager.getInstance().getRouteWithNumber(route.getString("RouteNo"),
+                        route.getString("Name"));
+                parseRoutesHelper(route.getJSONArray("Patterns"), r);
 
             } catch (JSONException e) {
                 throw new RouteDataMissingException();
@@ -62,19 +92,79 @@ public class RouteParser {
         }
     }
 
+    /**
+     * Parse the patterns of a route, adding each to the route as it is parsed
+     *
+     * @param  patterns        the Patterns element of the route
+     * @param  r               the route
+     * @throws JSONException   when JSON data does not have expected format
+     * @throws RouteDataMissingException when JSON data is missing PatternNo, Destination or Direction
+     *                         elements for any pattern
+     */
     public void parseRoutesHelper(JSONArray patterns, Route r) throws JSONException, RouteDataMissingException {
         for (int i = 0; i < patterns.length(); i++) {
+            addPattern(r, readPattern(patterns, i));
+        }
+    }
+
+    /**
+     * Read route information from JSON response produced by Translink without adding it to the
+     * RouteManager.  The routes are added later by passing each of the results to storeRoute.
+     * Unlike parseRoutes, which adds each route as it is parsed, nothing is read when any route
+     * is missing data.
+     *
+     * @param  jsonResponse    string encoding JSON data to be parsed
+     * @return                 the routes read, in the order in which they appear in the data
+     * @throws JSONException   when JSON data does not have expected format
+     * @throws RouteDataMissingException when JSON data is missing Name, RouteNo or Patterns elements for any route
+     */
+    List<RouteData> readRoutes(String jsonResponse) throws JSONException, RouteDataMissingException {
+        JSONArray arr = new JSONArray(jsonResponse);
+        List<RouteData> routes = new ArrayList<>(arr.length());
+
+        for (int s=0; s < arr.length(); s++) {
             try {
-                JSONObject listOfPatterns = patterns.getJSONObject(i);
-                String destination = listOfPatterns.getString("Destination");
-                String direction = listOfPatterns.getString("Direction");
-                String patternNo = listOfPatterns.getString("PatternNo");
-                RoutePattern routePattern = new RoutePattern(patternNo, destination, direction, r);
-                r.addPattern(routePattern);
+                JSONObject route = arr.getJSONObject(s);
+                RouteData data = new RouteData(route.getString("RouteNo"), route.getString("Name"));
+                JSONArray patterns = route.getJSONArray("Patterns");
+                for (int i = 0; i < patterns.length(); i++) {
+                    data.patterns.add(readPattern(patterns, i));
+                }
+                routes.add(data);
 
             } catch (JSONException e) {
                 throw new RouteDataMissingException();
             }
         }
+        return routes;
+    }
+
+    /**
+     * Add a route read by readRoutes, and its patterns, to the RouteManager
+     *
+     * @param data  the route read
+     */
+    void storeRoute(RouteData data) {
+        Route r = RouteManager.getInstance().getRouteWithNumber(data.number, data.name);
+        for (PatternData pattern : data.patterns) {
+            addPattern(r, pattern);
+        }
+    }
+
+    private void addPattern(Route r, PatternData pattern) {
+        r.addPattern(new RoutePattern(pattern.name, pattern.destination, pattern.direction, r));
+    }
+
+    private PatternData readPattern(JSONArray patterns, int i) throws RouteDataMissingException {
+        try {
+            JSONObject listOfPatterns = patterns.getJSONObject(i);
+            String destination = listOfPatterns.getString("Destination");
+            String direction = listOfPatterns.getString("Direction");
+            String patternNo = listOfPatterns.getString("PatternNo");
+            return new PatternData(patternNo, destination, direction);
+
+        } catch (JSONException e) {
+            throw new RouteDataMissingException();
+        }
     }
 }
@@ -0,0 +1,175 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.*;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.SnapshotInvalidException;
+import ca.ubc.cs.cpsc210.translink.providers.MappedFileDataProvider;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Parser for a binary network snapshot produced by SnapshotWriter.  The snapshot file is
+ * memory mapped and used to rebuild the StopManager and RouteManager.
+ */
+public class SnapshotParser {
+    /** "BAUS" */
+    public static final int MAGIC = 0x42415553;
+    /** version of the snapshot format; increment whenever the layout changes */
+    public static final int VERSION = 1;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * The path of a pattern read from the mapped snapshot when it is first used
+     */
+    private static class MappedPath implements PathSource {
+        private ByteBuffer buffer;
+        private int position;
+        private int numPoints;
+
+        MappedPath(ByteBuffer buffer, int position, int numPoints) {
+            this.buffer = buffer;
+            this.position = position;
+            this.numPoints = numPoints;
+        }
+
+        @Override
+        public double[] decode() {
+            double[] path = new double[numPoints * 2];
+            for (int i = 0; i < path.length; i++) {
+                path[i] = buffer.getDouble(position + i * 8);
+            }
+            return path;
+        }
+
+        @Override
+        public int getNumPoints() {
+            return numPoints;
+        }
+    }
+
+    private File file;
+    private long sourceStamp;
+    private boolean lazy;
+
+    /**
+     * @param file          the snapshot file
+     * @param sourceStamp   stamp identifying the current source data
+     */
+    public SnapshotParser(File file, long sourceStamp) {
+        this(file, sourceStamp, false);
+    }
+
+    /**
+     * @param file          the snapshot file
+     * @param sourceStamp   stamp identifying the current source data
+     * @param lazy          true if pattern paths are to be read from the mapped file on first use
+     */
+    public SnapshotParser(File file, long sourceStamp, boolean lazy) {
+        this.file = file;
+        this.sourceStamp = sourceStamp;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Verify the snapshot and add all of its stops and routes to the stop and route managers.
+     * Nothing is added to the managers unless the header and checksum are valid.
+     *
+     * @throws IOException                  when error occurs mapping the file
+     * @throws SnapshotInvalidException     when the snapshot is of another version, was compiled from
+     *                                      other source data, or is truncated or corrupt
+     */
+    public void parse() throws IOException, SnapshotInvalidException {
+        ByteBuffer buffer = new MappedFileDataProvider(file).dataSourceToBuffer();
+
+        try {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new SnapshotInvalidException("Not a network snapshot");
+            }
+            if (buffer.getInt() != VERSION) {
+                throw new SnapshotInvalidException("Unsupported snapshot version");
+            }
+            if (buffer.getLong() != sourceStamp) {
+                throw new SnapshotInvalidException("Snapshot is stale");
+            }
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length != buffer.remaining()) {
+                throw new SnapshotInvalidException("Snapshot is truncated");
+            }
+            if (checksum != checksum(buffer)) {
+                throw new SnapshotInvalidException("Snapshot checksum mismatch");
+            }
+
+            parsePayload(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new SnapshotInvalidException("Snapshot is corrupt");
+        }
+    }
+
+    private int checksum(ByteBuffer buffer) {
+        ByteBuffer payload = buffer.duplicate();
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[64 * 1024];
+        while (payload.hasRemaining()) {
+            int n = Math.min(chunk.length, payload.remaining());
+            payload.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int) crc.getValue();
+    }
+
+    private void parsePayload(ByteBuffer buffer) {
+        StopManager stopManager = StopManager.getInstance();
+        int numStops = buffer.getInt();
+        for (int i = 0; i < numStops; i++) {
+            int number = buffer.getInt();
+            String name = readString(buffer);
+            double lat = buffer.getDouble();
+            double lon = buffer.getDouble();
+            stopManager.getStopWithId(number, name, new LatLon(lat, lon));
+        }
+
+        RouteManager routeManager = RouteManager.getInstance();
+        int numRoutes = buffer.getInt();
+        for (int i = 0; i < numRoutes; i++) {
+            Route route = routeManager.getRouteWithNumber(readString(buffer), readString(buffer));
+
+            int numPatterns = buffer.getInt();
+            for (int j = 0; j < numPatterns; j++) {
+                RoutePattern pattern = route.getPattern(readString(buffer), readString(buffer), readString(buffer));
+                int numPoints = buffer.getInt();
+                if (numPoints < 0 || numPoints > buffer.remaining() / 16) {
+                    throw new BufferUnderflowException();
+                }
+                PathSource source = new MappedPath(buffer, buffer.position(), numPoints);
+                if (lazy) {
+                    pattern.setPathSource(source);
+                } else {
+                    pattern.setPath(source.decode(), numPoints);
+                }
+                buffer.position(buffer.position() + numPoints * 16);
+            }
+
+            int numRouteStops = buffer.getInt();
+            for (int j = 0; j < numRouteStops; j++) {
+                route.addStop(stopManager.getStopWithId(buffer.getInt()));
+            }
+        }
+    }
+
+    private String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
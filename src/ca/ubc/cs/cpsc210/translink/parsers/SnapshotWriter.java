@@ -0,0 +1,138 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.*;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.RouteDataMissingException;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
+import ca.ubc.cs.cpsc210.translink.providers.AbstractFileDataProvider;
+import org.json.JSONException;
+
+import java.io.*;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compiles the fully linked network held in the StopManager and RouteManager (stops, routes,
+ * patterns, stop-route links and pattern paths) into a binary snapshot that can be loaded
+ * by SnapshotParser.
+ *
+ * The snapshot starts with a header of magic number, format version, source stamp, payload length
+ * and CRC32 checksum of the payload.  The source stamp identifies the text resources the snapshot
+ * was compiled from, so that a snapshot of older data is recognised as stale.
+ */
+public class SnapshotWriter {
+    private File file;
+    private long sourceStamp;
+
+    /**
+     * @param file          the file to which the snapshot is written
+     * @param sourceStamp   stamp identifying the source data
+     */
+    public SnapshotWriter(File file, long sourceStamp) {
+        this.file = file;
+        this.sourceStamp = sourceStamp;
+    }
+
+    /**
+     * Write a snapshot of the stop and route managers to the file.  The snapshot is written
+     * to a temporary file first, so a reader never sees a partially written snapshot.
+     *
+     * @throws IOException  when error occurs writing the file
+     */
+    public void write() throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(1 << 20);
+        writePayload(new DataOutputStream(payload));
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(SnapshotParser.MAGIC);
+            out.writeInt(SnapshotParser.VERSION);
+            out.writeLong(sourceStamp);
+            out.writeInt(bytes.length);
+            out.writeInt((int) crc.getValue());
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Unable to replace snapshot " + file);
+        }
+    }
+
+    private void writePayload(DataOutputStream out) throws IOException {
+        StopManager stopManager = StopManager.getInstance();
+        out.writeInt(stopManager.getNumStops());
+        for (Stop stop : stopManager) {
+            out.writeInt(stop.getNumber());
+            writeString(out, stop.getName());
+            out.writeDouble(stop.getLatitude());
+            out.writeDouble(stop.getLongitude());
+        }
+
+        RouteManager routeManager = RouteManager.getInstance();
+        out.writeInt(routeManager.getNumRoutes());
+        for (Route route : routeManager) {
+            writeString(out, route.getNumber());
+            writeString(out, route.getName());
+
+            List<RoutePattern> patterns = route.getPatterns();
+            out.writeInt(patterns.size());
+            for (RoutePattern pattern : patterns) {
+                writeString(out, pattern.getName());
+                writeString(out, pattern.getDestination());
+                writeString(out, pattern.getDirection());
+                double[] path = pattern.getCoordinates();
+                out.writeInt(path.length / 2);
+                for (double value : path) {
+                    out.writeDouble(value);
+                }
+            }
+
+            List<Stop> stops = route.getStops();
+            out.writeInt(stops.size());
+            for (Stop stop : stops) {
+                out.writeInt(stop.getNumber());
+            }
+        }
+    }
+
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(SnapshotParser.UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Compile the text resources in a res/raw directory into a snapshot file.
+     *
+     * Usage: SnapshotWriter rawDirectory snapshotFile [sourceStamp]
+     */
+    public static void main(String[] args)
+            throws IOException, JSONException, StopDataMissingException, RouteDataMissingException {
+        if (args.length < 2) {
+            System.err.println("Usage: SnapshotWriter rawDirectory snapshotFile [sourceStamp]");
+            System.exit(1);
+        }
+        File raw = new File(args[0]);
+        long stamp = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        new RouteParser(null).parseRoutes(
+                new String(AbstractFileDataProvider.readSourceRaw(new FileInputStream(new File(raw, "allroutes.json"))),
+                        SnapshotParser.UTF8));
+        new StopParser(null).parseStops(new BufferedInputStream(new FileInputStream(new File(raw, "stops.json"))));
+        byte[] routeMap = AbstractFileDataProvider.readSourceRaw(new FileInputStream(new File(raw, "allroutemapstxt.txt")));
+        new RouteMapParser(null).parse(routeMap, 0, routeMap.length);
+
+        new SnapshotWriter(new File(args[1]), stamp).write();
+        System.out.println("Wrote " + StopManager.getInstance().getNumStops() + " stops and "
+                + RouteManager.getInstance().getNumRoutes() + " routes to " + args[1]);
+    }
+}
@@ -10,6 +10,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A parser for the data returned by Translink stops query
@@ -18,17 +21,43 @@ public class StopParser {
 
     private String filename;
 
+    /**
+     * The fields of one stop, as read before the stop is added to the StopManager
+     */
+    static class StopData {
+        final int number;
+        final String name;
+        final LatLon locn;
+        final String routes;
+
+        StopData(int number, String name, LatLon locn, String routes) {
+            this.number = number;
+            this.name = name;
+            this.locn = locn;
+            this.routes = routes;
+        }
+    }
+
     public StopParser(String filename) {
         this.filename = filename;
     }
 
+    // fields of a stop record read by the streaming parser, in the order of the constants below
+    private static final String[] STOP_FIELDS = {"Name", "StopNo", "Latitude", "Longitude", "Routes"};
+    private static final int NAME = 0;
+    private static final int STOP_NO = 1;
+    private static final int LATITUDE = 2;
+    private static final int LONGITUDE = 3;
+    private static final int ROUTES = 4;
+
     /**
      * Parse stop data from the file and add all stops to stop manager.
+     * The file is read as a stream, so the JSON data is never held in memory as a whole.
      */
     public void parse() throws IOException, StopDataMissingException, JSONException {
         DataProvider dataProvider = new FileDataProvider(filename);
 
-        parseStops(dataProvider.dataSourceToString());
+        parseStops(dataProvider.dataSourceToStream());
     }
 
     /**
@@ -65,20 +94,168 @@ public class StopParser {
         }
     }
 
-    public void parseStopsHelper(JSONObject obj, Stop stop) throws JSONException, StopDataMissingException {
+    /**
+     * Parse stop information from a stream of JSON data produced by Translink, one stop at a time,
+     * without building a JSONArray for the whole response.
+     * Stores all stops and routes found in the StopManager and RouteManager.  The stream is closed
+     * when parsing is complete.
+     *
+     * @param in    stream of JSON data to be parsed
+     * @throws JSONException            when JSON data is not well formed or is not an array
+     * @throws StopDataMissingException when JSON data is missing Name, StopNo, Routes or location
+     *                                  (Latitude or Longitude) elements for any stop
+     * @throws IOException              when error occurs reading from stream
+     */
+    public void parseStops(InputStream in) throws JSONException, StopDataMissingException, IOException {
+        readStops(in, null);
+    }
+
+    /**
+     * Read stop information from a stream of JSON data produced by Translink without adding it
+     * to the StopManager.  The stops are added later by passing each of the results to storeStop.
+     *
+     * @param in    stream of JSON data to be parsed
+     * @return      the stops read, in the order in which they appear in the data
+     * @throws JSONException            when JSON data is not well formed or is not an array
+     * @throws StopDataMissingException when JSON data is missing Name, StopNo, Routes or location
+     *                                  (Latitude or Longitude) elements for any stop
+     * @throws IOException              when error occurs reading from stream
+     */
+    List<StopData> readStops(InputStream in) throws JSONException, StopDataMissingException, IOException {
+        List<StopData> stops = new ArrayList<>();
+        readStops(in, stops);
+        return stops;
+    }
+
+    /**
+     * Add a stop read by readStops to the StopManager and link it to its routes
+     *
+     * @param data  the stop read
+     */
+    void storeStop(StopData data) {
+        Stop r = StopManager.getInstance().getStopWithId(data.number, data.name, data.locn);
+        parseStopsHelper(data.routes, r);
+    }
+
+    /**
+     * Read stops from the stream, adding them to the given list or, if the list is null,
+     * storing each one as soon as it has been read
+     */
+    private void readStops(InputStream in, List<StopData> stops)
+            throws JSONException, StopDataMissingException, IOException {
+        JsonStreamReader reader = new JsonStreamReader(in);
+        String[] values = new String[STOP_FIELDS.length];
+        JsonStreamReader.Token[] types = new JsonStreamReader.Token[STOP_FIELDS.length];
+
         try {
-            String routes = obj.getString("Routes");
-            String[] splitRoutes = routes.split(",");
-            for (String s1 : splitRoutes) {
-                Route route = RouteManager.getInstance().getRouteWithNumber(s1.trim());
-                stop.addRoute(route);
-                route.addStop(stop);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                    throw new StopDataMissingException();
+                }
+                readStopRecord(reader, values, types);
+
+                StopData data = new StopData(intField(values, types, STOP_NO), stringField(values, types, NAME),
+                        new LatLon(doubleField(values, types, LATITUDE), doubleField(values, types, LONGITUDE)),
+                        stringField(values, types, ROUTES));
+                if (stops == null) {
+                    storeStop(data);
+                } else {
+                    stops.add(data);
+                }
             }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void parseStopsHelper(JSONObject obj, Stop stop) throws JSONException, StopDataMissingException {
+        try {
+            parseStopsHelper(obj.getString("Routes"), stop);
         }
         catch (JSONException e) {
             throw new StopDataMissingException();
         }
 
     }
+
+    /**
+     * Add the stop to each route in a comma separated list of route numbers
+     *
+     * @param routes    comma separated list of route numbers
+     * @param stop      the stop on those routes
+     */
+    public void parseStopsHelper(String routes, Stop stop) {
+        String[] splitRoutes = routes.split(",");
+        for (String s1 : splitRoutes) {
+            Route route = RouteManager.getInstance().getRouteWithNumber(s1.trim());
+            stop.addRoute(route);
+            route.addStop(stop);
+        }
+    }
+
+    /**
+     * Read the fields of one stop object, keeping the text and token type of each field in STOP_FIELDS
+     * and skipping all others.  A field that is absent is left with a null type.
+     */
+    private void readStopRecord(JsonStreamReader reader, String[] values, JsonStreamReader.Token[] types)
+            throws JSONException, IOException {
+        for (int i = 0; i < types.length; i++) {
+            types[i] = null;
+            values[i] = null;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = reader.selectName(STOP_FIELDS);
+            JsonStreamReader.Token t = reader.peek();
+            if (field >= 0 && (t == JsonStreamReader.Token.STRING || t == JsonStreamReader.Token.NUMBER)) {
+                types[field] = t;
+                values[field] = reader.nextString();
+            } else {
+                if (field >= 0) {
+                    types[field] = t;
+                }
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    // The field accessors below accept the same values as JSONObject.getString, getInt and getDouble
+
+    private String stringField(String[] values, JsonStreamReader.Token[] types, int field)
+            throws StopDataMissingException {
+        if (types[field] != JsonStreamReader.Token.STRING) {
+            throw new StopDataMissingException();
+        }
+        return values[field];
+    }
+
+    private int intField(String[] values, JsonStreamReader.Token[] types, int field)
+            throws StopDataMissingException {
+        try {
+            if (types[field] == JsonStreamReader.Token.NUMBER) {
+                return (int) Double.parseDouble(values[field]);
+            } else if (types[field] == JsonStreamReader.Token.STRING) {
+                return Integer.parseInt(values[field]);
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new StopDataMissingException();
+    }
+
+    private double doubleField(String[] values, JsonStreamReader.Token[] types, int field)
+            throws StopDataMissingException {
+        try {
+            if (types[field] == JsonStreamReader.Token.NUMBER || types[field] == JsonStreamReader.Token.STRING) {
+                return Double.parseDouble(values[field]);
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new StopDataMissingException();
+    }
 }
 
@@ -0,0 +1,14 @@
+package ca.ubc.cs.cpsc210.translink.parsers.exception;
+
+/**
+ * Represents exception raised when a network snapshot is stale, corrupt or of an unknown version.
+ */
+public class SnapshotInvalidException extends Exception {
+    public SnapshotInvalidException() {
+        super();
+    }
+
+    public SnapshotInvalidException(String msg) {
+        super(msg);
+    }
+}
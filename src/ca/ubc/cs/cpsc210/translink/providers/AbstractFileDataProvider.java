@@ -1,6 +1,10 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * Common functionality for file data providers
@@ -29,21 +33,64 @@ public abstract class AbstractFileDataProvider implements DataProvider {
         return sb.toString();
     }
 
+    @Override
+    public Future<ByteBuffer> dataSourceToBufferAsync(DataCallback<ByteBuffer> callback) {
+        return AsyncData.submit(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws IOException {
+                return dataSourceToBuffer();
+            }
+        }, callback);
+    }
+
+    /**
+     * Read source data as a buffer; called on the pool of AsyncData by dataSourceToBufferAsync
+     *
+     * @return  buffer holding source data
+     * @throws IOException  when error occurs reading data from file
+     */
+    public ByteBuffer dataSourceToBuffer() throws IOException {
+        byte[] bytes = dataSourceToBytes();
+        if (bytes == null) {
+            throw new IOException("Failed to read data");
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Read all of the source data from input stream as bytes
+     *
+     * @param is  input stream connected to source data
+     * @return  source data as bytes, or null if an error occurs reading data from file
+     */
     public static byte[] readSourceRaw(InputStream is) {
         try {
-            final int maxlen = 4 * 1024 * 1024;
-
-            byte[] bytes = new byte[maxlen];
-            int nread = is.read(bytes, 0, maxlen);
-            assert nread <= maxlen;
-            byte[] xbytes = new byte[1];
-            int xnread = is.read(xbytes, 0, 1);
-            assert xnread == 0;
-            byte[] ans = new byte[nread];
-            System.arraycopy(bytes, 0, ans, 0, nread);
-            return ans;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            try {
+                int available = is.available();
+                byte[] bytes = new byte[available > 0 ? available : 64 * 1024];
+                int length = 0;
+                int nread;
+
+                while (true) {
+                    if (length == bytes.length) {
+                        // check for the end before growing, so a stream whose size is known is copied only once
+                        int next = is.read();
+                        if (next == -1) {
+                            break;
+                        }
+                        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                        bytes[length++] = (byte) next;
+                    }
+                    nread = is.read(bytes, length, bytes.length - length);
+                    if (nread == -1) {
+                        break;
+                    }
+                    length += nread;
+                }
+                return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+            } finally {
+                is.close();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
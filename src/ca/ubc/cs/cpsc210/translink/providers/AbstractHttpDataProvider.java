@@ -1,65 +1,323 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
+import ca.ubc.cs.cpsc210.translink.util.Backoff;
+import ca.ubc.cs.cpsc210.translink.util.Clock;
+
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Abstract Http data provider
+ * Abstract Http data provider.  Requests are sent through an HttpTransport, which by default
+ * keeps connections alive and asks for compressed responses; another transport can be plugged
+ * in for all providers or for a single one.
+ *
+ * The latencies of the requests to each endpoint are recorded in an EndpointLatency, from which
+ * the read timeout of the next request is set.  A request not answered within the 95th
+ * percentile latency is sent a second time, and whichever response arrives first is used.  A
+ * request that fails for want of a response, or with a server error, is tried again up to
+ * MAX_ATTEMPTS times in all, after a jittered exponential backoff.  Hedged requests run on a pool
+ * of at most HEDGE_THREADS threads; when all are busy, requests are sent without hedging.
+ *
+ * A provider given a RequestPermit takes a permit before each request it sends, including each
+ * retry and hedge, so that a rate limit counts every request.  A hedge is only sent if a permit
+ * is free at once.
  */
 public abstract class AbstractHttpDataProvider implements DataProvider {
-    protected HttpURLConnection conn;
+    public static final int CONNECT_TIMEOUT = 2000;  // timeout in ms
+    public static final int READ_TIMEOUT = 3000;     // timeout in ms
+    public static final int MAX_ATTEMPTS = 3;
+    public static final long BACKOFF_BASE = 250;     // backoff in ms
+    public static final long BACKOFF_CAP = 2000;     // backoff in ms
+    public static final int HEDGE_THREADS = 8;
+    private static final int HTTP_OK = 200;          // HTTP success code
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private static final Backoff BACKOFF = new Backoff(BACKOFF_BASE, BACKOFF_CAP, new Random());
+    // runs both requests of a hedged pair, so that neither waits behind other work; rejects
+    // requests rather than queueing them when all its threads are busy
+    private static final ExecutorService HEDGE_EXECUTOR = new ThreadPoolExecutor(0, HEDGE_THREADS,
+            60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "HttpHedge");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static volatile HttpTransport defaultTransport = new UrlConnectionTransport();
+    private HttpTransport transport;
+    private volatile RequestPermit permit;
+
+    /**
+     * Permission to send a request, such as a token from a rate limiter
+     */
+    public interface RequestPermit {
+        /**
+         * Take a permit, waiting for one if none is free
+         *
+         * @throws InterruptedException  when interrupted while waiting
+         */
+        void acquire() throws InterruptedException;
+
+        /**
+         * Take a permit if one is free now
+         *
+         * @return  true if a permit was taken
+         */
+        boolean tryAcquire();
+    }
 
     public AbstractHttpDataProvider() {
-        conn = null;
+        transport = defaultTransport;
+    }
+
+    /**
+     * Set the transport used by Http data providers created from now on
+     *
+     * @param transport     the transport
+     */
+    public static void setDefaultTransport(HttpTransport transport) {
+        defaultTransport = transport;
+    }
+
+    /**
+     * Set the transport used by this provider
+     *
+     * @param transport     the transport
+     */
+    public void setTransport(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Set the permit taken before each request sent by this provider
+     *
+     * @param permit    the permit, or null to send requests without one
+     */
+    public void setPermit(RequestPermit permit) {
+        this.permit = permit;
+    }
+
+    /**
+     * Request the data and read the whole of the response, whatever its response code.  The
+     * request is hedged when slow and retried when it fails, as described above.
+     *
+     * @return  the result of the last request made; never throws, as every failure is a kind of result
+     */
+    public HttpResult fetch() {
+        EndpointLatency latency = EndpointLatency.forEndpoint(getEndpoint());
+        HttpResult result = fetchHedged(latency);
+        for (int retry = 0; retry + 1 < MAX_ATTEMPTS && isRetryable(result); retry++) {
+            try {
+                BACKOFF.sleep(retry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+            latency.countRetry();
+            result = fetchHedged(latency);
+        }
+        return result;
     }
 
+    /**
+     * Request the data on the pool of AsyncData, without blocking the caller
+     *
+     * @param callback  passed the result of the request, whatever it is; may be null
+     * @return  future of the result of the request
+     */
+    public Future<HttpResult> fetchAsync(DataCallback<HttpResult> callback) {
+        return AsyncData.submit(new Callable<HttpResult>() {
+            @Override
+            public HttpResult call() {
+                return fetch();
+            }
+        }, callback);
+    }
+
+    /**
+     * Read data source as string
+     *
+     * @return  the body of the response
+     * @throws IOException  when no response is received or response code is not HTTP OK
+     */
     @Override
     public String dataSourceToString() throws IOException {
-        final int CONNECT_TIMEOUT = 2000;  // timeout in ms
-        final int READ_TIMEOUT = 3000;     // timeout in ms
-        final int HTTP_OK = 200;           // HTTP success code
-        StringBuilder jsonResults = new StringBuilder();
+        HttpResult result = fetch();
+        if (!result.isOk()) {
+            throw new IOException(result + " - failed to obtain data", result.getError());
+        }
+        return result.getBodyAsString();
+    }
 
-        URL url = getURL();
+    /**
+     * Read data source as bytes
+     *
+     * @return  the body of the response
+     * @throws IOException  when no response is received or response code is not HTTP OK
+     */
+    @Override
+    public byte[] dataSourceToBytes() throws IOException {
+        HttpResult result = fetch();
+        if (!result.isOk()) {
+            throw new IOException(result + " - failed to obtain data", result.getError());
+        }
+        return result.getBody();
+    }
 
-        try {
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setConnectTimeout(CONNECT_TIMEOUT);
-            conn.setRequestProperty("Accept", "application/JSON");
-            conn.setReadTimeout(READ_TIMEOUT);
-            conn.connect();
-            int response = conn.getResponseCode();
-            if (response != HTTP_OK) {
-                throw new IOException("HTTP response code:" + response + "- failed to obtain data");
+    @Override
+    public Future<ByteBuffer> dataSourceToBufferAsync(DataCallback<ByteBuffer> callback) {
+        return AsyncData.submit(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws IOException {
+                return ByteBuffer.wrap(dataSourceToBytes());
             }
+        }, callback);
+    }
 
-            jsonResults = readResponse();
-        } catch (Exception e) {
-            jsonResults.append("Error");
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
+    /**
+     * Send the request and return the response body as a stream.  The connection is
+     * released for reuse when the stream is closed.
+     *
+     * @return  stream connected to the response body
+     * @throws IOException  when connection fails or response code is not HTTP OK
+     */
+    @Override
+    public InputStream dataSourceToStream() throws IOException {
+        if (!acquirePermit()) {
+            throw new InterruptedIOException("Interrupted waiting for permit");
         }
+        int readTimeout = EndpointLatency.forEndpoint(getEndpoint()).getReadTimeout();
+        HttpResponse response = transport.get(getURL(), CONNECT_TIMEOUT, readTimeout);
+        if (response.getCode() != HTTP_OK) {
+            response.close();
+            throw new IOException("HTTP response code:" + response.getCode() + "- failed to obtain data");
+        }
+        return response.getBody();
+    }
+
+    /**
+     * Get the name of the endpoint requested, under which the latencies of requests are recorded.
+     * By default all providers of a class request the same endpoint.
+     *
+     * @return  the name of the endpoint
+     */
+    protected String getEndpoint() {
+        return getClass().getName();
+    }
 
-        return jsonResults.toString();
+    // failures that another request may not meet: no response, or an error of the server
+    private static boolean isRetryable(HttpResult result) {
+        return result.getStatus() == HttpResult.Status.TIMEOUT
+                || result.getStatus() == HttpResult.Status.NETWORK_ERROR
+                || result.getCode() >= HTTP_SERVER_ERROR;
+    }
+
+    // take a permit, if this provider needs one; false if interrupted while waiting
+    private boolean acquirePermit() {
+        RequestPermit current = permit;
+        if (current == null) {
+            return true;
+        }
+        try {
+            current.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
-    private StringBuilder readResponse() throws IOException {
-        StringBuilder jsonResults = new StringBuilder();
-        InputStreamReader in = new InputStreamReader(conn.getInputStream());
+    // send the request, and send it again if it is not answered within the hedging delay; the
+    // request that loses is left to finish, so that its connection can be reused
+    private HttpResult fetchHedged(final EndpointLatency latency) {
+        if (!acquirePermit()) {
+            return HttpResult.failure(new InterruptedIOException("Interrupted waiting for permit"));
+        }
+        final int readTimeout = latency.getReadTimeout();
+        long hedgeDelay = latency.getHedgeDelay();
+        if (hedgeDelay < 0) {
+            return fetchOnce(latency, readTimeout);
+        }
 
-        // Load the results into a StringBuilder
-        int read;
-        char[] buff = new char[1024];
-        while((read = in.read(buff)) != -1) {
-            jsonResults.append(buff, 0, read);
+        Callable<HttpResult> request = new Callable<HttpResult>() {
+            @Override
+            public HttpResult call() {
+                return fetchOnce(latency, readTimeout);
+            }
+        };
+        CompletionService<HttpResult> requests = new ExecutorCompletionService<>(HEDGE_EXECUTOR);
+        Future<HttpResult> first;
+        try {
+            first = requests.submit(request);
+        } catch (RejectedExecutionException e) {
+            return fetchOnce(latency, readTimeout);
+        }
+        try {
+            Future<HttpResult> done = requests.poll(hedgeDelay, TimeUnit.NANOSECONDS);
+            if (done != null) {
+                return done.get();
+            }
+            RequestPermit current = permit;
+            if (current != null && !current.tryAcquire()) {
+                return first.get();
+            }
+            Future<HttpResult> second;
+            try {
+                second = requests.submit(request);
+            } catch (RejectedExecutionException e) {
+                return first.get();
+            }
+            done = requests.take();
+            HttpResult result = done.get();
+            if (isRetryable(result)) {
+                // the other request may yet be answered
+                HttpResult other = requests.take().get();
+                if (!isRetryable(other)) {
+                    done = done == first ? second : first;
+                    result = other;
+                }
+            }
+            latency.countHedge(done == second);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return HttpResult.failure(new InterruptedIOException("Interrupted waiting for response"));
+        } catch (ExecutionException e) {
+            return HttpResult.failure(new IOException("Request failed", e.getCause()));
         }
+    }
 
-        return jsonResults;
+    // send the request once, and record its latency as timed by the clock of the endpoint
+    private HttpResult fetchOnce(EndpointLatency latency, int readTimeout) {
+        Clock clock = latency.getClock();
+        long start = clock.nanoTime();
+        HttpResult result;
+        try {
+            HttpResponse response = transport.get(getURL(), CONNECT_TIMEOUT, readTimeout);
+            result = HttpResult.response(response.getCode(), response.readBody());
+        } catch (IOException e) {
+            result = HttpResult.failure(e);
+        }
+        latency.record(result, clock.nanoTime() - start);
+        return result;
     }
 
     /**
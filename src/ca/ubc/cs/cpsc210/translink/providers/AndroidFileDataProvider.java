@@ -34,4 +34,11 @@ public class AndroidFileDataProvider extends AbstractFileDataProvider {
                 resources.getIdentifier("raw/" + fileName, "raw", cxt.getPackageName()));
         return readSourceRaw(is);
     }
+
+    @Override
+    public InputStream dataSourceToStream() throws IOException {
+        Resources resources = cxt.getResources();
+        return resources.openRawResource(
+                resources.getIdentifier("raw/" + fileName, "raw", cxt.getPackageName()));
+    }
 }
@@ -0,0 +1,324 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import ca.ubc.cs.cpsc210.translink.model.Arrival;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.parsers.ArrivalsParser;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.ArrivalsDataMissingException;
+import ca.ubc.cs.cpsc210.translink.util.Clock;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Holds the arrivals most recently fetched for each stop, by stop number, for a time that depends
+ * on how soon the next bus is due: TTL_PER_MINUTE_MS for each minute until the soonest arrival,
+ * but no less than MIN_TTL_MS and no more than MAX_TTL_MS, so that countdowns shown from the cache
+ * are never more than a fraction of the time to the next bus out of date.  A response saying the
+ * stop has no arrivals is held for MIN_TTL_MS; failures are not held at all.
+ *
+ * Requests for a stop that is not held are coalesced: the first starts a fetch, and the others
+ * made while it is in flight wait for it and share its result.
+ *
+ * Singleton pattern applied to ensure only a single instance of this class that
+ * is globally accessible throughout application.
+ */
+public class ArrivalCache {
+    public static final long MIN_TTL_MS = 5000;
+    public static final long MAX_TTL_MS = 30000;
+    public static final long TTL_PER_MINUTE_MS = 5000;
+    private static final long NANOS_PER_MS = 1000000;
+    private static ArrivalCache instance;
+
+    /**
+     * Fetches the arrivals at a stop
+     */
+    public interface Fetcher {
+        /**
+         * @param stop  the stop
+         * @return      the result of requesting the arrivals at the stop
+         */
+        HttpResult fetch(Stop stop);
+    }
+
+    /**
+     * The arrivals fetched for a stop, with the result of the request for them
+     */
+    public static class Entry {
+        private final HttpResult result;
+        private final List<Arrival> arrivals;
+        private final long expiresAt;
+
+        private Entry(HttpResult result, List<Arrival> arrivals, long expiresAt) {
+            this.result = result;
+            this.arrivals = arrivals;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return  the result of the request for the arrivals
+         */
+        public HttpResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return  the arrivals, with the arrivals of each route in order, or null if the
+         *          request failed or its response could not be parsed
+         */
+        public List<Arrival> getArrivals() {
+            return arrivals;
+        }
+    }
+
+    private Fetcher fetcher;
+    private Clock clock;
+    private Map<Integer, Entry> entries;
+    private Map<Integer, CallbackFuture<Entry>> inFlight;
+    private long hits;
+    private long misses;
+    private long coalesced;
+
+    /**
+     * Constructs an empty cache that fetches arrivals from Translink
+     */
+    private ArrivalCache() {
+        fetcher = new Fetcher() {
+            @Override
+            public HttpResult fetch(Stop stop) {
+                return new HttpArrivalDataProvider(stop).fetch();
+            }
+        };
+        clock = Clock.SYSTEM;
+        entries = new HashMap<>();
+        inFlight = new HashMap<>();
+    }
+
+    /**
+     * Gets one and only instance of this class
+     *
+     * @return  instance of class
+     */
+    public static synchronized ArrivalCache getInstance() {
+        if (instance == null) {
+            instance = new ArrivalCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Get the arrivals at a stop, fetching them unless they are held and have not expired or
+     * are already being fetched.  Blocks while they are fetched, so must not be called on the
+     * UI thread.
+     *
+     * @param stop  the stop
+     * @return      the arrivals at the stop
+     * @throws InterruptedException  when interrupted waiting for a fetch by another thread
+     */
+    public Entry get(Stop stop) throws InterruptedException {
+        Fetcher source;
+        synchronized (this) {
+            source = fetcher;
+        }
+        return get(stop, source);
+    }
+
+    /**
+     * Get the arrivals at a stop as get(stop) does, but fetch them with the given fetcher if
+     * they must be fetched
+     *
+     * @param stop      the stop
+     * @param source    the fetcher
+     * @return          the arrivals at the stop
+     * @throws InterruptedException  when interrupted waiting for a fetch by another thread
+     */
+    public Entry get(Stop stop, Fetcher source) throws InterruptedException {
+        // runs the fetch here unless another thread has started it already
+        CallbackFuture<Entry> task = lookup(stop, source, false);
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Get the arrivals at a stop without blocking.  If they are held and have not expired, they
+     * are passed to the callback at once; otherwise they are passed to it once fetched, either by
+     * the fetch already in flight or by a new fetch on the pool of AsyncData.  No thread waits
+     * for a fetch in flight.
+     *
+     * @param stop      the stop
+     * @param callback  passed the arrivals at the stop; may be null
+     * @return          future of the arrivals at the stop
+     */
+    public Future<Entry> getAsync(Stop stop, DataCallback<Entry> callback) {
+        Fetcher source;
+        synchronized (this) {
+            source = fetcher;
+        }
+        CallbackFuture<Entry> task = lookup(stop, source, true);
+        if (callback != null) {
+            task.addCallback(callback);
+        }
+        return task;
+    }
+
+    // find the future of the arrivals at a stop: a completed one if they are held, the one in
+    // flight if they are being fetched, and otherwise a new one, started on the pool if async
+    private CallbackFuture<Entry> lookup(final Stop stop, final Fetcher source, boolean async) {
+        final Integer key = stop.getNumber();
+        CallbackFuture<Entry> task;
+
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null && clock.nanoTime() - entry.expiresAt < 0) {
+                hits++;
+                task = new CallbackFuture<>(new Callable<Entry>() {
+                    @Override
+                    public Entry call() {
+                        return entry;
+                    }
+                }, null);
+                task.run();
+                return task;
+            }
+            task = inFlight.get(key);
+            if (task != null) {
+                coalesced++;
+                return task;
+            }
+            misses++;
+            task = new CallbackFuture<>(new Callable<Entry>() {
+                @Override
+                public Entry call() {
+                    return load(key, stop, source);
+                }
+            }, null);
+            inFlight.put(key, task);
+        }
+
+        if (async) {
+            AsyncData.execute(task);
+        }
+        return task;
+    }
+
+    // fetch and parse the arrivals at a stop, and hold them if they can be held
+    private Entry load(Integer key, Stop stop, Fetcher source) {
+        Entry entry = null;
+        try {
+            HttpResult result = source.fetch(stop);
+            List<Arrival> arrivals = null;
+            long ttl = 0;
+            if (result.isOk()) {
+                try {
+                    arrivals = Collections.unmodifiableList(
+                            ArrivalsParser.parseArrivalList(stop, result.getBodyAsStream()));
+                    ttl = timeToLive(arrivals);
+                } catch (JSONException | ArrivalsDataMissingException | IOException e) {
+                    e.printStackTrace();
+                }
+            } else if (result.getStatus() == HttpResult.Status.HTTP_ERROR) {
+                ttl = MIN_TTL_MS;
+            }
+            entry = new Entry(result, arrivals, clock.nanoTime() + ttl * NANOS_PER_MS);
+            return entry;
+        } finally {
+            synchronized (this) {
+                inFlight.remove(key);
+                if (entry != null && clock.nanoTime() - entry.expiresAt < 0) {
+                    entries.put(key, entry);
+                } else {
+                    entries.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the time for which arrivals are held
+     *
+     * @param arrivals  the arrivals at a stop
+     * @return          the time in ms for which they are held
+     */
+    public static long timeToLive(List<Arrival> arrivals) {
+        int soonest = Integer.MAX_VALUE;
+        for (Arrival arrival : arrivals) {
+            soonest = Math.min(soonest, arrival.getTimeToStopInMins());
+        }
+        return Math.max(MIN_TTL_MS, Math.min(MAX_TTL_MS, (long) soonest * TTL_PER_MINUTE_MS));
+    }
+
+    /**
+     * Set the fetcher by which arrivals are fetched from now on
+     *
+     * @param fetcher   the fetcher
+     */
+    public synchronized void setFetcher(Fetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Set the clock by which arrivals expire
+     *
+     * @param clock     the clock
+     */
+    public synchronized void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Remove the arrivals at a stop, so they are fetched again when next requested
+     *
+     * @param stop  the stop
+     */
+    public synchronized void remove(Stop stop) {
+        entries.remove(stop.getNumber());
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Get the number of requests answered without a fetch of their own, from the cache or by
+     * sharing a fetch in flight
+     */
+    public synchronized long getSavedRequests() {
+        return hits + coalesced;
+    }
+
+    /**
+     * Get the fraction of requests answered without a fetch of their own
+     */
+    public synchronized double getHitRatio() {
+        long requests = hits + misses + coalesced;
+        return requests == 0 ? 0 : (double) (hits + coalesced) / requests;
+    }
+
+    /**
+     * Remove all arrivals from the cache and reset the counters
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        coalesced = 0;
+    }
+}
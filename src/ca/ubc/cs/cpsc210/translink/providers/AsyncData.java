@@ -0,0 +1,46 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The pool of threads on which data sources are read asynchronously.  The pool is bounded, so
+ * that however many reads are started, at most THREADS run at once and the rest wait in line
+ * without holding a thread.
+ */
+public class AsyncData {
+    public static final int THREADS = 4;
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "AsyncData");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Run a task on the pool
+     *
+     * @param task      the task
+     * @param callback  passed the outcome of the task, or null
+     * @return          the future of the outcome of the task
+     */
+    public static <T> CallbackFuture<T> submit(Callable<T> task, DataCallback<T> callback) {
+        CallbackFuture<T> future = new CallbackFuture<>(task, callback);
+        EXECUTOR.execute(future);
+        return future;
+    }
+
+    /**
+     * Run a task already wrapped in a future on the pool
+     *
+     * @param future    the future of the task
+     */
+    public static void execute(CallbackFuture<?> future) {
+        EXECUTOR.execute(future);
+    }
+}
@@ -0,0 +1,237 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.util.Clock;
+import ca.ubc.cs.cpsc210.translink.util.LatencyHistogram;
+import ca.ubc.cs.cpsc210.translink.util.TokenBucket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fetches the arrivals at many stops at once, such as the stops in view or a list of favourite
+ * stops, through an arrival cache.  The fetches run on a pool of a fixed number of threads, and
+ * each request sent to Translink, including every retry and hedge of a fetch, first takes a token
+ * from a token bucket, so that the requests of all batches together stay within the quota of the
+ * API key.  Stops whose arrivals are held by the cache, or are being fetched already, take no
+ * token.  The results of a batch are returned
+ * in the order in which they complete.
+ */
+public class BatchArrivalFetcher {
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_BURST = 10;
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 2;
+
+    private final ExecutorService pool;
+    private final TokenBucket bucket;
+    private final ArrivalCache cache;
+    private final Fetcher fetcher;
+    private final Clock clock;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    // a token from the bucket for each request
+    private final AbstractHttpDataProvider.RequestPermit permit = new AbstractHttpDataProvider.RequestPermit() {
+        @Override
+        public void acquire() throws InterruptedException {
+            bucket.acquire();
+        }
+
+        @Override
+        public boolean tryAcquire() {
+            return bucket.tryAcquire();
+        }
+    };
+
+    // fetches with a token for each request, and times the fetch
+    private final ArrivalCache.Fetcher limitedFetcher = new ArrivalCache.Fetcher() {
+        @Override
+        public HttpResult fetch(Stop stop) {
+            long start = clock.nanoTime();
+            HttpResult result = fetcher.fetch(stop, permit);
+            latencies.record(clock.nanoTime() - start);
+            return result;
+        }
+    };
+
+    /**
+     * Sends the requests for the arrivals at a stop, taking a permit before each one
+     */
+    public interface Fetcher {
+        /**
+         * @param stop      the stop
+         * @param permit    the permit to take before each request sent, including retries and hedges
+         * @return          the result of requesting the arrivals at the stop
+         */
+        HttpResult fetch(Stop stop, AbstractHttpDataProvider.RequestPermit permit);
+    }
+
+    /**
+     * The arrivals fetched for one stop of a batch
+     */
+    public static class Result {
+        private final Stop stop;
+        private final ArrivalCache.Entry entry;
+        private final long latency;
+
+        private Result(Stop stop, ArrivalCache.Entry entry, long latency) {
+            this.stop = stop;
+            this.entry = entry;
+            this.latency = latency;
+        }
+
+        public Stop getStop() {
+            return stop;
+        }
+
+        public ArrivalCache.Entry getEntry() {
+            return entry;
+        }
+
+        /**
+         * @return  the time in nanoseconds from the start of the batch until the arrivals were
+         *          fetched, including waiting for a thread and a token
+         */
+        public long getLatency() {
+            return latency;
+        }
+    }
+
+    /**
+     * The fetches for a set of stops, whose results are taken as they complete
+     */
+    public static class Batch {
+        private final ExecutorCompletionService<Result> completion;
+        private final List<Future<Result>> futures;
+        private int remaining;
+
+        private Batch(ExecutorCompletionService<Result> completion, List<Future<Result>> futures) {
+            this.completion = completion;
+            this.futures = futures;
+            this.remaining = futures.size();
+        }
+
+        /**
+         * @return  true if there is a result not yet taken
+         */
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /**
+         * Take the next result to complete, waiting for it if necessary
+         *
+         * @return  the result
+         * @throws InterruptedException  when interrupted while waiting
+         */
+        public Result next() throws InterruptedException {
+            remaining--;
+            try {
+                return completion.take().get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        /**
+         * Cancel the fetches not yet started; no more results are taken.  Fetches already started
+         * are left to finish without being interrupted, as other callers of the arrival cache may
+         * be waiting for them, and their arrivals are held by the cache.
+         */
+        public void cancel() {
+            for (Future<Result> future : futures) {
+                future.cancel(false);
+            }
+            remaining = 0;
+        }
+    }
+
+    /**
+     * Construct a fetcher of DEFAULT_THREADS threads, limited to bursts of DEFAULT_BURST requests
+     * and DEFAULT_REQUESTS_PER_SECOND requests a second, through the arrival cache
+     */
+    public BatchArrivalFetcher() {
+        this(DEFAULT_THREADS, new TokenBucket(DEFAULT_BURST, DEFAULT_REQUESTS_PER_SECOND, Clock.SYSTEM),
+                ArrivalCache.getInstance(), new Fetcher() {
+                    @Override
+                    public HttpResult fetch(Stop stop, AbstractHttpDataProvider.RequestPermit permit) {
+                        HttpArrivalDataProvider provider = new HttpArrivalDataProvider(stop);
+                        provider.setPermit(permit);
+                        return provider.fetch();
+                    }
+                }, Clock.SYSTEM);
+    }
+
+    /**
+     * @param threads   the number of threads on which fetches run
+     * @param bucket    the token bucket from which each request takes a token
+     * @param cache     the cache through which arrivals are fetched
+     * @param fetcher   the fetcher that sends the requests, taking a token for each
+     * @param clock     the clock by which fetches are timed
+     */
+    public BatchArrivalFetcher(int threads, TokenBucket bucket, ArrivalCache cache, Fetcher fetcher, Clock clock) {
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BatchArrivalFetcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.bucket = bucket;
+        this.cache = cache;
+        this.fetcher = fetcher;
+        this.clock = clock;
+    }
+
+    /**
+     * Start fetching the arrivals at each of the given stops
+     *
+     * @param stops     the stops
+     * @return          the batch of fetches, from which the results are taken as they complete
+     */
+    public Batch fetch(Collection<Stop> stops) {
+        ExecutorCompletionService<Result> completion = new ExecutorCompletionService<>(pool);
+        List<Future<Result>> futures = new ArrayList<>(stops.size());
+        final long start = clock.nanoTime();
+        for (final Stop stop : stops) {
+            futures.add(completion.submit(new Callable<Result>() {
+                @Override
+                public Result call() throws InterruptedException {
+                    ArrivalCache.Entry entry = cache.get(stop, limitedFetcher);
+                    return new Result(stop, entry, clock.nanoTime() - start);
+                }
+            }));
+        }
+        return new Batch(completion, futures);
+    }
+
+    /**
+     * @return  the latencies of the fetches sent to Translink, including any retries and hedges,
+     *          and waiting for their tokens
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return  the token bucket from which each request takes a token
+     */
+    public TokenBucket getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Stop the threads once the fetches started have completed
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,73 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A FutureTask that passes its outcome to callbacks when it completes, so that callers can go on
+ * with the result without a thread blocking in get.  A callback added after the task has
+ * completed is called at once, on the thread adding it.
+ *
+ * @param <T>   the type of the result
+ */
+public class CallbackFuture<T> extends FutureTask<T> {
+    private List<DataCallback<T>> callbacks = new ArrayList<>();
+
+    /**
+     * @param task      the task computing the result
+     * @param callback  a callback to add, or null
+     */
+    public CallbackFuture(Callable<T> task, DataCallback<T> callback) {
+        super(task);
+        if (callback != null) {
+            callbacks.add(callback);
+        }
+    }
+
+    /**
+     * Add a callback to be passed the outcome of the task
+     *
+     * @param callback  the callback
+     */
+    public void addCallback(DataCallback<T> callback) {
+        synchronized (this) {
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notify(callback);
+    }
+
+    @Override
+    protected void done() {
+        List<DataCallback<T>> toNotify;
+        synchronized (this) {
+            toNotify = callbacks;
+            callbacks = null;
+        }
+        for (DataCallback<T> callback : toNotify) {
+            notify(callback);
+        }
+    }
+
+    private void notify(DataCallback<T> callback) {
+        T result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            callback.onError(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+            return;
+        } catch (CancellationException | InterruptedException e) {
+            callback.onError(new IOException("Cancelled", e));
+            return;
+        }
+        callback.onData(result);
+    }
+}
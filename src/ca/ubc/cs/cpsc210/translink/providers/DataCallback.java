@@ -0,0 +1,26 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.IOException;
+
+/**
+ * Receives the outcome of reading a data source asynchronously.  Called on the thread that
+ * completed the read, which is never the UI thread unless the outcome was known at once.
+ *
+ * @param <T>   the type of the data
+ */
+public interface DataCallback<T> {
+
+    /**
+     * Called when the data has been read
+     *
+     * @param data  the data
+     */
+    void onData(T data);
+
+    /**
+     * Called when the data could not be read
+     *
+     * @param e     the error that occurred
+     */
+    void onError(IOException e);
+}
@@ -1,6 +1,9 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
 
 /**
  * Specifies behaviours for data providers
@@ -21,4 +24,18 @@ public interface DataProvider {
      * @throws IOException  when error occurs reading from source
      */
     byte[] dataSourceToBytes() throws IOException;
+    /**
+     * Open data source as a stream of bytes.  Caller is responsible for closing the stream.
+     *
+     * @return  stream connected to source data
+     * @throws IOException  when error occurs opening source
+     */
+    InputStream dataSourceToStream() throws IOException;
+    /**
+     * Read data source as bytes on the pool of AsyncData, without blocking the caller
+     *
+     * @param callback  passed the data once read, or the error that occurred; may be null
+     * @return  future of the data read from source
+     */
+    Future<ByteBuffer> dataSourceToBufferAsync(DataCallback<ByteBuffer> callback);
 }
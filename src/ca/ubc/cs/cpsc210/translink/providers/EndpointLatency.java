@@ -0,0 +1,203 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import ca.ubc.cs.cpsc210.translink.util.Clock;
+import ca.ubc.cs.cpsc210.translink.util.LatencyHistogram;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The latencies observed for requests to one endpoint of a web service, and the timeouts and
+ * hedging delay derived from them.  Percentiles are taken over the last WINDOW or so latencies
+ * recorded, so that the timeouts follow the service as it speeds up or slows down.
+ * Until MIN_SAMPLES latencies are recorded, the fixed timeouts are used and requests are not
+ * hedged.
+ *
+ * Requests that time out are recorded with the time they waited, which is a lower bound on
+ * their latency; requests that fail at once, such as when the network is down, are not recorded.
+ * Requests are timed by the clock of their endpoint, which can be replaced by a fake clock.
+ */
+public class EndpointLatency {
+    public static final int WINDOW = 200;
+    public static final int MIN_SAMPLES = 20;
+    public static final double HEDGE_PERCENTILE = 95;
+    public static final double TIMEOUT_PERCENTILE = 99;
+    public static final int TIMEOUT_FACTOR = 3;
+    public static final int MIN_READ_TIMEOUT = 750;    // timeout in ms
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static final ConcurrentMap<String, EndpointLatency> ENDPOINTS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private Clock clock = Clock.SYSTEM;
+    private LatencyHistogram current = new LatencyHistogram();
+    private LatencyHistogram previous;
+    private long requests;
+    private long timeouts;
+    private long hedges;
+    private long hedgesWon;
+    private long retries;
+
+    private EndpointLatency(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the latencies of an endpoint, starting with none the first time it is named
+     *
+     * @param name  the name of the endpoint
+     * @return      the latencies of the endpoint
+     */
+    public static EndpointLatency forEndpoint(String name) {
+        EndpointLatency endpoint = ENDPOINTS.get(name);
+        if (endpoint == null) {
+            EndpointLatency created = new EndpointLatency(name);
+            endpoint = ENDPOINTS.putIfAbsent(name, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Set the clock by which requests to this endpoint are timed
+     *
+     * @param clock     the clock
+     */
+    public synchronized void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public synchronized Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Record the outcome of a request
+     *
+     * @param result    the result of the request
+     * @param nanos     the time from sending the request to receiving the result, in nanoseconds
+     */
+    public synchronized void record(HttpResult result, long nanos) {
+        requests++;
+        if (result.getStatus() == HttpResult.Status.TIMEOUT) {
+            timeouts++;
+        } else if (result.getStatus() == HttpResult.Status.NETWORK_ERROR) {
+            return;
+        }
+        current.record(nanos);
+        if (current.getCount() >= WINDOW) {
+            previous = current;
+            current = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Get the read timeout for the next request: TIMEOUT_FACTOR times the TIMEOUT_PERCENTILE
+     * latency, but no less than MIN_READ_TIMEOUT and no more than the fixed read timeout
+     *
+     * @return  the read timeout in milliseconds
+     */
+    public synchronized int getReadTimeout() {
+        long percentile = getPercentile(TIMEOUT_PERCENTILE);
+        if (percentile < 0) {
+            return AbstractHttpDataProvider.READ_TIMEOUT;
+        }
+        long timeout = TIMEOUT_FACTOR * percentile / NANOS_PER_MILLI;
+        return (int) Math.max(MIN_READ_TIMEOUT, Math.min(timeout, AbstractHttpDataProvider.READ_TIMEOUT));
+    }
+
+    /**
+     * Get the time after which a request still unanswered is sent again: the HEDGE_PERCENTILE
+     * latency, so that about one request in twenty is hedged
+     *
+     * @return  the delay in nanoseconds, or -1 if too few latencies are recorded to hedge
+     */
+    public synchronized long getHedgeDelay() {
+        return getPercentile(HEDGE_PERCENTILE);
+    }
+
+    /**
+     * Get a percentile of the latencies in the window
+     *
+     * @param percentile    the percentile, from 0 to 100
+     * @return              the latency in nanoseconds, or -1 if too few latencies are recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (current.getCount() >= MIN_SAMPLES) {
+            return current.getPercentile(percentile);
+        }
+        // until the new window has enough latencies, use the last one
+        if (previous != null) {
+            return previous.getPercentile(percentile);
+        }
+        return -1;
+    }
+
+    /**
+     * Count a second request sent when the first was slow
+     *
+     * @param won   true if the second request was answered first
+     */
+    public synchronized void countHedge(boolean won) {
+        hedges++;
+        if (won) {
+            hedgesWon++;
+        }
+    }
+
+    /**
+     * Count a request sent again after a failure
+     */
+    public synchronized void countRetry() {
+        retries++;
+    }
+
+    /**
+     * @return  the number of requests sent, including hedges and retries
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    public synchronized long getHedges() {
+        return hedges;
+    }
+
+    public synchronized long getHedgesWon() {
+        return hedgesWon;
+    }
+
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Forget all latencies and counts
+     */
+    public synchronized void clear() {
+        current = new LatencyHistogram();
+        previous = null;
+        clearCounts();
+    }
+
+    /**
+     * Forget the counts of requests, timeouts, hedges and retries, keeping the latencies
+     */
+    public synchronized void clearCounts() {
+        requests = 0;
+        timeouts = 0;
+        hedges = 0;
+        hedgesWon = 0;
+        retries = 0;
+    }
+}
@@ -6,11 +6,61 @@ import ca.ubc.cs.cpsc210.translink.BusesAreUs;
 import java.io.*;
 
 /**
- * Data provider where data source is a file in Java (non-Android) environment
+ * Data provider where data source is a file in Java (non-Android) environment.  Once a directory
+ * is set, the file is read from it, named by the resource name with any extension, as in res/raw;
+ * until then it is read from the raw resources of the app.
  */
 public class FileDataProvider extends AndroidFileDataProvider {
+    private static volatile File directory;
+    private String fileName;
 
     public FileDataProvider(String fileName) {
         super(BusesAreUs.activity, fileName);
+        this.fileName = fileName;
+    }
+
+    /**
+     * Set the directory from which files are read
+     *
+     * @param dir   the directory, or null to read the raw resources of the app
+     */
+    public static void setDirectory(File dir) {
+        directory = dir;
+    }
+
+    @Override
+    public String dataSourceToString() throws IOException {
+        File file = findFile();
+        return file == null ? super.dataSourceToString() : readSource(new FileInputStream(file));
+    }
+
+    @Override
+    public byte[] dataSourceToBytes() throws IOException {
+        File file = findFile();
+        return file == null ? super.dataSourceToBytes() : readSourceRaw(new FileInputStream(file));
+    }
+
+    @Override
+    public InputStream dataSourceToStream() throws IOException {
+        File file = findFile();
+        return file == null ? super.dataSourceToStream() : new FileInputStream(file);
+    }
+
+    // the file in the directory named by the resource name, or null if no directory is set
+    private File findFile() throws FileNotFoundException {
+        File dir = directory;
+        if (dir == null) {
+            return null;
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.equals(fileName) || name.startsWith(fileName + ".")) {
+                    return file;
+                }
+            }
+        }
+        throw new FileNotFoundException(new File(dir, fileName).getPath());
     }
 }
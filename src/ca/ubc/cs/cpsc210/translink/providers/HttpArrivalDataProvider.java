@@ -3,7 +3,6 @@ package ca.ubc.cs.cpsc210.translink.providers;
 import ca.ubc.cs.cpsc210.translink.BusesAreUs;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -34,9 +33,4 @@ public class HttpArrivalDataProvider extends AbstractHttpDataProvider {
 
         return new URL(request);
     }
-
-    @Override
-    public byte[] dataSourceToBytes() throws IOException {
-        return new byte[0];
-    }
 }
@@ -0,0 +1,89 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A response received by an HttpTransport: its response code and a stream of its body, already
+ * decompressed
+ */
+public class HttpResponse implements Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final int code;
+    private final InputStream body;
+    private final int contentLength;
+
+    /**
+     * @param code              the HTTP response code
+     * @param body              stream of the body of the response
+     * @param contentLength     length of the body in bytes, or -1 if not known
+     */
+    public HttpResponse(int code, InputStream body, int contentLength) {
+        this.code = code;
+        this.body = body;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * @return  the HTTP response code
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return  stream of the body of the response
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    /**
+     * @return  length of the body in bytes, or -1 if not known
+     */
+    public int getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Read the whole of the body and close it
+     *
+     * @return  the body
+     * @throws IOException  when error occurs reading the body
+     */
+    public byte[] readBody() throws IOException {
+        try {
+            byte[] bytes = new byte[contentLength >= 0 ? contentLength : BUFFER_SIZE];
+            int length = 0;
+            int nread;
+
+            while (true) {
+                if (length == bytes.length) {
+                    // check for the end before growing, so a body of known length is copied only once
+                    int next = body.read();
+                    if (next == -1) {
+                        break;
+                    }
+                    bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, BUFFER_SIZE));
+                    bytes[length++] = (byte) next;
+                }
+                nread = body.read(bytes, length, bytes.length - length);
+                if (nread == -1) {
+                    break;
+                }
+                length += nread;
+            }
+            return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+}
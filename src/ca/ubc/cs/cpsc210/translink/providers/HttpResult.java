@@ -0,0 +1,118 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+
+/**
+ * The outcome of a request made by an Http data provider: either the body of a successful
+ * response, the response code and body of an unsuccessful one, or the error that prevented a
+ * response from being received
+ */
+public class HttpResult {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int HTTP_OK = 200;
+
+    /**
+     * The kinds of outcome of a request
+     */
+    public enum Status {
+        /** a response with code HTTP OK was received */
+        OK,
+        /** a response with some other code was received */
+        HTTP_ERROR,
+        /** the server did not respond in time */
+        TIMEOUT,
+        /** no response was received for some other reason */
+        NETWORK_ERROR
+    }
+
+    private final Status status;
+    private final int code;
+    private final byte[] body;
+    private final IOException error;
+
+    private HttpResult(Status status, int code, byte[] body, IOException error) {
+        this.status = status;
+        this.code = code;
+        this.body = body;
+        this.error = error;
+    }
+
+    /**
+     * @param code  the HTTP response code
+     * @param body  the body of the response
+     * @return      the result of a request answered with the given response
+     */
+    public static HttpResult response(int code, byte[] body) {
+        return new HttpResult(code == HTTP_OK ? Status.OK : Status.HTTP_ERROR, code, body, null);
+    }
+
+    /**
+     * @param error     the error that prevented a response from being received
+     * @return          the result of a request that failed
+     */
+    public static HttpResult failure(IOException error) {
+        return new HttpResult(error instanceof SocketTimeoutException ? Status.TIMEOUT : Status.NETWORK_ERROR,
+                -1, new byte[0], error);
+    }
+
+    /**
+     * @return  the kind of outcome of the request
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return  true if a response with code HTTP OK was received
+     */
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    /**
+     * @return  the HTTP response code, or -1 if no response was received
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return  the body of the response, empty if no response was received
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return  the body of the response decoded as UTF-8, empty if no response was received
+     */
+    public String getBodyAsString() {
+        return new String(body, UTF8);
+    }
+
+    /**
+     * @return  a stream over the body of the response, empty if no response was received
+     */
+    public InputStream getBodyAsStream() {
+        return new ByteArrayInputStream(body);
+    }
+
+    /**
+     * @return  the error that prevented a response from being received, or null if one was received
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) {
+            return status + ": " + error;
+        }
+        return status + ": HTTP response code " + code;
+    }
+}
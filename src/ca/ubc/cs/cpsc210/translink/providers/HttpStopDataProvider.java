@@ -4,7 +4,6 @@ import ca.ubc.cs.cpsc210.translink.BusesAreUs;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -38,9 +37,4 @@ public class HttpStopDataProvider extends AbstractHttpDataProvider {
         System.out.println(request);
         return new URL(request);
     }
-
-    @Override
-    public byte[] dataSourceToBytes() throws IOException {
-        return new byte[0];
-    }
 }
@@ -0,0 +1,23 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Specifies how Http data providers send requests, so that the connection layer can be replaced,
+ * for example by a stub that serves canned responses
+ */
+public interface HttpTransport {
+
+    /**
+     * Send a GET request for JSON data.  The body of the response must be closed by the caller,
+     * which allows the connection to be reused once the body has been read to the end.
+     *
+     * @param url               the URL to request
+     * @param connectTimeout    timeout in ms for connecting
+     * @param readTimeout       timeout in ms for each read
+     * @return  the response, whatever its response code
+     * @throws IOException  when no response is received
+     */
+    HttpResponse get(URL url, int connectTimeout, int readTimeout) throws IOException;
+}
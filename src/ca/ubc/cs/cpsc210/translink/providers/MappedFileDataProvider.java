@@ -0,0 +1,55 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Data provider where data source is a file that is memory mapped rather than read
+ */
+public class MappedFileDataProvider extends AbstractFileDataProvider {
+    private File file;
+
+    public MappedFileDataProvider(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Map the whole file read-only into memory
+     *
+     * @return  buffer backed by the contents of the file
+     * @throws IOException  when error occurs opening or mapping the file
+     */
+    @Override
+    public ByteBuffer dataSourceToBuffer() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public String dataSourceToString() throws IOException {
+        return readSource(dataSourceToStream());
+    }
+
+    @Override
+    public byte[] dataSourceToBytes() throws IOException {
+        ByteBuffer buffer = dataSourceToBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public InputStream dataSourceToStream() throws IOException {
+        return new FileInputStream(file);
+    }
+}
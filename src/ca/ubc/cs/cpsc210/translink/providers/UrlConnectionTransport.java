@@ -0,0 +1,45 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Http transport using HttpURLConnection.  Connections are not disconnected, so that once the body
+ * of a response has been read to the end and closed, the connection is kept alive and reused for
+ * the next request to the same host.  Responses are requested gzip compressed and decompressed
+ * as they are read.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    @Override
+    public HttpResponse get(URL url, int connectTimeout, int readTimeout) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        conn.setRequestProperty("Accept", "application/JSON");
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+
+        int code;
+        try {
+            code = conn.getResponseCode();
+        } catch (IOException e) {
+            conn.disconnect();
+            throw e;
+        }
+
+        // the body of an error response is read from the error stream, and may be missing
+        InputStream in = code >= HttpURLConnection.HTTP_BAD_REQUEST ? conn.getErrorStream() : conn.getInputStream();
+        if (in == null) {
+            return new HttpResponse(code, new ByteArrayInputStream(new byte[0]), 0);
+        }
+        if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+            return new HttpResponse(code, new GZIPInputStream(in, BUFFER_SIZE), -1);
+        }
+        return new HttpResponse(code, in, conn.getContentLength());
+    }
+}
@@ -2,10 +2,12 @@ package ca.ubc.cs.cpsc210.translink.ui;
 
 import android.app.Activity;
 import android.app.Fragment;
+import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.location.Location;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
@@ -15,12 +17,14 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import ca.ubc.cs.cpsc210.translink.R;
-import ca.ubc.cs.cpsc210.translink.parsers.RouteMapParser;
-import ca.ubc.cs.cpsc210.translink.parsers.StopParser;
-import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
-import ca.ubc.cs.cpsc210.translink.util.Geometry;
+import ca.ubc.cs.cpsc210.translink.parsers.NetworkLoader;
+import ca.ubc.cs.cpsc210.translink.util.Clock;
+import ca.ubc.cs.cpsc210.translink.util.IntList;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
-import org.json.JSONException;
+import ca.ubc.cs.cpsc210.translink.util.PathPyramid;
+import ca.ubc.cs.cpsc210.translink.util.ViewportDiff;
+import ca.ubc.cs.cpsc210.translink.util.ViewportWorker;
+import ca.ubc.cs.cpsc210.translink.util.VisibleRunBuilder;
 import org.osmdroid.DefaultResourceProxyImpl;
 import org.osmdroid.ResourceProxy;
 import org.osmdroid.api.IGeoPoint;
@@ -44,8 +48,11 @@ import org.osmdroid.views.overlay.mylocation.IMyLocationConsumer;
 import org.osmdroid.views.overlay.mylocation.IMyLocationProvider;
 import org.osmdroid.views.overlay.mylocation.MyLocationNewOverlay;
 
-import java.io.IOException;
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -69,7 +76,7 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     /** overlay used to display location of user */
     private MyLocationNewOverlay locOverlay;
     /** overlay used to show stop markers */
-    private RadiusMarkerClusterer stopClusterer;
+    private StopClusterer stopClusterer;
     /** window displayed when user selects a stop */
     private StopInfoWindow stopInfoWindow;
     /** overlay that listens for user initiated events on map */
@@ -78,17 +85,24 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     private TopRightTextOverlay busRouteLegendOverlay;
     /** location provider used to respond to changes in user location */
     private GpsMyLocationProvider locnProvider;
-    /** marker for stop that is nearest to user (null if no such stop) */
-    private Marker nearestStopMarker;
+    /** stop that is nearest to user (null if no such stop) */
+    private Stop nearestStop;
     /** location listener used to respond to changes in user location */
     private LocationListener locationListener;
     /** last known user location (null if not available) */
     private Location lastKnownFromInstanceState;
 
     private Drawable stopIconDrawable;
+    private Drawable closestStopIconDrawable;
 
     private StopManager stopManager;
 
+    /** computes the overlays for the latest viewport of the map off the UI thread */
+    private ViewportWorker<VisibleOverlays, VisibleOverlays> overlayWorker;
+    /** the overlays shown (null until the first are computed) */
+    private VisibleOverlays shownOverlays;
+    /** the run builder released by the overlays last shown, to be reused by the next snapshot */
+    private VisibleRunBuilder spareRuns;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -97,11 +111,44 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         eventsOverlay = new MapEventsOverlay(getActivity(), this);
         locnProvider = new GpsMyLocationProvider(getActivity());
         locnProvider.setLocationUpdateMinDistance(MIN_UPDATE_DISTANCE);
-        nearestStopMarker = null;
+        nearestStop = null;
+        stopIconDrawable = getResources().getDrawable(R.drawable.stop_icon);
+        closestStopIconDrawable = getResources().getDrawable(R.drawable.closest_stop_icon);
         busRouteOverlays = new ArrayList<>();
         newStopClusterer();
-        parseStops();
-        parseRouteMapText();
+        newOverlayWorker();
+        loadNetwork();
+    }
+
+    /**
+     * Create the worker that computes the overlays for a viewport in the background.  Results
+     * for viewports superseded by the time they are computed are dropped by the worker, and
+     * results superseded while waiting for the UI thread are dropped here.
+     */
+    private void newOverlayWorker() {
+        overlayWorker = new ViewportWorker<>(
+                new ViewportWorker.Computation<VisibleOverlays, VisibleOverlays>() {
+                    @Override
+                    public VisibleOverlays compute(VisibleOverlays overlays, long generation) {
+                        overlays.compute();
+                        return overlays;
+                    }
+                },
+                AsyncTask.THREAD_POOL_EXECUTOR,
+                new ViewportWorker.Listener<VisibleOverlays>() {
+                    @Override
+                    public void onResult(final VisibleOverlays overlays, final long generation) {
+                        mapView.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (overlayWorker.isCurrent(generation)) {
+                                    showOverlays(overlays);
+                                }
+                            }
+                        });
+                    }
+                },
+                Clock.SYSTEM);
     }
 
     /**
@@ -117,17 +164,108 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      * Return a new stop cluster object used to group stops that are close by to reduce screen clutter
      */
     private void newStopClusterer() {
-        stopClusterer = new RadiusMarkerClusterer(getActivity());
+        stopClusterer = new StopClusterer();
         stopClusterer.getTextPaint().setTextSize(20.0F * dpiFactor());
-        int zoom =  mapView == null ? 16 : mapView.getZoomLevel();
-        int radius = 1000 / zoom;
-
-        stopClusterer.setRadius(radius);
         Drawable clusterIconD = getResources().getDrawable(R.drawable.stop_cluster);
         Bitmap clusterIcon = ((BitmapDrawable) clusterIconD).getBitmap();
         stopClusterer.setIcon(clusterIcon);
     }
 
+    /**
+     * Overlay showing the clusters of stops precomputed by the stop manager for the zoom level of
+     * the map, in place of clustering the markers of the visible stops each time the map moves.
+     * The clusters in the visible area, found in the background with the other overlays, are
+     * shown when the map is next drawn after the overlay is invalidated.
+     */
+    private class StopClusterer extends RadiusMarkerClusterer {
+        // reused for the stops shown on their own
+        private List<Stop> singles = new ArrayList<>();
+        private ViewportDiff<Stop> diff = new ViewportDiff<>();
+        // markers of the clusters of more than one stop in markerClusters at markerZoom, by index
+        // of the cluster; the indexes change when the stops are clustered again
+        private Map<Integer, Marker> clusterMarkers = new HashMap<>();
+        private StopClusters markerClusters;
+        private int markerZoom = -1;
+
+        StopClusterer() {
+            super(getActivity());
+        }
+
+        @Override
+        public ArrayList<StaticCluster> clusterer(MapView map) {
+            if (shownOverlays == null) {
+                return new ArrayList<>();
+            }
+            int zoom = shownOverlays.getZoom();
+            StopClusters clusters = shownOverlays.getClusters();
+            if (zoom != markerZoom || clusters != markerClusters) {
+                clusterMarkers.clear();
+                markerZoom = zoom;
+                markerClusters = clusters;
+            }
+
+            IntList found = shownOverlays.getClusterIndexes();
+            ArrayList<StaticCluster> shown = new ArrayList<>(found.size());
+            singles.clear();
+            for (int j = 0; j < found.size(); j++) {
+                int i = found.get(j);
+                Stop stop = clusters.getStop(zoom, i);
+                if (stop == null) {
+                    GeoPoint centre = new GeoPoint(clusters.getLatitude(zoom, i), clusters.getLongitude(zoom, i));
+                    shown.add(new StopCluster(centre, clusters.getSize(zoom, i), i));
+                } else {
+                    singles.add(stop);
+                }
+            }
+
+            // only stops entering the view are given markers, taken from those of stops leaving it
+            diff.compute(stopMarkerMap.keySet(), singles);
+            for (Stop stop : diff.getLeaving()) {
+                releaseMarker(stop);
+            }
+            for (Stop stop : diff.getEntering()) {
+                acquireMarker(stop);
+            }
+            for (Stop stop : singles) {
+                Marker marker = getMarker(stop);
+                StaticCluster single = new StaticCluster(marker.getPosition());
+                single.add(marker);
+                shown.add(single);
+            }
+            return shown;
+        }
+
+        @Override
+        public Marker buildClusterMarker(StaticCluster cluster, MapView map) {
+            int index = ((StopCluster) cluster).index;
+            Marker marker = clusterMarkers.get(index);
+            if (marker == null) {
+                marker = super.buildClusterMarker(cluster, map);
+                clusterMarkers.put(index, marker);
+            }
+            return marker;
+        }
+    }
+
+    /**
+     * A precomputed cluster of more than one stop, which holds no markers of its own
+     */
+    private static class StopCluster extends StaticCluster {
+        private final int size;
+        private final int index;
+
+        StopCluster(GeoPoint centre, int size, int index) {
+            super(centre);
+            this.size = size;
+            this.index = index;
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+    }
+
     @Override
     public void onAttach(Activity activity) {
         super.onAttach(activity);
@@ -154,6 +292,7 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         if (mapView == null) {
             System.out.println("Making new mapView");
             clearMarkers();
+            markerPool.clear();
             mapView = new MapView(getActivity(), TILE_SIZE);
             mapView.setTileSource(TileSourceFactory.MAPNIK);
             mapView.setClickable(true);
@@ -238,6 +377,7 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     public void onPause() {
         super.onPause();
         Log.i(MDF_TAG, "onPause");
+        Log.i(MDF_TAG, "Paths simplified: " + PathPyramid.getNumBuilt() + " in ms: " + PathPyramid.getBuildTime());
         locOverlay.disableMyLocation();
         locnProvider.stopLocationProvider();
         mapView.setBuiltInZoomControls(false);
@@ -267,67 +407,147 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     }
 
     /**
-     * Parse stop data from the file and add all stops to stop manager.
-     *
+     * Load stops, routes and route patterns into the stop and route managers, from the network snapshot
+     * if it is up to date with the installed app, and from the text resources otherwise.
+     * Pattern paths are only decoded when the routes through a selected stop are plotted, and
+     * their simplified versions are built then too.  The clusters of stops are computed in the
+     * background once the network is loaded.
      */
-    private void parseStops() {
+    private void loadNetwork() {
+        long installed = 0;
         try {
-            new StopParser("stops").parse();
-        } catch (IOException|StopDataMissingException|JSONException e) {
+            installed = getActivity().getPackageManager()
+                    .getPackageInfo(getActivity().getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
             e.printStackTrace();
         }
+        File snapshot = new File(getActivity().getFilesDir(), "network.snapshot");
+        NetworkLoader loader = new NetworkLoader(snapshot, installed);
+        loader.setLazyPaths(true);
+        // with lazy paths, this quantizes the locations of stops only
+        loader.setQuantizedCoordinates(true);
+        boolean fromSnapshot = loader.load();
+        Log.i(MDF_TAG, "Network loaded from " + (fromSnapshot ? "snapshot" : "text resources")
+                + " in ms: " + loader.getPhaseTimes());
+        new PrepareMapTask().execute(loader);
     }
 
     /**
-     * Parse route map data from the file and add all routes and patterns to the route manager.
-     *
+     * Task that clusters the stops, then replots the routes
      */
-    private void parseRouteMapText() {
-        new RouteMapParser("allroutemapstxt").parse();
+    private class PrepareMapTask extends AsyncTask<NetworkLoader, Void, NetworkLoader> {
+        @Override
+        protected NetworkLoader doInBackground(NetworkLoader... loaders) {
+            loaders[0].clusterStops();
+            return loaders[0];
+        }
+
+        @Override
+        protected void onPostExecute(NetworkLoader loader) {
+            Log.i(MDF_TAG, "Stops clustered in ms: " + loader.getPhaseTimes());
+            if (mapView != null) {
+                requestOverlays();
+            }
+        }
     }
 
+    // polylines created by showOverlays, reused from one viewport to the next
+    private List<Polyline> polylinePool = new ArrayList<>();
+
     /**
-     * Plot each visible segment of each route pattern of each route going through the selected stop.
+     * Submit a snapshot of the viewport of the map to the overlay worker, which finds the visible
+     * runs of the routes through the selected stop and the visible clusters of stops in the
+     * background, superseding any viewport submitted before.  The overlays are shown once
+     * computed, unless the viewport has been superseded again by then.
      */
-    private void plotRoutes() {
+    private void requestOverlays() {
         updateVisibleArea();
+        double north = Math.max(northWest.getLatitude(), southEast.getLatitude());
+        double south = Math.min(northWest.getLatitude(), southEast.getLatitude());
+        double west = Math.min(northWest.getLongitude(), southEast.getLongitude());
+        double east = Math.max(northWest.getLongitude(), southEast.getLongitude());
+        VisibleRunBuilder runs = spareRuns;
+        spareRuns = null;
+        overlayWorker.submit(new VisibleOverlays(north, west, south, east, mapView.getZoomLevel(),
+                StopManager.getInstance().getSelected(), runs));
+    }
+
+    /**
+     * Show overlays computed in the background.  Each visible run of each route through the
+     * selected stop is plotted as a single polyline, reusing polylines from earlier plots, and
+     * the stop clusterer is invalidated to show the visible clusters and stops when the map is
+     * next drawn.  The polylines copy the points of the runs, so the runs are then released for
+     * reuse by the next snapshot.
+     *
+     * @param overlays  the overlays computed for the latest viewport
+     */
+    private void showOverlays(VisibleOverlays overlays) {
+        shownOverlays = overlays;
         busRouteOverlays.clear();
-        Stop s = StopManager.getInstance().getSelected();
 
-        if (s != null) {
+        if (overlays.getSelected() != null) {
             busRouteLegendOverlay.clear();
+            float width = getLineWidth(zoomLevel);
 
-            for (Route r : s.getRoutes()) {
+            for (int i = 0; i < overlays.getNumRoutes(); i++) {
+                Route r = overlays.getRoute(i);
                 busRouteLegendOverlay.add(r.getNumber());
 
-                for (RoutePattern rp : r.getPatterns()) {
-                    List<LatLon> paths = rp.getPath();
-                    List<GeoPoint> points = new ArrayList<>();
-
-                    for (int i = 0; i < paths.size() - 1; i ++) {
+                if (r.getNumber() == null) {
+                    continue;
+                }
+                int color = busRouteLegendOverlay.getColor(r.getNumber());
+
+                VisibleRunBuilder visibleRuns = overlays.getRuns();
+                for (int run = overlays.getFirstRun(i); run < overlays.getEndRun(i); run++) {
+                    Polyline line = obtainPolyline(busRouteOverlays.size());
+                    line.setPoints(new RunPoints(visibleRuns, run));
+                    line.setWidth(width);
+                    line.setColor(color);
+                    busRouteOverlays.add(line);
+                }
+            }
+        }
+        spareRuns = overlays.releaseRuns();
 
-                        Polyline line = new Polyline(mapView.getResourceProxy());
+        stopClusterer.invalidate();
+        updateOverlays();
+        handleLocationChange(locnProvider.getLastKnownLocation());
+    }
 
-                        if (Geometry.rectangleIntersectsLine(northWest, southEast, paths.get(i), paths.get(i + 1))) {
-                            GeoPoint point1 = new GeoPoint(paths.get(i).getLatitude(), paths.get(i).getLongitude());
-                            GeoPoint point2 = new GeoPoint(paths.get(i + 1).getLatitude(), paths.get(i + 1).getLongitude());
-                            points.add(point1);
-                            points.add(point2);
-                            line.setPoints(points);
-                        }
 
-                        line.setWidth(getLineWidth(zoomLevel));
-                        if (r.getNumber() != null && busRouteLegendOverlay != null) {
-                            line.setColor(busRouteLegendOverlay.getColor(r.getNumber()));
-                            busRouteOverlays.add(line);
-                        }
-                    }
-                }
-            }
-            updateOverlays();
+    /**
+     * Get the polyline at the given position of the pool, creating it if there is none yet
+     */
+    private Polyline obtainPolyline(int i) {
+        if (i == polylinePool.size()) {
+            polylinePool.add(new Polyline(mapView.getResourceProxy()));
         }
+        return polylinePool.get(i);
     }
 
+    /**
+     * The points of one visible run, as GeoPoints created as they are read by Polyline.setPoints
+     */
+    private static class RunPoints extends AbstractList<GeoPoint> {
+        private final VisibleRunBuilder runs;
+        private final int run;
+
+        RunPoints(VisibleRunBuilder runs, int run) {
+            this.runs = runs;
+            this.run = run;
+        }
+
+        @Override
+        public GeoPoint get(int i) {
+            return new GeoPoint(runs.getLatitude(run, i), runs.getLongitude(run, i));
+        }
+
+        @Override
+        public int size() {
+            return runs.getRunLength(run);
+        }
+    }
 
     /**
      * Update the fields northWest and southEast to correspond to the corners of the visible area of the map.
@@ -344,47 +564,44 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     }
 
     /**
-     * Mark all visible stops in stop manager onto map.
+     * Give a stop entering the view a marker, reusing one from the pool if there is one
      *
+     * @param s     the stop
      */
-    private void markStops() {
-        Location lastKnownLocation = locnProvider.getLastKnownLocation();
-        Drawable stopIconDrawable = getResources().getDrawable(R.drawable.stop_icon);
-        updateVisibleArea();
-        newStopClusterer();
-        updateOverlays();
-
-        for (Stop s : StopManager.getInstance()) {
-            if (Geometry.rectangleContainsPoint(northWest, southEast, s.getLocn())) {
-                Marker marker = new Marker(mapView);
-                GeoPoint locn = new GeoPoint(s.getLocn().getLatitude(), s.getLocn().getLongitude());
-                setMarker(s, marker);
-
-                if (getMarker(s) != nearestStopMarker) {
-                    marker.setIcon(stopIconDrawable);
-                }
-
-                marker.setInfoWindow(stopInfoWindow);
-
-                Set<Route> routes1 = s.getRoutes();
-                String listRouteNumbers = "";
+    private void acquireMarker(Stop s) {
+        Marker marker = markerPool.poll();
+        if (marker == null) {
+            marker = new Marker(mapView);
+            marker.setInfoWindow(stopInfoWindow);
+        }
+        setMarker(s, marker);
+        marker.setIcon(s == nearestStop ? closestStopIconDrawable : stopIconDrawable);
 
-                for (Route r: routes1) {
-                    listRouteNumbers = listRouteNumbers + r.getNumber() + "\r\n";
-                }
-                marker.setTitle(s.getNumber() + "," + s.getName() + "\r\n" + listRouteNumbers);
-                marker.setPosition(locn);
-                marker.setRelatedObject(s);
-                stopClusterer.add(marker);
+        Set<Route> routes1 = s.getRoutes();
+        String listRouteNumbers = "";
 
-            } else {
-                clearMarker(s);
-            }
+        for (Route r: routes1) {
+            listRouteNumbers = listRouteNumbers + r.getNumber() + "\r\n";
         }
-        handleLocationChange(lastKnownLocation);
+        marker.setTitle(s.getNumber() + "," + s.getName() + "\r\n" + listRouteNumbers);
+        marker.setPosition(new GeoPoint(s.getLatitudeE6(), s.getLongitudeE6()));
+        marker.setRelatedObject(s);
     }
 
-
+    /**
+     * Return the marker of a stop leaving the view to the pool
+     *
+     * @param s     the stop
+     */
+    private void releaseMarker(Stop s) {
+        Marker marker = getMarker(s);
+        clearMarker(s);
+        if (marker.isInfoWindowShown()) {
+            stopInfoWindow.close();
+        }
+        marker.setRelatedObject(null);
+        markerPool.push(marker);
+    }
 
     /**
      * Update marker of nearest stop (called when user's location has changed).  If nearest is null,
@@ -394,18 +611,13 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      *
      */
     private void updateMarkerOfNearest(Stop nearest) {
-        Drawable stopIconDrawable = getResources().getDrawable(R.drawable.stop_icon);
-        Drawable closestStopIconDrawable = getResources().getDrawable(R.drawable.closest_stop_icon);
-            if (nearestStopMarker != null) {
-                nearestStopMarker.setIcon(stopIconDrawable);
-                nearestStopMarker = null;
+            if (nearestStop != null && getMarker(nearestStop) != null) {
+                getMarker(nearestStop).setIcon(stopIconDrawable);
             }
+            nearestStop = nearest;
 
-            if (nearest != null) {
-                nearestStopMarker = getMarker(nearest);
-                if (nearestStopMarker != null) {
-                    getMarker(nearest).setIcon(closestStopIconDrawable);
-                }
+            if (nearest != null && getMarker(nearest) != null) {
+                getMarker(nearest).setIcon(closestStopIconDrawable);
             }
 
     }
@@ -446,8 +658,8 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
             LatLon locn = new LatLon(location.getLatitude(), location.getLongitude());
             Stop s = StopManager.getInstance().findNearestTo(locn);
             locationListener.onLocationChanged(s, locn);
-            if (StopManager.getInstance().findNearestTo(locn) != null) {
-                updateMarkerOfNearest(StopManager.getInstance().findNearestTo(locn));
+            if (s != null) {
+                updateMarkerOfNearest(s);
             }
         }
     }
@@ -496,8 +708,8 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     }
 
     /**
-     * Custom listener for zoom events.  Changes width of line used to plot
-     * bus routes based on zoom level.
+     * Custom listener for scroll and zoom events.  Requests the overlays for the new viewport,
+     * which are shown once computed in the background.
      */
     private class BusRouteListener implements MapListener {
 
@@ -506,18 +718,13 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
             IGeoPoint center = mapView.getMapCenter();
             LatLon centre = new LatLon(center.getLatitude(), center.getLongitude());
             locationListener.onMapScroll(centre);
-            plotRoutes();
-            markStops();
-
-            mapView.invalidate();
+            requestOverlays();
             return false;
         }
 
         @Override
         public boolean onZoom(ZoomEvent zoomEvent) {
-            busRouteOverlays.clear();
-            plotRoutes();
-            markStops();
+            requestOverlays();
             return false;
         }
     }
@@ -526,8 +733,11 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      * Manage mapping from stops to markers using a map from stops to markers.
      * The mapping in the other direction is done using the Marker.setRelatedObject() and
      * Marker.getRelatedObject() methods.
+     * The map holds exactly the stops shown on the map on their own; markers of stops that
+     * leave the view are kept in the pool for stops that enter it.
      */
     private Map<Stop, Marker> stopMarkerMap = new HashMap<>();
+    private Deque<Marker> markerPool = new ArrayDeque<>();
 
     private Marker getMarker(Stop stop) { return stopMarkerMap.get(stop); }
     private void setMarker(Stop stop, Marker marker) { stopMarkerMap.put(stop, marker); }
@@ -0,0 +1,52 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with full jitter, for spacing out the retries of a failed action.  Before
+ * retry n (counting from 0) the wait is drawn uniformly from zero up to base * 2^n, capped at cap,
+ * so that clients that failed together do not all retry together.
+ */
+public class Backoff {
+    private final long baseMillis;
+    private final long capMillis;
+    private final Random random;
+
+    /**
+     * @param baseMillis    the greatest wait before the first retry, in milliseconds
+     * @param capMillis     the greatest wait before any retry, in milliseconds
+     * @param random        the source of the jitter
+     */
+    public Backoff(long baseMillis, long capMillis, Random random) {
+        this.baseMillis = baseMillis;
+        this.capMillis = capMillis;
+        this.random = random;
+    }
+
+    /**
+     * Get the wait before a retry
+     *
+     * @param retry     the number of retries made before this one
+     * @return          the wait in milliseconds, from 0 up to the cap
+     */
+    public long delay(int retry) {
+        long ceiling = baseMillis << Math.min(retry, 30);
+        if (ceiling <= 0 || ceiling > capMillis) {
+            ceiling = capMillis;
+        }
+        return (long) (random.nextDouble() * (ceiling + 1));
+    }
+
+    /**
+     * Wait before a retry
+     *
+     * @param retry     the number of retries made before this one
+     * @throws InterruptedException  when interrupted while waiting
+     */
+    public void sleep(int retry) throws InterruptedException {
+        long wait = delay(retry);
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * A source of the current time, which can be replaced by a fake clock where the passing of time
+ * needs to be controlled
+ */
+public interface Clock {
+    /**
+     * The clock of the running system
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleep(long nanos) throws InterruptedException {
+            Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+        }
+    };
+
+    /**
+     * @return  the current value of the clock in nanoseconds, measured from an arbitrary origin
+     */
+    long nanoTime();
+
+    /**
+     * Wait until the clock has moved on by the given time
+     *
+     * @param nanos     the time to wait in nanoseconds
+     * @throws InterruptedException  when interrupted while waiting
+     */
+    void sleep(long nanos) throws InterruptedException;
+}
@@ -3,7 +3,9 @@ package ca.ubc.cs.cpsc210.translink.util;
 
 
 /**
- * Compute relationships between points, lines, and rectangles represented by LatLon objects
+ * Compute relationships between points, lines, and rectangles represented by LatLon objects or
+ * by their coordinates in degrees, and clip lines and polylines to rectangles.  Whether a line
+ * intersects a rectangle is decided by clipping it, so all the line tests agree with clipLine.
  */
 public class Geometry {
 
@@ -55,48 +57,146 @@ public class Geometry {
      */
 
     public static boolean rectangleIntersectsLine(LatLon northWest, LatLon southEast, LatLon src, LatLon dst) {
-        if (rectangleContainsPoint(northWest, southEast, src) && rectangleContainsPoint(northWest, southEast, dst)) {
-            return true;
-        } else if (rectangleContainsPoint(northWest, southEast, src) || rectangleContainsPoint(northWest, southEast, dst)) {
-            return true;
-        }
-        double point1 = ((src.getLatitude() - dst.getLatitude()) * northWest.getLongitude()
-                + (src.getLongitude() - dst.getLongitude()) * northWest.getLatitude() +
-                (src.getLongitude() * dst.getLatitude() - dst.getLongitude() * src.getLatitude()));
-
-        double point2 = ((src.getLatitude() - dst.getLatitude()) * northWest.getLongitude() + (src.getLongitude() - dst.getLongitude()) * southEast.getLatitude() +
-                (src.getLongitude() * dst.getLatitude() - dst.getLongitude() * src.getLatitude()));
-
-        double point3 = ((src.getLatitude() - dst.getLatitude()) * southEast.getLongitude() + (src.getLongitude() - dst.getLongitude()) * southEast.getLatitude() +
-                (src.getLongitude() * dst.getLatitude() - dst.getLongitude() * src.getLatitude()));
-
-        double point4 = ((src.getLatitude() - dst.getLatitude()) * southEast.getLongitude() + (src.getLongitude() - dst.getLongitude()) * northWest.getLatitude() +
-                (src.getLongitude() * dst.getLatitude() - dst.getLongitude() * src.getLatitude()));
-
-        if ((point1 > 0 && point2 > 0 && point3 > 0 && point4 > 0) || (point1 < 0 && point2 < 0 && point3 < 0 && point4 < 0)) {
-            return false;
-        } else
-        return lineSegment(northWest, southEast, src, dst);
-
+        return rectangleIntersectsLine(Math.max(northWest.getLatitude(), southEast.getLatitude()),
+                Math.min(northWest.getLongitude(), southEast.getLongitude()),
+                Math.min(northWest.getLatitude(), southEast.getLatitude()),
+                Math.max(northWest.getLongitude(), southEast.getLongitude()),
+                src.getLatitude(), src.getLongitude(), dst.getLatitude(), dst.getLongitude());
     }
 
-    public static boolean lineSegment(LatLon northWest, LatLon southEast, LatLon src, LatLon dst) {
-
-        if (src.getLongitude() < northWest.getLongitude() && dst.getLongitude() < northWest.getLongitude()) {
-            return false;
+    /**
+     * Return true if the rectangle intersects the line, with the rectangle given by its edges
+     *
+     * @param north     latitude of the north edge of the rectangle
+     * @param west      longitude of the west edge of the rectangle
+     * @param south     latitude of the south edge of the rectangle
+     * @param east      longitude of the east edge of the rectangle
+     * @param srcLat    latitude of one end of the line in question
+     * @param srcLon    longitude of one end of the line in question
+     * @param dstLat    latitude of the other end of the line in question
+     * @param dstLon    longitude of the other end of the line in question
+     * @return true if any point on the line is on the boundary or inside the rectangle
+     */
+    public static boolean rectangleIntersectsLine(double north, double west, double south, double east,
+                                                  double srcLat, double srcLon, double dstLat, double dstLon) {
+        return clipLine(north, west, south, east, srcLat, srcLon, dstLat, dstLon, null);
+    }
 
-        } else if (src.getLongitude() > southEast.getLongitude() && dst.getLongitude() > southEast.getLongitude()) {
+    /**
+     * Clip the line to the rectangle, using the Liang-Barsky algorithm
+     *
+     * @param north     latitude of the north edge of the rectangle
+     * @param west      longitude of the west edge of the rectangle
+     * @param south     latitude of the south edge of the rectangle
+     * @param east      longitude of the east edge of the rectangle
+     * @param srcLat    latitude of one end of the line in question
+     * @param srcLon    longitude of one end of the line in question
+     * @param dstLat    latitude of the other end of the line in question
+     * @param dstLon    longitude of the other end of the line in question
+     * @param range     if not null, set to the fractions of the way from src to dst at which the
+     *                  line enters and leaves the rectangle, when it intersects the rectangle
+     * @return true if any point on the line is on the boundary or inside the rectangle
+     */
+    public static boolean clipLine(double north, double west, double south, double east,
+                                   double srcLat, double srcLon, double dstLat, double dstLon, double[] range) {
+        if (Math.max(srcLat, dstLat) < south || Math.min(srcLat, dstLat) > north
+                || Math.max(srcLon, dstLon) < west || Math.min(srcLon, dstLon) > east) {
             return false;
+        }
 
-        } else if (src.getLatitude() > northWest.getLatitude() && dst.getLatitude() > northWest.getLatitude()) {
+        // narrow the fractions of the line within the west and east edges, then within the south
+        // and north edges; a line parallel to a pair of edges is already known to be between them
+        double enter = 0;
+        double leave = 1;
+        double dLon = dstLon - srcLon;
+        if (dLon != 0) {
+            double toWest = (west - srcLon) / dLon;
+            double toEast = (east - srcLon) / dLon;
+            enter = Math.max(enter, Math.min(toWest, toEast));
+            leave = Math.min(leave, Math.max(toWest, toEast));
+        }
+        double dLat = dstLat - srcLat;
+        if (dLat != 0) {
+            double toSouth = (south - srcLat) / dLat;
+            double toNorth = (north - srcLat) / dLat;
+            enter = Math.max(enter, Math.min(toSouth, toNorth));
+            leave = Math.min(leave, Math.max(toSouth, toNorth));
+        }
+        if (enter > leave) {
             return false;
+        }
 
-        } else if (src.getLatitude() < southEast.getLatitude() && dst.getLatitude() < southEast.getLatitude()) {
-            return false;
+        if (range != null) {
+            range[0] = enter;
+            range[1] = leave;
         }
         return true;
     }
 
+    /**
+     * Clip the polyline made up of points from up to but not including to of a path to the
+     * rectangle, in a single pass over its segments.  Each piece of the polyline that is on the
+     * boundary of or inside the rectangle is added to runs, beginning and ending at the exact
+     * points where it enters and leaves the rectangle.
+     *
+     * @param north     latitude of the north edge of the rectangle
+     * @param west      longitude of the west edge of the rectangle
+     * @param south     latitude of the south edge of the rectangle
+     * @param east      longitude of the east edge of the rectangle
+     * @param coords    the points of the path as interleaved latitudes and longitudes
+     * @param from      index of the first point of the polyline
+     * @param to        index one past the last point of the polyline
+     * @param runs      the builder to which the pieces of the polyline are added
+     * @param range     an array of at least two elements, used as scratch space
+     */
+    public static void clipPolyline(double north, double west, double south, double east,
+                                    double[] coords, int from, int to, VisibleRunBuilder runs, double[] range) {
+        boolean inRun = false;
+        for (int i = from; i + 1 < to; i++) {
+            double srcLat = coords[2 * i];
+            double srcLon = coords[2 * i + 1];
+            double dstLat = coords[2 * i + 2];
+            double dstLon = coords[2 * i + 3];
+            if (!clipLine(north, west, south, east, srcLat, srcLon, dstLat, dstLon, range)) {
+                if (inRun) {
+                    runs.endRun();
+                    inRun = false;
+                }
+                continue;
+            }
+
+            if (range[0] > 0 || !inRun) {
+                if (inRun) {
+                    runs.endRun();
+                }
+                runs.beginRun();
+                inRun = true;
+                if (range[0] > 0) {
+                    runs.addPoint(clip(south, north, srcLat + range[0] * (dstLat - srcLat)),
+                            clip(west, east, srcLon + range[0] * (dstLon - srcLon)));
+                } else {
+                    runs.addPoint(srcLat, srcLon);
+                }
+            }
+            if (range[1] < 1) {
+                runs.addPoint(clip(south, north, srcLat + range[1] * (dstLat - srcLat)),
+                        clip(west, east, srcLon + range[1] * (dstLon - srcLon)));
+                runs.endRun();
+                inRun = false;
+            } else {
+                runs.addPoint(dstLat, dstLon);
+            }
+        }
+        if (inRun) {
+            runs.endRun();
+        }
+    }
+
+    // an interpolated point on the boundary of the rectangle may be just outside it through rounding
+    private static double clip(double lwb, double upb, double x) {
+        return Math.max(lwb, Math.min(upb, x));
+    }
+
     /**
      * A utility method that you might find helpful in implementing the two previous methods
      * Return true if x is >= lwb and <= upb
@@ -0,0 +1,45 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of ints, held in an array rather than as boxed Integers
+ */
+public class IntList {
+    private int[] values = new int[16];
+    private int size;
+
+    /**
+     * Add a value to the end of the list
+     *
+     * @param value     the value to add
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * @param i     the index of a value
+     * @return      the value at index i
+     */
+    public int get(int i) {
+        return values[i];
+    }
+
+    /**
+     * @return  the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all values
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,106 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies from a microsecond to over an hour, for finding percentiles in
+ * constant space.  Latencies are counted in buckets that split each power of two microseconds
+ * into SUB_BUCKETS equal parts, so a percentile is reported to within 1 / SUB_BUCKETS of its
+ * value, rounded up.
+ */
+public class LatencyHistogram {
+    public static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int MAGNITUDES = 33;
+
+    private final long[] counts = new long[MAGNITUDES * SUB_BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Record a latency
+     *
+     * @param nanos     the latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts[bucket(micros)]++;
+        count++;
+        sum += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * @return  the number of latencies recorded
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return  the mean latency in nanoseconds, or 0 if none is recorded
+     */
+    public synchronized long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @return  the greatest latency in nanoseconds, or 0 if none is recorded
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Get a percentile of the latencies recorded
+     *
+     * @param percentile    the percentile, from 0 to 100
+     * @return              the least latency, as the upper bound of its bucket, no less than
+     *                      that percentile of the latencies, in nanoseconds; 0 if none is recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return Math.min(max, upperBound(b) * 1000);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Remove all latencies recorded
+     */
+    public synchronized void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    // below 2 * SUB_BUCKETS microseconds, each bucket holds a single microsecond
+    private static int bucket(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        int sub = (int) (micros >>> magnitude) - SUB_BUCKETS;
+        return Math.min((magnitude + 1) * SUB_BUCKETS + sub, MAGNITUDES * SUB_BUCKETS - 1);
+    }
+
+    // the greatest latency in microseconds counted in a bucket
+    private static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS - 1;
+        int sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((long) (sub + 1) << magnitude) - 1;
+    }
+}
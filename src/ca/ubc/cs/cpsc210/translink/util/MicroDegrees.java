@@ -0,0 +1,61 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * Conversions between coordinates in degrees and coordinates quantized to whole microdegrees,
+ * held in an int.  A microdegree is about 11cm of latitude.
+ *
+ * Any coordinate given to at most 6 decimal places, as all Translink coordinates are,
+ * converts to microdegrees and back to exactly the same double.  Other coordinates are
+ * rounded to the nearest microdegree.
+ */
+public class MicroDegrees {
+    public static final double PER_DEGREE = 1e6;
+
+    /**
+     * Convert degrees to microdegrees, rounding to the nearest microdegree
+     *
+     * @param degrees   the coordinate in degrees
+     * @return          the coordinate in microdegrees
+     */
+    public static int fromDegrees(double degrees) {
+        return (int) Math.round(degrees * PER_DEGREE);
+    }
+
+    /**
+     * Convert microdegrees to degrees
+     *
+     * @param microDegrees  the coordinate in microdegrees
+     * @return              the coordinate in degrees
+     */
+    public static double toDegrees(int microDegrees) {
+        return microDegrees / PER_DEGREE;
+    }
+
+    /**
+     * Convert an array of coordinates in degrees to microdegrees
+     *
+     * @param degrees   the coordinates in degrees
+     * @return          a new array of the same length holding the coordinates in microdegrees
+     */
+    public static int[] fromDegrees(double[] degrees) {
+        int[] microDegrees = new int[degrees.length];
+        for (int i = 0; i < degrees.length; i++) {
+            microDegrees[i] = fromDegrees(degrees[i]);
+        }
+        return microDegrees;
+    }
+
+    /**
+     * Convert an array of coordinates in microdegrees to degrees
+     *
+     * @param microDegrees  the coordinates in microdegrees
+     * @return              a new array of the same length holding the coordinates in degrees
+     */
+    public static double[] toDegrees(int[] microDegrees) {
+        double[] degrees = new double[microDegrees.length];
+        for (int i = 0; i < microDegrees.length; i++) {
+            degrees[i] = toDegrees(microDegrees[i]);
+        }
+        return degrees;
+    }
+}
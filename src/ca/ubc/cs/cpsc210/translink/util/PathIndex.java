@@ -0,0 +1,175 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * A hierarchy of bounding boxes over the segments of a path, used to find the segments of the
+ * path that intersect a rectangle without testing every segment.
+ *
+ * The path is given as packed coordinates, [lat0, lon0, lat1, lon1, ...], and segment i joins
+ * point i to point i + 1.  The leaves of the hierarchy bound runs of LEAF_SEGMENTS consecutive
+ * segments; each level above bounds pairs of boxes of the level below, up to a single box
+ * bounding the whole path.
+ */
+public class PathIndex {
+    public static final int LEAF_SEGMENTS = 8;
+
+    private final int numSegments;
+    private double north = Double.NEGATIVE_INFINITY;
+    private double south = Double.POSITIVE_INFINITY;
+    private double west = Double.POSITIVE_INFINITY;
+    private double east = Double.NEGATIVE_INFINITY;
+    // boxes of each level, from the leaves up, as north, west, south, east of each box in turn
+    private final double[][] levels;
+
+    /**
+     * Build the index of the path with the given packed coordinates
+     *
+     * @param coords    the points of the path as interleaved latitudes and longitudes
+     */
+    public PathIndex(double[] coords) {
+        int numPoints = coords.length / 2;
+        for (int i = 0; i < numPoints; i++) {
+            north = Math.max(north, coords[2 * i]);
+            south = Math.min(south, coords[2 * i]);
+            west = Math.min(west, coords[2 * i + 1]);
+            east = Math.max(east, coords[2 * i + 1]);
+        }
+
+        numSegments = Math.max(0, numPoints - 1);
+        int numLeaves = (numSegments + LEAF_SEGMENTS - 1) / LEAF_SEGMENTS;
+        int numLevels = 0;
+        for (int n = numLeaves; n > 0; n = n == 1 ? 0 : (n + 1) / 2) {
+            numLevels++;
+        }
+        levels = new double[numLevels][];
+        if (numLevels == 0) {
+            return;
+        }
+
+        double[] leaves = new double[numLeaves * 4];
+        for (int j = 0; j < numLeaves; j++) {
+            int from = j * LEAF_SEGMENTS;
+            int to = Math.min(from + LEAF_SEGMENTS, numSegments);
+            setBox(leaves, j, coords[2 * from], coords[2 * from + 1], coords[2 * from], coords[2 * from + 1]);
+            for (int i = from + 1; i <= to; i++) {
+                extendBox(leaves, j, coords[2 * i], coords[2 * i + 1], coords[2 * i], coords[2 * i + 1]);
+            }
+        }
+        levels[0] = leaves;
+        for (int level = 1; level < numLevels; level++) {
+            double[] below = levels[level - 1];
+            int numBelow = below.length / 4;
+            double[] boxes = new double[(numBelow + 1) / 2 * 4];
+            for (int j = 0; j < boxes.length / 4; j++) {
+                int left = 2 * j;
+                int right = Math.min(2 * j + 1, numBelow - 1);
+                setBox(boxes, j, below[4 * left], below[4 * left + 1], below[4 * left + 2], below[4 * left + 3]);
+                extendBox(boxes, j, below[4 * right], below[4 * right + 1],
+                        below[4 * right + 2], below[4 * right + 3]);
+            }
+            levels[level] = boxes;
+        }
+    }
+
+    /**
+     * @return  the number of segments in the path
+     */
+    public int getNumSegments() {
+        return numSegments;
+    }
+
+    /**
+     * @return  the latitude of the north edge of the bounding box of the path
+     */
+    public double getNorth() {
+        return north;
+    }
+
+    /**
+     * @return  the longitude of the west edge of the bounding box of the path
+     */
+    public double getWest() {
+        return west;
+    }
+
+    /**
+     * @return  the latitude of the south edge of the bounding box of the path
+     */
+    public double getSouth() {
+        return south;
+    }
+
+    /**
+     * @return  the longitude of the east edge of the bounding box of the path
+     */
+    public double getEast() {
+        return east;
+    }
+
+    /**
+     * Return true if the bounding box of the path intersects the rectangle
+     *
+     * @param north     latitude of the north edge of the rectangle
+     * @param west      longitude of the west edge of the rectangle
+     * @param south     latitude of the south edge of the rectangle
+     * @param east      longitude of the east edge of the rectangle
+     * @return true if the bounding box of the path is on the boundary of or inside the rectangle
+     */
+    public boolean boundsIntersect(double north, double west, double south, double east) {
+        return this.south <= north && this.north >= south && this.west <= east && this.east >= west;
+    }
+
+    /**
+     * Find the segments of the path that intersect the rectangle.  Only the segments whose boxes
+     * intersect the rectangle are tested.
+     *
+     * @param coords    the points of the path from which this index was built
+     * @param north     latitude of the north edge of the rectangle
+     * @param west      longitude of the west edge of the rectangle
+     * @param south     latitude of the south edge of the rectangle
+     * @param east      longitude of the east edge of the rectangle
+     * @param result    the ranges of segments on the boundary of or inside the rectangle, in order
+     *                  along the path, replacing its contents
+     */
+    public void findSegments(double[] coords, double north, double west, double south, double east,
+                             SegmentRanges result) {
+        result.clear();
+        if (levels.length > 0) {
+            findSegments(coords, levels.length - 1, 0, north, west, south, east, result);
+        }
+    }
+
+    private void findSegments(double[] coords, int level, int box, double north, double west, double south,
+                              double east, SegmentRanges result) {
+        double[] boxes = levels[level];
+        if (box >= boxes.length / 4 || boxes[4 * box + 2] > north || boxes[4 * box] < south
+                || boxes[4 * box + 1] > east || boxes[4 * box + 3] < west) {
+            return;
+        }
+        if (level > 0) {
+            findSegments(coords, level - 1, 2 * box, north, west, south, east, result);
+            findSegments(coords, level - 1, 2 * box + 1, north, west, south, east, result);
+            return;
+        }
+
+        int from = box * LEAF_SEGMENTS;
+        int to = Math.min(from + LEAF_SEGMENTS, numSegments);
+        for (int i = from; i < to; i++) {
+            if (Geometry.rectangleIntersectsLine(north, west, south, east,
+                    coords[2 * i], coords[2 * i + 1], coords[2 * i + 2], coords[2 * i + 3])) {
+                result.add(i, i + 1);
+            }
+        }
+    }
+
+    private static void setBox(double[] boxes, int j, double north, double west, double south, double east) {
+        boxes[4 * j] = north;
+        boxes[4 * j + 1] = west;
+        boxes[4 * j + 2] = south;
+        boxes[4 * j + 3] = east;
+    }
+
+    private static void extendBox(double[] boxes, int j, double north, double west, double south, double east) {
+        setBox(boxes, j, Math.max(boxes[4 * j], north), Math.min(boxes[4 * j + 1], west),
+                Math.min(boxes[4 * j + 2], south), Math.max(boxes[4 * j + 3], east));
+    }
+}
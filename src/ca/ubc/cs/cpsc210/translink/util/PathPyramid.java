@@ -0,0 +1,198 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import java.util.Arrays;
+
+/**
+ * Simplified versions of a path for drawing at the zoom levels from MIN_ZOOM to MAX_ZOOM, with
+ * an index of each.  At zoom levels above MAX_ZOOM the path is drawn in full.
+ *
+ * Each level is the path simplified by the Douglas-Peucker algorithm to within a screen pixel
+ * at its zoom level, assuming 256 pixel tiles.  The significance of each point, the largest
+ * tolerance at which Douglas-Peucker keeps it, is found in a single pass, so every level is
+ * taken from the same pass.  Distances are measured between the points projected once onto Web
+ * Mercator world coordinates, as on the map, so a pixel is the same length at any latitude.
+ *
+ * The path is given as packed coordinates, [lat0, lon0, lat1, lon1, ...].
+ *
+ * Pyramids are built as paths are first drawn at low zoom levels, so the number built and the
+ * time taken to build them are counted across all paths, apart from the time to draw.
+ */
+public class PathPyramid {
+    public static final int MIN_ZOOM = 10;
+    public static final int MAX_ZOOM = 13;
+
+    private final double[][] levels = new double[MAX_ZOOM - MIN_ZOOM + 1][];
+    private final PathIndex[] indexes = new PathIndex[MAX_ZOOM - MIN_ZOOM + 1];
+
+    private static long numBuilt;
+    private static long buildNanos;
+
+    /**
+     * Build the levels of the path with the given packed coordinates
+     *
+     * @param coords    the points of the path as interleaved latitudes and longitudes
+     */
+    public PathPyramid(double[] coords) {
+        long start = System.nanoTime();
+        int numPoints = coords.length / 2;
+        double[] significance = significance(WebMercator.project(coords), numPoints);
+
+        for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+            double tolerance = toleranceForZoom(zoom);
+            double minSignificance = tolerance * tolerance;
+            int kept = 0;
+            for (int i = 0; i < numPoints; i++) {
+                if (significance[i] > minSignificance) {
+                    kept++;
+                }
+            }
+            double[] level = new double[kept * 2];
+            int j = 0;
+            for (int i = 0; i < numPoints; i++) {
+                if (significance[i] > minSignificance) {
+                    level[j++] = coords[2 * i];
+                    level[j++] = coords[2 * i + 1];
+                }
+            }
+            levels[zoom - MIN_ZOOM] = level;
+            indexes[zoom - MIN_ZOOM] = new PathIndex(level);
+        }
+        recordBuild(System.nanoTime() - start);
+    }
+
+    private static synchronized void recordBuild(long nanos) {
+        numBuilt++;
+        buildNanos += nanos;
+    }
+
+    /**
+     * @return  the number of pyramids built since the counts were last cleared
+     */
+    public static synchronized long getNumBuilt() {
+        return numBuilt;
+    }
+
+    /**
+     * @return  the total time taken to build them, in milliseconds
+     */
+    public static synchronized long getBuildTime() {
+        return buildNanos / 1000000;
+    }
+
+    /**
+     * Reset the count of pyramids built and the time taken to build them
+     */
+    public static synchronized void clearCounts() {
+        numBuilt = 0;
+        buildNanos = 0;
+    }
+
+    /**
+     * Get the tolerance to which a path is simplified at a zoom level: the size of a screen pixel
+     *
+     * @param zoom      the zoom level
+     * @return          the tolerance in Web Mercator world units
+     */
+    public static int toleranceForZoom(int zoom) {
+        return WebMercator.pixelSize(zoom);
+    }
+
+    /**
+     * Get the simplified path for a zoom level, using the level for MIN_ZOOM below it
+     *
+     * @param zoom  a zoom level no higher than MAX_ZOOM
+     * @return      the points of the simplified path as interleaved latitudes and longitudes
+     */
+    public double[] getCoordinates(int zoom) {
+        return levels[Math.max(zoom, MIN_ZOOM) - MIN_ZOOM];
+    }
+
+    /**
+     * Get the index of the simplified path for a zoom level, using the level for MIN_ZOOM below it
+     *
+     * @param zoom  a zoom level no higher than MAX_ZOOM
+     * @return      the index of the simplified path
+     */
+    public PathIndex getPathIndex(int zoom) {
+        return indexes[Math.max(zoom, MIN_ZOOM) - MIN_ZOOM];
+    }
+
+    /**
+     * Find the squared significance of each point of the path.  Douglas-Peucker splits a run of
+     * the path at the point farthest from the line joining its ends, which is kept only if that
+     * distance and the distances at which each enclosing run was split exceed the tolerance; so
+     * the significance of a point is the smallest of those distances.  The ends of the path are
+     * always kept.
+     */
+    private static double[] significance(int[] world, int numPoints) {
+        double[] significance = new double[numPoints];
+        if (numPoints == 0) {
+            return significance;
+        }
+        significance[0] = Double.POSITIVE_INFINITY;
+        significance[numPoints - 1] = Double.POSITIVE_INFINITY;
+
+        // runs still to be split, as first point, last point and significance of the split
+        // that produced them
+        int[] runs = new int[64];
+        double[] runSignificance = new double[32];
+        int numRuns = 0;
+        runs[0] = 0;
+        runs[1] = numPoints - 1;
+        runSignificance[0] = Double.POSITIVE_INFINITY;
+        numRuns++;
+
+        while (numRuns > 0) {
+            numRuns--;
+            int first = runs[2 * numRuns];
+            int last = runs[2 * numRuns + 1];
+            double bound = runSignificance[numRuns];
+            if (last - first < 2) {
+                continue;
+            }
+
+            int farthest = -1;
+            double farthestDistance = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = squaredDistanceToSegment(world, i, first, last);
+                if (d > farthestDistance) {
+                    farthest = i;
+                    farthestDistance = d;
+                }
+            }
+            double split = Math.min(farthestDistance, bound);
+            significance[farthest] = split;
+
+            if (2 * numRuns + 4 > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+                runSignificance = Arrays.copyOf(runSignificance, runSignificance.length * 2);
+            }
+            runs[2 * numRuns] = first;
+            runs[2 * numRuns + 1] = farthest;
+            runSignificance[numRuns] = split;
+            numRuns++;
+            runs[2 * numRuns] = farthest;
+            runs[2 * numRuns + 1] = last;
+            runSignificance[numRuns] = split;
+            numRuns++;
+        }
+        return significance;
+    }
+
+    // the points are packed as interleaved x and y world coordinates
+    private static double squaredDistanceToSegment(int[] world, int point, int first, int last) {
+        double x = world[2 * point];
+        double y = world[2 * point + 1];
+        double x0 = world[2 * first];
+        double y0 = world[2 * first + 1];
+        double dx = world[2 * last] - x0;
+        double dy = world[2 * last + 1] - y0;
+
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((x - x0) * dx + (y - y0) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x - (x0 + t * dx);
+        double ey = y - (y0 + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
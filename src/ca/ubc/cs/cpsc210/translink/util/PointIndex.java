@@ -0,0 +1,147 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * A static k-d tree over points in the plane with integer coordinates from 0 to 2^30, such as
+ * Web Mercator world coordinates, laid out in the arrays of the points themselves.
+ *
+ * sort reorders the points so that each run of more than NODE_SIZE points is split at its median
+ * point, by x and by y in turn, with the points before the median no greater and the points after
+ * it no less on that axis.  The points can then be found by range and within without looking at
+ * every point.  Any other arrays of values of the points are reordered along with them by way of
+ * the ids, which give the original index of each point.
+ */
+public class PointIndex {
+    public static final int NODE_SIZE = 16;
+
+    /**
+     * Reorder the first n points into a k-d tree
+     *
+     * @param xs    the x coordinates of the points
+     * @param ys    the y coordinates of the points
+     * @param ids   reordered along with the points; usually the original index of each point
+     * @param n     the number of points
+     */
+    public static void sort(int[] xs, int[] ys, int[] ids, int n) {
+        sort(xs, ys, ids, 0, n - 1, 0);
+    }
+
+    /**
+     * Find the points of a k-d tree inside of, or on the boundary of, a rectangle
+     *
+     * @param xs        the x coordinates of the points, as sorted by sort
+     * @param ys        the y coordinates of the points, as sorted by sort
+     * @param n         the number of points
+     * @param minX      the least x of the rectangle
+     * @param minY      the least y of the rectangle
+     * @param maxX      the greatest x of the rectangle
+     * @param maxY      the greatest y of the rectangle
+     * @param result    the indexes of the points found, in no particular order, replacing its contents
+     */
+    public static void range(int[] xs, int[] ys, int n, long minX, long minY, long maxX, long maxY,
+                             IntList result) {
+        result.clear();
+        search(xs, ys, 0, n - 1, 0, minX, minY, maxX, maxY, -1, 0, 0, result);
+    }
+
+    /**
+     * Find the points of a k-d tree no farther than r from a point
+     *
+     * @param xs        the x coordinates of the points, as sorted by sort
+     * @param ys        the y coordinates of the points, as sorted by sort
+     * @param n         the number of points
+     * @param x         the x coordinate of the point
+     * @param y         the y coordinate of the point
+     * @param r         the distance, no greater than 2^30 as all coordinates must be
+     * @param result    the indexes of the points found, in no particular order, replacing its contents
+     */
+    public static void within(int[] xs, int[] ys, int n, int x, int y, long r, IntList result) {
+        result.clear();
+        search(xs, ys, 0, n - 1, 0, x - r, y - r, x + r, y + r, r * r, x, y, result);
+    }
+
+    // find the points of the run from left to right in the rectangle and, unless r2 is negative,
+    // no farther than the square root of r2 from (x, y)
+    private static void search(int[] xs, int[] ys, int left, int right, int axis, long minX, long minY,
+                               long maxX, long maxY, long r2, long x, long y, IntList result) {
+        if (right - left <= NODE_SIZE) {
+            for (int i = left; i <= right; i++) {
+                if (inside(xs[i], ys[i], minX, minY, maxX, maxY, r2, x, y)) {
+                    result.add(i);
+                }
+            }
+            return;
+        }
+
+        int m = (left + right) >> 1;
+        if (inside(xs[m], ys[m], minX, minY, maxX, maxY, r2, x, y)) {
+            result.add(m);
+        }
+        int split = axis == 0 ? xs[m] : ys[m];
+        if ((axis == 0 ? minX : minY) <= split) {
+            search(xs, ys, left, m - 1, 1 - axis, minX, minY, maxX, maxY, r2, x, y, result);
+        }
+        if ((axis == 0 ? maxX : maxY) >= split) {
+            search(xs, ys, m + 1, right, 1 - axis, minX, minY, maxX, maxY, r2, x, y, result);
+        }
+    }
+
+    private static boolean inside(int px, int py, long minX, long minY, long maxX, long maxY,
+                                  long r2, long x, long y) {
+        if (px < minX || px > maxX || py < minY || py > maxY) {
+            return false;
+        }
+        return r2 < 0 || (px - x) * (px - x) + (py - y) * (py - y) <= r2;
+    }
+
+    private static void sort(int[] xs, int[] ys, int[] ids, int left, int right, int axis) {
+        if (right - left <= NODE_SIZE) {
+            return;
+        }
+        int m = (left + right) >> 1;
+        select(axis == 0 ? xs : ys, xs, ys, ids, m, left, right);
+        sort(xs, ys, ids, left, m - 1, 1 - axis);
+        sort(xs, ys, ids, m + 1, right, 1 - axis);
+    }
+
+    // move the point with the k-th least key in the run from left to right to index k, with no
+    // greater keys before it and no lesser keys after it
+    private static void select(int[] keys, int[] xs, int[] ys, int[] ids, int k, int left, int right) {
+        while (right > left) {
+            int pivot = keys[(left + right) >> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(xs, ys, ids, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(int[] xs, int[] ys, int[] ids, int i, int j) {
+        int x = xs[i];
+        xs[i] = xs[j];
+        xs[j] = x;
+        int y = ys[i];
+        ys[i] = ys[j];
+        ys[j] = y;
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+}
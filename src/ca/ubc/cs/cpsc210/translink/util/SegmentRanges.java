@@ -0,0 +1,73 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of ranges of segment indexes of a path, each range running from a start index
+ * up to but not including an end index.  A range added directly after the previous one is merged
+ * into it, so the ranges are always maximal runs of consecutive segments.
+ */
+public class SegmentRanges {
+    private int[] bounds = new int[16];
+    private int size;
+
+    /**
+     * Add the range of segments from start up to but not including end
+     *
+     * @param start     index of the first segment in the range
+     * @param end       index one past the last segment in the range
+     */
+    public void add(int start, int end) {
+        if (size > 0 && bounds[2 * size - 1] == start) {
+            bounds[2 * size - 1] = end;
+            return;
+        }
+        if (2 * size == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[2 * size] = start;
+        bounds[2 * size + 1] = end;
+        size++;
+    }
+
+    /**
+     * @return  the number of ranges
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i     the index of a range
+     * @return      the index of the first segment in range i
+     */
+    public int getStart(int i) {
+        return bounds[2 * i];
+    }
+
+    /**
+     * @param i     the index of a range
+     * @return      the index one past the last segment in range i
+     */
+    public int getEnd(int i) {
+        return bounds[2 * i + 1];
+    }
+
+    /**
+     * @return  the total number of segments in all ranges
+     */
+    public int getNumSegments() {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n += getEnd(i) - getStart(i);
+        }
+        return n;
+    }
+
+    /**
+     * Remove all ranges
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -14,10 +14,23 @@ public class SphericalGeometry {
      * @return distance between p1 and p2 in metres
      */
     public static double distanceBetween(LatLon p1, LatLon p2) {
-        double lat1 = p1.getLatitude() / 180.0 * Math.PI;
-        double lat2 = p2.getLatitude() / 180.0 * Math.PI;
-        double deltaLon = (p2.getLongitude() - p1.getLongitude()) / 180.0 * Math.PI;
-        double deltaLat = (p2.getLatitude() - p1.getLatitude()) / 180.0 * Math.PI;
+        return distanceBetween(p1.getLatitude(), p1.getLongitude(), p2.getLatitude(), p2.getLongitude());
+    }
+
+    /**
+     * Find distance in metres between two points given in degrees
+     *
+     * @param latitude1     latitude of first point
+     * @param longitude1    longitude of first point
+     * @param latitude2     latitude of second point
+     * @param longitude2    longitude of second point
+     * @return distance between the points in metres
+     */
+    public static double distanceBetween(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double lat1 = latitude1 / 180.0 * Math.PI;
+        double lat2 = latitude2 / 180.0 * Math.PI;
+        double deltaLon = (longitude2 - longitude1) / 180.0 * Math.PI;
+        double deltaLat = (latitude2 - latitude1) / 180.0 * Math.PI;
 
         double a = Math.sin(deltaLat / 2.0) * Math.sin(deltaLat / 2.0)
                 + Math.cos(lat1) * Math.cos(lat2)
@@ -0,0 +1,112 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * A token bucket limiting the rate of some action, such as requests against an API quota.  The
+ * bucket holds up to capacity tokens and gains tokens at a steady rate; each action takes one.
+ *
+ * A thread that finds the bucket empty reserves the next token to arrive and sleeps on the clock
+ * until it does, so waiting threads are served in the order they arrived and the rate is never
+ * exceeded.  A thread interrupted while waiting gives its reservation back, so that it does not
+ * delay the threads that reserve after it.
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final Clock clock;
+    private double tokens;
+    private long lastRefill;
+    private long acquired;
+    private long waited;
+
+    /**
+     * Construct a full bucket
+     *
+     * @param capacity          the most tokens held, and so the largest burst allowed
+     * @param tokensPerSecond   the rate at which tokens are gained
+     * @param clock             the clock by which tokens are gained
+     */
+    public TokenBucket(int capacity, double tokensPerSecond, Clock clock) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / NANOS_PER_SECOND;
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefill = clock.nanoTime();
+    }
+
+    /**
+     * Take a token if one is held
+     *
+     * @return  true if a token was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        acquired++;
+        return true;
+    }
+
+    /**
+     * Take a token, waiting for one if none is held
+     *
+     * @throws InterruptedException  when interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long wait = reserve();
+        if (wait > 0) {
+            try {
+                clock.sleep(wait);
+            } catch (InterruptedException e) {
+                refund();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Take a token, or reserve the next token to arrive if none is held
+     *
+     * @return  the time in nanoseconds until the token taken is available, 0 if it is held now
+     */
+    public synchronized long reserve() {
+        refill();
+        tokens--;
+        acquired++;
+        if (tokens >= 0) {
+            return 0;
+        }
+        waited++;
+        return (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    // give back a token reserved but not waited for
+    private synchronized void refund() {
+        tokens = Math.min(capacity, tokens + 1);
+        acquired--;
+        waited--;
+    }
+
+    /**
+     * @return  the number of tokens taken or reserved
+     */
+    public synchronized long getAcquired() {
+        return acquired;
+    }
+
+    /**
+     * @return  the number of tokens that were not held when taken, so had to be waited for
+     */
+    public synchronized long getWaited() {
+        return waited;
+    }
+
+    private void refill() {
+        long now = clock.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,57 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds how the set of items shown in a viewport changes when the viewport moves: the items
+ * entering the view and the items leaving it.  The set of items shown is held by the caller,
+ * which applies the changes to it; the lists and set used here are reused from one viewport to
+ * the next.
+ *
+ * @param <T>   the type of the items
+ */
+public class ViewportDiff<T> {
+    private Set<T> visible = new HashSet<>();
+    private List<T> entering = new ArrayList<>();
+    private List<T> leaving = new ArrayList<>();
+
+    /**
+     * Compare the items now visible with the items shown
+     *
+     * @param shown         the items shown before the viewport moved
+     * @param nowVisible    the items visible now, with or without repeats
+     */
+    public void compute(Set<T> shown, Iterable<T> nowVisible) {
+        visible.clear();
+        entering.clear();
+        leaving.clear();
+
+        for (T item : nowVisible) {
+            if (visible.add(item) && !shown.contains(item)) {
+                entering.add(item);
+            }
+        }
+        for (T item : shown) {
+            if (!visible.contains(item)) {
+                leaving.add(item);
+            }
+        }
+    }
+
+    /**
+     * @return  the items visible now that were not shown, in the order first seen
+     */
+    public List<T> getEntering() {
+        return entering;
+    }
+
+    /**
+     * @return  the items shown that are not visible now
+     */
+    public List<T> getLeaving() {
+        return leaving;
+    }
+}
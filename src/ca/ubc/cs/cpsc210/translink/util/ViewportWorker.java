@@ -0,0 +1,219 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Computes what to show for the latest viewport of a map, one viewport at a time, off the thread
+ * that submits the viewports.
+ *
+ * Each viewport submitted is given a generation, one more than that of the viewport before it.
+ * At most one computation runs at a time and at most one viewport waits for it, so a viewport
+ * submitted while another is waiting replaces it and is never computed.  A result is passed to
+ * the listener only if no later viewport has been submitted by the time it is computed; the
+ * listener, which usually hands the result to another thread, can check isCurrent again before
+ * using it.  Results of viewports that have been superseded are dropped.
+ *
+ * @param <V>   the type of the viewports
+ * @param <R>   the type of the results
+ */
+public class ViewportWorker<V, R> {
+
+    /**
+     * The computation of the result for a viewport
+     */
+    public interface Computation<V, R> {
+        /**
+         * @param viewport      the viewport
+         * @param generation    the generation of the viewport, for use with isCurrent to give up
+         *                      early on a viewport that has been superseded
+         * @return              the result for the viewport, or null if there is none
+         */
+        R compute(V viewport, long generation);
+    }
+
+    /**
+     * Receives the results of viewports that are still current when computed
+     */
+    public interface Listener<R> {
+        /**
+         * Called on the thread that computed the result
+         *
+         * @param result        the result
+         * @param generation    the generation of the viewport of the result
+         */
+        void onResult(R result, long generation);
+    }
+
+    private final Computation<V, R> computation;
+    private final Executor executor;
+    private final Listener<R> listener;
+    private final Clock clock;
+
+    private long generation;
+    private boolean running;
+    private V waiting;
+    private long waitingGeneration;
+    private long waitingSince;
+
+    private long numSubmitted;
+    private long numSkipped;
+    private long numComputed;
+    private long numDropped;
+    private long lastComputeNanos;
+    private long lastLatencyNanos;
+
+    /**
+     * @param computation   the computation of the result for a viewport
+     * @param executor      the executor on which computations are run
+     * @param listener      the listener to which current results are passed
+     * @param clock         the clock by which computations are timed
+     */
+    public ViewportWorker(Computation<V, R> computation, Executor executor, Listener<R> listener, Clock clock) {
+        this.computation = computation;
+        this.executor = executor;
+        this.listener = listener;
+        this.clock = clock;
+    }
+
+    /**
+     * Submit a viewport, superseding all viewports submitted before it
+     *
+     * @param viewport  the viewport
+     * @return          the generation of the viewport
+     */
+    public synchronized long submit(V viewport) {
+        generation++;
+        numSubmitted++;
+        if (waiting != null) {
+            numSkipped++;
+        }
+        waiting = viewport;
+        waitingGeneration = generation;
+        waitingSince = clock.nanoTime();
+        if (!running) {
+            startWaiting();
+        }
+        return generation;
+    }
+
+    /**
+     * @param generation    the generation of a viewport
+     * @return              true if no viewport has been submitted since the one with this generation
+     */
+    public synchronized boolean isCurrent(long generation) {
+        return generation == this.generation;
+    }
+
+    /**
+     * @return  the number of viewports submitted
+     */
+    public synchronized long getNumSubmitted() {
+        return numSubmitted;
+    }
+
+    /**
+     * @return  the number of viewports superseded by a later one before their computation started,
+     *          whether still waiting or already handed to the executor
+     */
+    public synchronized long getNumSkipped() {
+        return numSkipped;
+    }
+
+    /**
+     * @return  the number of viewports whose computation has finished
+     */
+    public synchronized long getNumComputed() {
+        return numComputed;
+    }
+
+    /**
+     * @return  the number of results dropped because their viewport was superseded while computed
+     */
+    public synchronized long getNumDropped() {
+        return numDropped;
+    }
+
+    /**
+     * @return  the time taken by the last computation, in nanoseconds
+     */
+    public synchronized long getLastComputeNanos() {
+        return lastComputeNanos;
+    }
+
+    /**
+     * @return  the time from the submission of the last viewport whose result was passed to the
+     *          listener until its result was computed, in nanoseconds
+     */
+    public synchronized long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    // called holding the lock
+    private void startWaiting() {
+        final V viewport = waiting;
+        final long viewportGeneration = waitingGeneration;
+        final long submitted = waitingSince;
+        waiting = null;
+        running = true;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    compute(viewport, viewportGeneration, submitted);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            e.printStackTrace();
+            running = false;
+        }
+    }
+
+    private void compute(V viewport, long viewportGeneration, long submitted) {
+        if (!isCurrent(viewportGeneration)) {
+            // superseded after it was handed to the executor, but before it started
+            synchronized (this) {
+                numSkipped++;
+            }
+            finish();
+            return;
+        }
+
+        R result = null;
+        long start = clock.nanoTime();
+        try {
+            result = computation.compute(viewport, viewportGeneration);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        long end = clock.nanoTime();
+
+        boolean current;
+        synchronized (this) {
+            numComputed++;
+            lastComputeNanos = end - start;
+            if (viewportGeneration != generation) {
+                numDropped++;
+            }
+            current = result != null && viewportGeneration == generation;
+            if (current) {
+                lastLatencyNanos = end - submitted;
+            }
+        }
+        try {
+            if (current) {
+                listener.onResult(result, viewportGeneration);
+            }
+        } finally {
+            finish();
+        }
+    }
+
+    // start the viewport waiting, if there is one
+    private synchronized void finish() {
+        running = false;
+        if (waiting != null) {
+            startWaiting();
+        }
+    }
+}
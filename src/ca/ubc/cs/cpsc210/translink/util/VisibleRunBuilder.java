@@ -0,0 +1,153 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import java.util.Arrays;
+
+/**
+ * Builds the visible runs of paths: the maximal runs of consecutive segments of a path that
+ * intersect the visible area, each of which can be drawn as a single polyline.
+ *
+ * Paths are given as packed coordinates, [lat0, lon0, lat1, lon1, ...], and are either clipped to
+ * the visible rectangle or added a range of points at a time.
+ * The points of all runs added since the builder was last cleared are held in one buffer, which
+ * is reused from one frame to the next.
+ */
+public class VisibleRunBuilder {
+    // points of all runs, packed as interleaved latitudes and longitudes
+    private double[] points = new double[256];
+    private int numPoints;
+    // index in points of the first point of each run, followed by numPoints
+    private int[] runStarts = new int[17];
+    private int numRuns;
+    private SegmentRanges visible = new SegmentRanges();
+    // scratch space for clipping
+    private double[] range = new double[2];
+
+    /**
+     * Remove all runs
+     */
+    public void clear() {
+        numPoints = 0;
+        numRuns = 0;
+    }
+
+    /**
+     * Add a run for each piece of a path inside the visible rectangle.  Only the segments found
+     * by the index to intersect the rectangle are clipped, and each run begins and ends at the
+     * exact points where the path enters and leaves the rectangle.
+     *
+     * @param coords    the points of the path as interleaved latitudes and longitudes
+     * @param index     the index of the path
+     * @param north     latitude of the north edge of the visible rectangle
+     * @param west      longitude of the west edge of the visible rectangle
+     * @param south     latitude of the south edge of the visible rectangle
+     * @param east      longitude of the east edge of the visible rectangle
+     */
+    public void addVisibleRuns(double[] coords, PathIndex index, double north, double west, double south, double east) {
+        if (index.boundsIntersect(north, west, south, east)) {
+            index.findSegments(coords, north, west, south, east, visible);
+            for (int j = 0; j < visible.size(); j++) {
+                Geometry.clipPolyline(north, west, south, east, coords,
+                        visible.getStart(j), visible.getEnd(j) + 1, this, range);
+            }
+        }
+    }
+
+    /**
+     * Add a run made up of points from up to but not including to of a path
+     *
+     * @param coords    the points of the path as interleaved latitudes and longitudes
+     * @param from      index of the first point of the run
+     * @param to        index one past the last point of the run
+     */
+    public void addRun(double[] coords, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        beginRun();
+        ensurePoints(to - from);
+        System.arraycopy(coords, 2 * from, points, 2 * numPoints, 2 * (to - from));
+        numPoints += to - from;
+        runStarts[numRuns] = numPoints;
+    }
+
+    /**
+     * Begin a new run, to which points are then added one at a time
+     */
+    public void beginRun() {
+        if (numRuns + 2 > runStarts.length) {
+            runStarts = Arrays.copyOf(runStarts, runStarts.length * 2);
+        }
+        runStarts[numRuns] = numPoints;
+        numRuns++;
+    }
+
+    /**
+     * Add a point to the end of the run begun last
+     *
+     * @param lat   the latitude of the point
+     * @param lon   the longitude of the point
+     */
+    public void addPoint(double lat, double lon) {
+        ensurePoints(1);
+        points[2 * numPoints] = lat;
+        points[2 * numPoints + 1] = lon;
+        numPoints++;
+    }
+
+    /**
+     * End the run begun last, dropping it if it has fewer than two points
+     */
+    public void endRun() {
+        if (numPoints - runStarts[numRuns - 1] < 2) {
+            numRuns--;
+            numPoints = runStarts[numRuns];
+        }
+        runStarts[numRuns] = numPoints;
+    }
+
+    /**
+     * @return  the number of runs
+     */
+    public int getNumRuns() {
+        return numRuns;
+    }
+
+    /**
+     * @param run   the index of a run
+     * @return      the number of points in the run
+     */
+    public int getRunLength(int run) {
+        return runStarts[run + 1] - runStarts[run];
+    }
+
+    /**
+     * @param run   the index of a run
+     * @param i     the index of a point within the run
+     * @return      the latitude of the point
+     */
+    public double getLatitude(int run, int i) {
+        return points[2 * (runStarts[run] + i)];
+    }
+
+    /**
+     * @param run   the index of a run
+     * @param i     the index of a point within the run
+     * @return      the longitude of the point
+     */
+    public double getLongitude(int run, int i) {
+        return points[2 * (runStarts[run] + i) + 1];
+    }
+
+    /**
+     * @return  the total number of points in all runs
+     */
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    private void ensurePoints(int more) {
+        if (2 * (numPoints + more) > points.length) {
+            points = Arrays.copyOf(points, Math.max(points.length * 2, 2 * (numPoints + more)));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * The Web Mercator projection used by the map, onto integer world coordinates.
+ *
+ * The world is a square of WORLD_SIZE by WORLD_SIZE units, with x increasing eastwards from
+ * longitude -180 and y increasing southwards from latitude MAX_LATITUDE.  A map at zoom level z
+ * with tiles of TILE_SIZE pixels is 2^(z + 8) pixels across, so a pixel at any zoom level up to
+ * MAX_ZOOM is a power of two world units, and a world unit is under 4cm at the equator.
+ * Coordinates are projected once and then compared as ints; the map projects to the screen itself.
+ */
+public class WebMercator {
+    public static final int WORLD_BITS = 30;
+    public static final int WORLD_SIZE = 1 << WORLD_BITS;
+    public static final int TILE_BITS = 8;
+    public static final int TILE_SIZE = 1 << TILE_BITS;
+    public static final int MAX_ZOOM = WORLD_BITS - TILE_BITS;
+    // Web Mercator cannot show the poles
+    public static final double MAX_LATITUDE = 85.05112878;
+
+    /**
+     * Project a longitude onto the x axis of the world
+     *
+     * @param lon   the longitude, clamped to [-180, 180]
+     * @return      the x coordinate, from 0 to WORLD_SIZE - 1
+     */
+    public static int lonToX(double lon) {
+        double x = (Math.max(-180, Math.min(180, lon)) / 360 + 0.5) * WORLD_SIZE;
+        return (int) Math.min(WORLD_SIZE - 1, Math.round(x));
+    }
+
+    /**
+     * Project a latitude onto the y axis of the world
+     *
+     * @param lat   the latitude, clamped to [-MAX_LATITUDE, MAX_LATITUDE]
+     * @return      the y coordinate, from 0 to WORLD_SIZE - 1
+     */
+    public static int latToY(double lat) {
+        double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat))));
+        double y = (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * WORLD_SIZE;
+        return (int) Math.max(0, Math.min(WORLD_SIZE - 1, Math.round(y)));
+    }
+
+    /**
+     * @param x     an x coordinate of the world
+     * @return      the longitude projected onto x
+     */
+    public static double xToLon(double x) {
+        return (x / WORLD_SIZE - 0.5) * 360;
+    }
+
+    /**
+     * @param y     a y coordinate of the world
+     * @return      the latitude projected onto y
+     */
+    public static double yToLat(double y) {
+        return Math.toDegrees(2 * Math.atan(Math.exp((0.5 - y / WORLD_SIZE) * 2 * Math.PI)) - Math.PI / 2);
+    }
+
+    /**
+     * @param lat   a latitude
+     * @param lon   a longitude
+     * @return      true if the point can be projected without being clamped
+     */
+    public static boolean canProject(double lat, double lon) {
+        return Math.abs(lat) <= MAX_LATITUDE && Math.abs(lon) <= 180;
+    }
+
+    /**
+     * Project packed coordinates, [lat0, lon0, lat1, lon1, ...]
+     *
+     * @param coords    the points as interleaved latitudes and longitudes
+     * @return          a new array of the same length holding the points as interleaved x and
+     *                  y coordinates, [x0, y0, x1, y1, ...]
+     */
+    public static int[] project(double[] coords) {
+        int[] world = new int[coords.length];
+        for (int i = 0; i + 1 < coords.length; i += 2) {
+            world[i] = lonToX(coords[i + 1]);
+            world[i + 1] = latToY(coords[i]);
+        }
+        return world;
+    }
+
+    /**
+     * Get the number of world units in a screen pixel at a zoom level
+     *
+     * @param zoom  a zoom level from 0 to MAX_ZOOM
+     * @return      the length of a pixel in world units
+     */
+    public static int pixelSize(int zoom) {
+        return 1 << (MAX_ZOOM - zoom);
+    }
+}
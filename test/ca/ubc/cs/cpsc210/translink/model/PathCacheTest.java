@@ -0,0 +1,154 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the LRU eviction, coordinate budget and counters of the PathCache
+ */
+public class PathCacheTest {
+    private PathCache cache;
+
+    /**
+     * A path source of a given number of points that counts the times it is decoded
+     */
+    private static class CountingSource implements PathSource {
+        private final int numPoints;
+        private int decodes;
+
+        CountingSource(int numPoints) {
+            this.numPoints = numPoints;
+        }
+
+        @Override
+        public double[] decode() {
+            decodes++;
+            return new double[numPoints * 2];
+        }
+
+        @Override
+        public int getNumPoints() {
+            return numPoints;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        cache = PathCache.getInstance();
+        cache.clear();
+        cache.setCoordinateBudget(100);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        cache.setCoordinateBudget(PathCache.DEFAULT_COORDINATE_BUDGET);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        CountingSource source = new CountingSource(10);
+        double[] path = cache.get(source);
+        assertSame(path, cache.get(source));
+        assertSame(path, cache.get(source));
+        assertEquals(1, source.decodes);
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(10, cache.getNumCoordinates());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        CountingSource a = new CountingSource(40);
+        CountingSource b = new CountingSource(40);
+        CountingSource c = new CountingSource(40);
+        cache.get(a);
+        cache.get(b);
+        // a is now more recently used than b
+        cache.get(a);
+        cache.get(c);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(80, cache.getNumCoordinates());
+
+        cache.get(a);
+        cache.get(c);
+        assertEquals(1, a.decodes);
+        assertEquals(1, c.decodes);
+        cache.get(b);
+        assertEquals(2, b.decodes);
+        // b displaced a, the least recently used of a and c
+        assertEquals(2, cache.getEvictions());
+        cache.get(c);
+        assertEquals(1, c.decodes);
+    }
+
+    @Test
+    public void testMostRecentPathKept() {
+        CountingSource small = new CountingSource(10);
+        CountingSource large = new CountingSource(150);
+        cache.get(small);
+        cache.get(large);
+        assertEquals(150, cache.getNumCoordinates());
+        assertEquals(1, cache.getEvictions());
+        cache.get(large);
+        assertEquals(1, large.decodes);
+    }
+
+    @Test
+    public void testBudgetShrunk() {
+        CountingSource a = new CountingSource(30);
+        CountingSource b = new CountingSource(30);
+        CountingSource c = new CountingSource(30);
+        cache.get(a);
+        cache.get(b);
+        cache.get(c);
+        assertEquals(90, cache.getNumCoordinates());
+
+        cache.setCoordinateBudget(60);
+        assertEquals(60, cache.getNumCoordinates());
+        assertEquals(1, cache.getEvictions());
+        cache.setCoordinateBudget(1);
+        assertEquals(30, cache.getNumCoordinates());
+        assertEquals(2, cache.getEvictions());
+
+        cache.get(c);
+        assertEquals(1, c.decodes);
+        cache.get(b);
+        assertEquals(2, b.decodes);
+    }
+
+    @Test
+    public void testRemove() {
+        CountingSource a = new CountingSource(30);
+        CountingSource b = new CountingSource(20);
+        cache.get(a);
+        cache.get(b);
+        cache.remove(a);
+        assertEquals(20, cache.getNumCoordinates());
+        // removing a path not held changes nothing
+        cache.remove(a);
+        cache.remove(new CountingSource(5));
+        assertEquals(20, cache.getNumCoordinates());
+        assertEquals(0, cache.getEvictions());
+
+        cache.get(a);
+        assertEquals(2, a.decodes);
+        assertEquals(50, cache.getNumCoordinates());
+    }
+
+    @Test
+    public void testClear() {
+        cache.get(new CountingSource(60));
+        cache.get(new CountingSource(60));
+        cache.clear();
+        assertEquals(0, cache.getNumCoordinates());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+}
@@ -0,0 +1,135 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.parsers.StopParser;
+import ca.ubc.cs.cpsc210.translink.util.IntList;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.WebMercator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the clusters of the stops of res/raw/stops.json at every zoom level.  Run from the
+ * project directory, so that res/raw is found.
+ */
+public class StopClustersTest {
+    private StopManager manager;
+    private StopClusters clusters;
+    private int numPlaced;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = StopManager.getInstance();
+        manager.clearStops();
+        RouteManager.getInstance().clearRoutes();
+        new StopParser("stops").parseStops(new FileInputStream("res/raw/stops.json"));
+        clusters = manager.getClusters();
+        for (Stop stop : manager) {
+            if (WebMercator.canProject(stop.getLatitude(), stop.getLongitude())) {
+                numPlaced++;
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        manager.clearStops();
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Test
+    public void testSizesSumToStopsAtEveryLevel() {
+        for (int zoom = 0; zoom <= StopClusters.MAX_ZOOM + 1; zoom++) {
+            int stops = 0;
+            for (int i = 0; i < clusters.getNumClusters(zoom); i++) {
+                assertTrue(clusters.getSize(zoom, i) > 0);
+                stops += clusters.getSize(zoom, i);
+            }
+            assertEquals("zoom " + zoom, numPlaced, stops);
+        }
+    }
+
+    @Test
+    public void testClustersMergeAsZoomFalls() {
+        assertEquals(numPlaced, clusters.getNumClusters(StopClusters.MAX_ZOOM + 1));
+        for (int zoom = StopClusters.MAX_ZOOM; zoom >= 0; zoom--) {
+            assertTrue(clusters.getNumClusters(zoom) <= clusters.getNumClusters(zoom + 1));
+        }
+        assertTrue(clusters.getNumClusters(StopClusters.MAX_ZOOM) < numPlaced);
+    }
+
+    @Test
+    public void testSingleStopsAboveMaxZoom() {
+        int zoom = StopClusters.MAX_ZOOM + 1;
+        Set<Stop> seen = new HashSet<>();
+        for (int i = 0; i < clusters.getNumClusters(zoom); i++) {
+            Stop stop = clusters.getStop(zoom, i);
+            assertNotNull(stop);
+            assertTrue(seen.add(stop));
+            assertEquals(stop.getLatitude(), clusters.getLatitude(zoom, i), 1e-6);
+            assertEquals(stop.getLongitude(), clusters.getLongitude(zoom, i), 1e-6);
+        }
+    }
+
+    @Test
+    public void testStopOnlyForClustersOfOne() {
+        for (int zoom = 0; zoom <= StopClusters.MAX_ZOOM; zoom++) {
+            for (int i = 0; i < clusters.getNumClusters(zoom); i++) {
+                if (clusters.getSize(zoom, i) == 1) {
+                    assertNotNull(clusters.getStop(zoom, i));
+                } else {
+                    assertNull(clusters.getStop(zoom, i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFindMatchesScanOfCentres() {
+        IntList found = new IntList();
+        double north = 49.30;
+        double west = -123.20;
+        double south = 49.22;
+        double east = -123.05;
+        for (int zoom = 0; zoom <= StopClusters.MAX_ZOOM + 1; zoom++) {
+            clusters.find(zoom, north, west, south, east, found);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < clusters.getNumClusters(zoom); i++) {
+                double lat = clusters.getLatitude(zoom, i);
+                double lon = clusters.getLongitude(zoom, i);
+                if (lat <= north && lat >= south && lon >= west && lon <= east) {
+                    expected.add(i);
+                }
+            }
+            Set<Integer> actual = new HashSet<>();
+            for (int i = 0; i < found.size(); i++) {
+                actual.add(found.get(i));
+            }
+            assertEquals("zoom " + zoom, new HashSet<>(expected), actual);
+        }
+    }
+
+    @Test
+    public void testStopsWithoutLocationLeftOut() {
+        manager.clearStops();
+        manager.getStopWithId(1, "Placed", new LatLon(49.26, -123.25));
+        // a stop referred to before its location is known is placed off the map
+        manager.getStopWithId(2);
+        StopClusters few = manager.getClusters();
+        for (int zoom = 0; zoom <= StopClusters.MAX_ZOOM + 1; zoom++) {
+            assertEquals(1, few.getNumClusters(zoom));
+            assertEquals(1, few.getSize(zoom, 0));
+        }
+    }
+}
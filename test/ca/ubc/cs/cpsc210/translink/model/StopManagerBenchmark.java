@@ -0,0 +1,80 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.parsers.StopParser;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding the nearest stop through the grid of the stop manager with a linear scan over
+ * all stops, as findNearestTo did before, at random points in the area served.  Run from the
+ * project directory, so that res/raw is found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StopManagerBenchmark {
+    private static final int POINTS = 1024;
+
+    private LatLon[] points = new LatLon[POINTS];
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        StopManager.getInstance().clearStops();
+        new StopParser("stops").parseStops(new FileInputStream("res/raw/stops.json"));
+        Random random = new Random(210);
+        for (int i = 0; i < POINTS; i++) {
+            points[i] = new LatLon(48.9 + random.nextDouble() * 0.7, -123.4 + random.nextDouble() * 0.9);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        StopManager.getInstance().clearStops();
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Benchmark
+    public Stop grid() {
+        return StopManager.getInstance().findNearestTo(nextPoint());
+    }
+
+    @Benchmark
+    public Stop linear() {
+        LatLon pt = nextPoint();
+        Stop nearest = null;
+        double nearestDistance = StopManager.RADIUS;
+        for (Stop stop : StopManager.getInstance()) {
+            double d = SphericalGeometry.distanceBetween(stop.getLatitude(), stop.getLongitude(),
+                    pt.getLatitude(), pt.getLongitude());
+            if (d < nearestDistance || (d == nearestDistance && nearest != null && stop.getNumber() < nearest.getNumber())) {
+                nearest = stop;
+                nearestDistance = d;
+            }
+        }
+        return nearest;
+    }
+
+    private LatLon nextPoint() {
+        next = (next + 1) % POINTS;
+        return points[next];
+    }
+}
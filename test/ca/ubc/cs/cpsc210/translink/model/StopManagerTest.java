@@ -0,0 +1,135 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.parsers.StopParser;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that the searches of the stop manager find exactly the stops that a linear scan over all
+ * stops finds, at random points in and around the stops of res/raw/stops.json.  Run from the
+ * project directory, so that res/raw is found.
+ */
+public class StopManagerTest {
+    private static final int POINTS = 1000;
+
+    private StopManager manager;
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = StopManager.getInstance();
+        manager.clearStops();
+        RouteManager.getInstance().clearRoutes();
+        new StopParser("stops").parseStops(new FileInputStream("res/raw/stops.json"));
+        random = new Random(210);
+    }
+
+    @After
+    public void tearDown() {
+        manager.clearStops();
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Test
+    public void testFindNearestToMatchesLinearScan() {
+        for (int i = 0; i < POINTS; i++) {
+            LatLon pt = randomPoint();
+            List<Stop> nearest = linearScan(pt, StopManager.RADIUS, 1);
+            assertSame(pt.toString(), nearest.isEmpty() ? null : nearest.get(0), manager.findNearestTo(pt));
+        }
+    }
+
+    @Test
+    public void testFindNearestToAtStops() {
+        // every tenth stop, as a point with a stop at distance 0
+        int i = 0;
+        for (Stop stop : manager) {
+            if (i++ % 10 != 0) {
+                continue;
+            }
+            LatLon pt = new LatLon(stop.getLatitude(), stop.getLongitude());
+            assertSame(linearScan(pt, StopManager.RADIUS, 1).get(0), manager.findNearestTo(pt));
+        }
+    }
+
+    @Test
+    public void testFindWithinMatchesLinearScan() {
+        for (int i = 0; i < POINTS; i++) {
+            LatLon pt = randomPoint();
+            double radius = random.nextDouble() * 2000;
+            assertEquals(pt + " " + radius, linearScan(pt, radius, Integer.MAX_VALUE), manager.findWithin(pt, radius));
+        }
+    }
+
+    @Test
+    public void testFindKNearestMatchesLinearScan() {
+        for (int i = 0; i < POINTS; i++) {
+            LatLon pt = randomPoint();
+            int k = 1 + random.nextInt(20);
+            assertEquals(pt + " " + k, linearScan(pt, Double.POSITIVE_INFINITY, k), manager.findKNearest(pt, k));
+        }
+    }
+
+    @Test
+    public void testIndexFollowsStops() {
+        manager.clearStops();
+        assertNull(manager.findNearestTo(new LatLon(49.26, -123.25)));
+
+        Stop near = manager.getStopWithId(2, "near", new LatLon(49.2601, -123.2501));
+        Stop tied = manager.getStopWithId(1, "tied", new LatLon(49.2601, -123.2501));
+        manager.getStopWithId(3, "far", new LatLon(49.30, -123.10));
+        assertSame(tied, manager.findNearestTo(new LatLon(49.26, -123.25)));
+        assertEquals(3, manager.findKNearest(new LatLon(49.26, -123.25), 5).size());
+        assertSame(near, manager.findKNearest(new LatLon(49.26, -123.25), 2).get(1));
+        assertNull(manager.findNearestTo(new LatLon(48.0, -123.25)));
+    }
+
+    // a point in or around the area served, or now and then far from any stop
+    private LatLon randomPoint() {
+        if (random.nextInt(10) == 0) {
+            return new LatLon(-80 + random.nextDouble() * 160, -180 + random.nextDouble() * 360);
+        }
+        return new LatLon(48.9 + random.nextDouble() * 0.7, -123.4 + random.nextDouble() * 0.9);
+    }
+
+    // the stops less than radius metres from pt, nearest first and then by number, up to count
+    private List<Stop> linearScan(LatLon pt, double radius, int count) {
+        final Map<Stop, Double> distances = new HashMap<>();
+        for (Stop stop : manager) {
+            double d = SphericalGeometry.distanceBetween(stop.getLatitude(), stop.getLongitude(),
+                    pt.getLatitude(), pt.getLongitude());
+            if (d < radius) {
+                distances.put(stop, d);
+            }
+        }
+        List<Stop> found = new ArrayList<>(distances.keySet());
+        Collections.sort(found, new Comparator<Stop>() {
+            @Override
+            public int compare(Stop a, Stop b) {
+                double da = distances.get(a);
+                double db = distances.get(b);
+                if (da != db) {
+                    return da < db ? -1 : 1;
+                }
+                return a.getNumber() < b.getNumber() ? -1 : (a.getNumber() == b.getNumber() ? 0 : 1);
+            }
+        });
+        return found.size() > count ? new ArrayList<>(found.subList(0, count)) : found;
+    }
+}
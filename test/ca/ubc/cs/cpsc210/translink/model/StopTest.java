@@ -0,0 +1,96 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that adding arrivals to a stop in one batch gives the same order as adding them one at a time
+ */
+public class StopTest {
+    private static final LatLon LOCN = new LatLon(49.26, -123.25);
+
+    @Test
+    public void testBatchMatchesOneAtATime() {
+        Random random = new Random(6);
+        Route[] routes = {new Route("099"), new Route("014"), new Route("004")};
+        for (int trial = 0; trial < 100; trial++) {
+            // runs in order per route, as parsed, with many arrivals at the same time
+            List<Arrival> arrivals = new ArrayList<>();
+            for (Route route : routes) {
+                int countdown = random.nextInt(5);
+                for (int i = random.nextInt(8); i > 0; i--) {
+                    countdown += random.nextInt(4);
+                    arrivals.add(new Arrival(countdown, "Destination " + i, route));
+                }
+            }
+            // and some out of order
+            for (int i = random.nextInt(4); i > 0; i--) {
+                arrivals.add(new Arrival(random.nextInt(30), "Late", routes[0]));
+            }
+
+            Stop one = new Stop(1, "One", LOCN);
+            Stop batch = new Stop(2, "Batch", LOCN);
+            Arrival earlier = new Arrival(3, "Earlier", routes[1]);
+            one.addArrival(earlier);
+            batch.addArrival(earlier);
+            for (Arrival arrival : arrivals) {
+                one.addArrival(arrival);
+            }
+            batch.addArrivals(arrivals);
+            assertSameOrder(one.getArrivals(), batch.getArrivals());
+        }
+    }
+
+    @Test
+    public void testEmptyBatch() {
+        Stop stop = new Stop(1, "One", LOCN);
+        stop.addArrivals(new ArrayList<Arrival>());
+        assertEquals(0, stop.getArrivals().size());
+    }
+
+    @Test
+    public void testQuantizedLocation() {
+        Stop stop = new Stop(1, "One", new LatLon(49.262756, -123.250124));
+        int x = stop.getMercatorX();
+        stop.quantize();
+        assertEquals(49262756, stop.getLatitudeE6());
+        assertEquals(-123250124, stop.getLongitudeE6());
+        assertEquals(49.262756, stop.getLatitude(), 0);
+        assertEquals(-123.250124, stop.getLongitude(), 0);
+        assertEquals(x, stop.getMercatorX());
+        LatLon locn = stop.getLocn();
+        assertEquals(new LatLon(49.262756, -123.250124), locn);
+        assertSame(locn, stop.getLocn());
+    }
+
+    @Test
+    public void testQuantizedLocationRounded() {
+        Stop stop = new Stop(1, "One", new LatLon(49.26275649, -123.25012351));
+        stop.quantize();
+        assertEquals(49.262756, stop.getLatitude(), 0);
+        assertEquals(-123.250124, stop.getLongitude(), 0);
+        assertEquals(49.26275649, stop.getLocn().getLatitude(), 1e-6);
+    }
+
+    @Test
+    public void testQuantizedWithoutLocation() {
+        Stop stop = new Stop(1, "One", null);
+        stop.quantize();
+        assertNull(stop.getLocn());
+    }
+
+    private static void assertSameOrder(List<Arrival> expected, List<Arrival> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+}
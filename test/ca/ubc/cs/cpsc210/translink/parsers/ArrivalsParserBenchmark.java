@@ -0,0 +1,54 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.Arrival;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.providers.RttiStub;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding an estimates response of six routes of six arrivals, as answered by the RTTI
+ * stub, from a String through a JSONArray with decoding it from the body stream.  Run with
+ * -prof gc to see the bytes allocated per response (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ArrivalsParserBenchmark {
+    private static final int STOP = 51479;
+
+    private byte[] body;
+    private Stop stop;
+
+    @Setup
+    public void setUp() throws Exception {
+        body = RttiStub.estimates(STOP).getBytes("UTF-8");
+        stop = new Stop(STOP, "Benchmark Stop", new LatLon(49.26, -123.25));
+    }
+
+    @Benchmark
+    public List<Arrival> string() throws Exception {
+        return ArrivalsParser.parseArrivalList(stop, new String(body, "UTF-8"));
+    }
+
+    @Benchmark
+    public List<Arrival> stream() throws Exception {
+        return ArrivalsParser.parseArrivalList(stop, new ByteArrayInputStream(body));
+    }
+}
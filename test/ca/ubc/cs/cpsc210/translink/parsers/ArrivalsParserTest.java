@@ -0,0 +1,194 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.Arrival;
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.ArrivalsDataMissingException;
+import ca.ubc.cs.cpsc210.translink.providers.RttiStub;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the arrivals parser, and that decoding a response from a stream gives the same
+ * arrivals, or fails in the same way, as decoding it from a String
+ */
+public class ArrivalsParserTest {
+    private static final String ROUTE_099 = "{\"RouteNo\":\"099\",\"RouteName\":\"UBC/BROADWAY STATION\","
+            + "\"Schedules\":[{\"ExpectedCountdown\":4,\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"},"
+            + "{\"ExpectedCountdown\":9,\"Destination\":\"UBC\",\"ScheduleStatus\":\"-\"}]}";
+    private static final String ROUTE_014 = "{\"RouteNo\":\"014\",\"RouteName\":\"HASTINGS/UBC\","
+            + "\"Schedules\":[{\"ExpectedCountdown\":2,\"Destination\":\"UBC\",\"ScheduleStatus\":\"+\"}]}";
+    private static final String NO_NAME = "{\"RouteNo\":\"004\",\"Schedules\":[]}";
+
+    private Stop stop;
+
+    @Before
+    public void setUp() {
+        RouteManager.getInstance().clearRoutes();
+        stop = new Stop(51479, "Test Stop", new LatLon(49.26, -123.25));
+    }
+
+    @After
+    public void tearDown() {
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Test
+    public void testArrivalsOfAllRoutesSorted() throws Exception {
+        ArrivalsParser.parseArrivals(stop, "[" + ROUTE_099 + "," + ROUTE_014 + "]");
+        assertEquals(3, stop.getArrivals().size());
+        assertEquals(2, stop.getArrivals().get(0).getTimeToStopInMins());
+        assertEquals(4, stop.getArrivals().get(1).getTimeToStopInMins());
+        assertEquals(9, stop.getArrivals().get(2).getTimeToStopInMins());
+        assertEquals(2, stop.getRoutes().size());
+    }
+
+    @Test
+    public void testNoArrivalsAddedWhenLaterRouteMissingData() throws Exception {
+        try {
+            ArrivalsParser.parseArrivals(stop, "[" + ROUTE_099 + "," + ROUTE_014 + "," + NO_NAME + "]");
+            fail("expected missing data");
+        } catch (ArrivalsDataMissingException e) {
+            // the arrivals of the routes before the error are not added, though the routes are
+            assertEquals(0, stop.getArrivals().size());
+            assertEquals(2, stop.getRoutes().size());
+        }
+    }
+
+    @Test
+    public void testArrivalsAddedToThoseHeld() throws Exception {
+        ArrivalsParser.parseArrivals(stop, "[" + ROUTE_099 + "]");
+        ArrivalsParser.parseArrivals(stop, "[" + ROUTE_014 + "]");
+        assertEquals(3, stop.getArrivals().size());
+        Arrival first = stop.getArrivals().get(0);
+        assertEquals("014", first.getRoute().getNumber());
+    }
+
+    @Test
+    public void testStreamMatchesStringOnRttiResponse() throws Exception {
+        assertSameOutcome(RttiStub.estimates(51479));
+        assertSameOutcome("[" + ROUTE_099 + "," + ROUTE_014 + "]");
+    }
+
+    @Test
+    public void testStreamMatchesStringOnMissingFields() throws Exception {
+        assertSameOutcome("[" + NO_NAME + "]");
+        assertSameOutcome("[" + ROUTE_099 + "," + NO_NAME + "]");
+        assertSameOutcome("[{\"RouteName\":\"NO NUMBER\",\"Schedules\":[]}]");
+        assertSameOutcome("[{\"RouteNo\":\"099\",\"RouteName\":\"NO SCHEDULES\"}]");
+        assertSameOutcome(route("{\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":4,\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":4,\"Destination\":\"UBC\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":4,\"Destination\":null,\"ScheduleStatus\":\"*\"}"));
+    }
+
+    @Test
+    public void testStreamMatchesStringOnReorderedFields() throws Exception {
+        assertSameOutcome("[{\"Schedules\":[{\"ScheduleStatus\":\"-\",\"Destination\":\"UBC\",\"ExpectedCountdown\":7}],"
+                + "\"RouteName\":\"UBC/BROADWAY STATION\",\"RouteNo\":\"099\"}]");
+        assertSameOutcome("[{\"RouteName\":\"HASTINGS/UBC\",\"Extra\":{\"RouteNo\":\"x\",\"List\":[1,2,{}]},"
+                + "\"Schedules\":[{\"Destination\":\"UBC\",\"Pattern\":\"WB1\",\"ExpectedCountdown\":3,"
+                + "\"ScheduleStatus\":\"*\",\"CancelledTrip\":false}],\"RouteNo\":\"014\"}]");
+    }
+
+    @Test
+    public void testStreamMatchesStringOnEmptyRoutes() throws Exception {
+        assertSameOutcome("[]");
+        assertSameOutcome("[{\"RouteNo\":\"\",\"RouteName\":\"EMPTY\",\"Schedules\":[]}]");
+        assertSameOutcome("[{\"RouteNo\":\"099\",\"RouteName\":\"\",\"Schedules\":[]}]");
+        assertSameOutcome("[{\"RouteNo\":\"099\",\"RouteName\":\"NO ARRIVALS\",\"Schedules\":[]}]");
+        assertSameOutcome("[" + ROUTE_099 + ",{\"RouteNo\":\"014\",\"RouteName\":\"NO ARRIVALS\",\"Schedules\":[]}]");
+    }
+
+    @Test
+    public void testStreamMatchesStringOnNumericStrings() throws Exception {
+        assertSameOutcome(route("{\"ExpectedCountdown\":\"12\",\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":\"-3\",\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":\"soon\",\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":\"4.5\",\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":\" 4\",\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":4.5,\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":1e3,\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":99999999999,\"Destination\":\"UBC\",\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome(route("{\"ExpectedCountdown\":4,\"Destination\":12,\"ScheduleStatus\":\"*\"}"));
+        assertSameOutcome("[{\"RouteNo\":99,\"RouteName\":\"NUMBER\",\"Schedules\":[]}]");
+    }
+
+    @Test
+    public void testStreamMatchesStringOnMalformedInput() throws Exception {
+        String whole = "[" + ROUTE_099 + "," + ROUTE_014 + "]";
+        for (int length = 0; length < whole.length(); length += 7) {
+            assertSameOutcome(whole.substring(0, length));
+        }
+        assertSameOutcome("{}");
+        assertSameOutcome("[1]");
+        assertSameOutcome("[" + ROUTE_099 + "]x");
+        assertSameOutcome(route("4"));
+    }
+
+    @Test
+    public void testStreamRejectsTrailingComma() throws Exception {
+        // accepted by JSONArray, though it is not JSON
+        String json = "[" + ROUTE_099 + ",]";
+        assertEquals(2, ArrivalsParser.parseArrivalList(stop, json).size());
+        try {
+            ArrivalsParser.parseArrivalList(stop, new ByteArrayInputStream(json.getBytes("UTF-8")));
+            fail("expected JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    // a response of one route with a single schedule
+    private static String route(String schedule) {
+        return "[{\"RouteNo\":\"099\",\"RouteName\":\"UBC/BROADWAY STATION\",\"Schedules\":[" + schedule + "]}]";
+    }
+
+    // both overloads of parseArrivalList give the same arrivals and add the same routes to the
+    // stop, or fail with the same exception
+    private static void assertSameOutcome(String json) throws Exception {
+        RouteManager.getInstance().clearRoutes();
+        Stop fromString = new Stop(51479, "Test Stop", new LatLon(49.26, -123.25));
+        String expected;
+        try {
+            expected = describe(ArrivalsParser.parseArrivalList(fromString, json), fromString);
+        } catch (Exception e) {
+            expected = e.getClass().getSimpleName();
+        }
+
+        RouteManager.getInstance().clearRoutes();
+        Stop fromStream = new Stop(51479, "Test Stop", new LatLon(49.26, -123.25));
+        String actual;
+        try {
+            actual = describe(ArrivalsParser.parseArrivalList(fromStream,
+                    new ByteArrayInputStream(json.getBytes("UTF-8"))), fromStream);
+        } catch (Exception e) {
+            actual = e.getClass().getSimpleName();
+        }
+        assertEquals(json, expected, actual);
+    }
+
+    private static String describe(List<Arrival> arrivals, Stop stop) {
+        List<String> described = new ArrayList<>();
+        for (Arrival arrival : arrivals) {
+            described.add(arrival.getTimeToStopInMins() + " " + arrival.getDestination() + " "
+                    + arrival.getStatus() + " " + arrival.getRoute().getNumber() + " " + arrival.getRoute().getName());
+        }
+        List<String> routes = new ArrayList<>();
+        for (Route route : stop.getRoutes()) {
+            routes.add(route.getNumber());
+        }
+        return described + " on " + routes;
+    }
+}
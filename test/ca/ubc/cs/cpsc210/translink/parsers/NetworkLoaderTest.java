@@ -0,0 +1,126 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.PathCache;
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that parsing the text resources in parallel gives the same model as parsing them one
+ * after another.  Run from the project directory, so that res/raw is found.
+ */
+public class NetworkLoaderTest {
+    private static final File RAW = new File("res/raw");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        FileDataProvider.setDirectory(RAW);
+        clear();
+    }
+
+    @After
+    public void tearDown() {
+        clear();
+        FileDataProvider.setDirectory(null);
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        List<String> sequential = load(1, false);
+        List<String> parallel = load(3, false);
+        assertTrue(sequential.size() > 8000);
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testParallelMatchesSequentialWithLazyPaths() {
+        assertEquals(load(1, true), load(3, true));
+    }
+
+    @Test
+    public void testQuantizedCoordinatesLossless() {
+        List<String> degrees = load(1, false);
+        File snapshot = new File(folder.getRoot(), "network.snapshot");
+        for (int i = 0; i < 2; i++) {
+            // from the text resources, then from the snapshot written
+            clear();
+            NetworkLoader loader = new NetworkLoader(snapshot, 0, 1);
+            loader.setQuantizedCoordinates(true);
+            assertEquals(i == 1, loader.load());
+            assertTrue(loader.getPhaseTimes().containsKey("quantize"));
+            // every coordinate is given to 6 decimal places, so comes back exactly
+            assertEquals(degrees, describe());
+        }
+    }
+
+    @Test
+    public void testPhaseTimes() {
+        NetworkLoader loader = new NetworkLoader(new File("none"), 0, 3);
+        assertTrue(loader.parseText());
+        assertTrue(loader.getPhaseTimes().keySet().containsAll(Arrays.asList(NetworkLoader.ROUTES_FILE,
+                NetworkLoader.STOPS_FILE, NetworkLoader.ROUTE_MAP_FILE, "wait", "link")));
+    }
+
+    // parse the text resources on the given number of threads, and describe the model parsed
+    private List<String> load(int threads, boolean lazyPaths) {
+        clear();
+        NetworkLoader loader = new NetworkLoader(new File("none"), 0, threads);
+        loader.setLazyPaths(lazyPaths);
+        assertTrue(loader.parseText());
+        return describe();
+    }
+
+    // one line for each route and each stop, holding all that was parsed for it, in sorted order
+    static List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        for (Route route : RouteManager.getInstance()) {
+            StringBuilder line = new StringBuilder("route " + route.getNumber() + " " + route.getName() + " stops");
+            for (Stop stop : route.getStops()) {
+                line.append(" ").append(stop.getNumber());
+            }
+            for (RoutePattern pattern : route.getPatterns()) {
+                line.append(" pattern ").append(pattern.getName()).append(" ").append(pattern.getDestination())
+                        .append(" ").append(pattern.getDirection()).append(" ")
+                        .append(Arrays.toString(pattern.getCoordinates()));
+            }
+            lines.add(line.toString());
+        }
+        for (Stop stop : StopManager.getInstance()) {
+            List<String> routes = new ArrayList<>();
+            for (Route route : stop.getRoutes()) {
+                routes.add(route.getNumber());
+            }
+            Collections.sort(routes);
+            lines.add("stop " + stop.getNumber() + " " + stop.getName() + " " + stop.getLatitude() + " "
+                    + stop.getLongitude() + " " + routes);
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    static void clear() {
+        StopManager.getInstance().clearStops();
+        RouteManager.getInstance().clearRoutes();
+        PathCache.getInstance().clear();
+    }
+}
@@ -0,0 +1,69 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the paths of res/raw/allroutemapstxt.txt as RouteMapParser did before it
+ * decoded bytes, splitting a String of the file into lines and coordinates and parsing each with
+ * Double.parseDouble, with reading them from the bytes of the file.  Neither adds the paths to
+ * the model.  Run from the project directory, so that res/raw is found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RouteMapParserBenchmark {
+    private byte[] routeMap;
+
+    @Setup
+    public void setUp() throws Exception {
+        routeMap = Files.readAllBytes(new File("res/raw/allroutemapstxt.txt").toPath());
+    }
+
+    @Benchmark
+    public List<double[]> string() throws Exception {
+        String c = new String(routeMap, "UTF-8");
+        List<double[]> paths = new ArrayList<>();
+        int posn = 0;
+        while (posn < c.length()) {
+            int endposn = c.indexOf('\n', posn);
+            if (endposn < 0) {
+                endposn = c.length();
+            }
+            String str = c.substring(posn, endposn);
+            String remainder = str.substring(str.indexOf(";") + 1, str.length());
+            if (!remainder.isEmpty()) {
+                String[] string = remainder.split(";");
+                double[] elements = new double[string.length & ~1];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = Double.parseDouble(string[i]);
+                }
+                paths.add(elements);
+            }
+            posn = endposn + 1;
+        }
+        return paths;
+    }
+
+    @Benchmark
+    public List<RouteMapParser.PathData> bytes() {
+        return new RouteMapParser(NetworkLoader.ROUTE_MAP_FILE, false).read(routeMap, 0, routeMap.length);
+    }
+}
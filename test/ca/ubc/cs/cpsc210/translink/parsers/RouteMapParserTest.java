@@ -0,0 +1,110 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the fixed-point decimal parser of RouteMapParser gives the same doubles as
+ * Double.parseDouble.  Run from the project directory, so that res/raw is found.
+ */
+public class RouteMapParserTest {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void testEveryCoordinateInRouteMap() throws Exception {
+        byte[] buf = Files.readAllBytes(new File("res/raw/allroutemapstxt.txt").toPath());
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i <= buf.length; i++) {
+            if (i == buf.length || buf[i] == ';' || buf[i] == '\n') {
+                // the first field of each line is the route and pattern
+                if (i > start && buf[start] != 'N') {
+                    assertParsed(new String(buf, start, i - start, ASCII));
+                    count++;
+                }
+                start = i + 1;
+            }
+        }
+        assertTrue(count > 100000);
+    }
+
+    @Test
+    public void testSigns() {
+        assertParsed("-122.667252");
+        assertParsed("+49.21716");
+        assertParsed("-0");
+        assertParsed("-0.0");
+        assertParsed("0");
+    }
+
+    @Test
+    public void testNoFraction() {
+        assertParsed("49");
+        assertParsed("-123");
+        assertParsed("49.");
+        assertParsed(".5");
+        assertParsed("-.5");
+    }
+
+    @Test
+    public void testManySignificantDigits() {
+        assertParsed("49.2171600000000001");
+        assertParsed("-122.66725212345678901");
+        assertParsed("0.1234567890123456789");
+        assertParsed("1234567890123456789012345");
+        assertParsed("0.00000000000000000000000001");
+    }
+
+    @Test
+    public void testFallbackBoundary() {
+        // 2^53 is the largest mantissa scaled directly; 1e22 the largest exact power of ten
+        assertParsed("9007199254740992");
+        assertParsed("9007199254740993");
+        assertParsed("0.9007199254740992");
+        assertParsed("0.9007199254740993");
+        assertParsed("900719925474099.2");
+        assertParsed("1.0000000000000000000001");
+        assertParsed("0.0000000000000000000001");
+        assertParsed("0.00000000000000000000001");
+        assertParsed("12345.0000000000000000000");
+    }
+
+    @Test
+    public void testOtherFormats() {
+        assertParsed("1e5");
+        assertParsed("-1.5E-3");
+        assertParsed("Infinity");
+        assertParsed("NaN");
+    }
+
+    @Test
+    public void testMalformed() {
+        assertMalformed("-");
+        assertMalformed(".");
+        assertMalformed("1.2.3");
+        assertMalformed("49,2");
+    }
+
+    private static void assertParsed(String s) {
+        byte[] buf = (" " + s + " ").getBytes(ASCII);
+        double parsed = RouteMapParser.parseDecimal(buf, 1, buf.length - 1);
+        assertEquals(s, Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(parsed));
+    }
+
+    private static void assertMalformed(String s) {
+        byte[] buf = s.getBytes(ASCII);
+        try {
+            RouteMapParser.parseDecimal(buf, 0, buf.length);
+            fail("expected " + s + " to be rejected");
+        } catch (NumberFormatException e) {
+            // expected, as from Double.parseDouble
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.RouteDataMissingException;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that parseRoutes adds each route as it is parsed, as it did before routes could be read
+ * without adding them, and that storing the routes read gives the same routes
+ */
+public class RouteParserTest {
+    private static final String ROUTES = "[{\"RouteNo\":\"099\",\"Name\":\"UBC/BROADWAY STATION\",\"Patterns\":["
+            + "{\"PatternNo\":\"EB1\",\"Destination\":\"BROADWAY STN\",\"Direction\":\"EAST\"},"
+            + "{\"PatternNo\":\"WB1\",\"Destination\":\"UBC\",\"Direction\":\"WEST\"}]},"
+            + "{\"RouteNo\":\"014\",\"Name\":\"HASTINGS/UBC\",\"Patterns\":["
+            + "{\"PatternNo\":\"EB2\",\"Destination\":\"HASTINGS\",\"Direction\":\"EAST\"},"
+            + "{\"PatternNo\":\"WB2\",\"Direction\":\"WEST\"}]},"
+            + "{\"RouteNo\":\"004\",\"Name\":\"POWELL/UBC\",\"Patterns\":[]}]";
+
+    private RouteParser parser = new RouteParser(NetworkLoader.ROUTES_FILE);
+
+    @Before
+    public void setUp() {
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @After
+    public void tearDown() {
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Test
+    public void testRoutesBeforeErrorKept() throws Exception {
+        try {
+            parser.parseRoutes(ROUTES);
+            fail("expected missing data");
+        } catch (RouteDataMissingException e) {
+            // the 014 is missing the destination of its second pattern
+        }
+        assertEquals(2, RouteManager.getInstance().getNumRoutes());
+        Route route = RouteManager.getInstance().getRouteWithNumber("099");
+        assertEquals("UBC/BROADWAY STATION", route.getName());
+        assertEquals(2, route.getPatterns().size());
+        List<RoutePattern> patterns = RouteManager.getInstance().getRouteWithNumber("014").getPatterns();
+        assertEquals(1, patterns.size());
+        assertEquals("EB2", patterns.get(0).getName());
+        assertEquals("HASTINGS", patterns.get(0).getDestination());
+        assertEquals("EAST", patterns.get(0).getDirection());
+    }
+
+    @Test
+    public void testNothingReadOnError() throws Exception {
+        try {
+            parser.readRoutes(ROUTES);
+            fail("expected missing data");
+        } catch (RouteDataMissingException e) {
+            assertEquals(0, RouteManager.getInstance().getNumRoutes());
+        }
+    }
+
+    @Test
+    public void testStoredRoutesMatchParsed() throws Exception {
+        String routes = ROUTES.replace("{\"PatternNo\":\"WB2\",", "{\"PatternNo\":\"WB2\",\"Destination\":\"UBC\",");
+        parser.parseRoutes(routes);
+        List<String> parsed = NetworkLoaderTest.describe();
+        RouteManager.getInstance().clearRoutes();
+        for (RouteParser.RouteData data : parser.readRoutes(routes)) {
+            parser.storeRoute(data);
+        }
+        assertEquals(3, RouteManager.getInstance().getNumRoutes());
+        assertEquals(parsed, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testParseRoutesHelper() throws Exception {
+        Route route = RouteManager.getInstance().getRouteWithNumber("099");
+        parser.parseRoutesHelper(new JSONArray(
+                "[{\"PatternNo\":\"EB1\",\"Destination\":\"BROADWAY STN\",\"Direction\":\"EAST\"}]"), route);
+        assertEquals("BROADWAY STN", route.getPattern("EB1").getDestination());
+    }
+}
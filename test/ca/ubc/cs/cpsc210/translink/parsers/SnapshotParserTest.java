@@ -0,0 +1,171 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.SnapshotInvalidException;
+import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that a snapshot rebuilds the model parsed from the text resources, and that a stale,
+ * corrupt or truncated snapshot is rejected in favour of the text resources.  Run from the
+ * project directory, so that res/raw is found.
+ */
+public class SnapshotParserTest {
+    private static final File RAW = new File("res/raw");
+    private static final long STAMP = 210;
+    // offsets into the header of the version and of the first byte of the payload
+    private static final int VERSION_OFFSET = 4;
+    private static final int PAYLOAD_OFFSET = 24;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File snapshot;
+    private List<String> textModel;
+
+    @Before
+    public void setUp() throws IOException {
+        FileDataProvider.setDirectory(RAW);
+        NetworkLoaderTest.clear();
+        snapshot = new File(folder.getRoot(), "network.snapshot");
+        assertTrue(new NetworkLoader(snapshot, STAMP, 1).parseText());
+        textModel = NetworkLoaderTest.describe();
+        new SnapshotWriter(snapshot, STAMP).write();
+        NetworkLoaderTest.clear();
+    }
+
+    @After
+    public void tearDown() {
+        NetworkLoaderTest.clear();
+        FileDataProvider.setDirectory(null);
+    }
+
+    @Test
+    public void testSnapshotRebuildsTextModel() throws Exception {
+        new SnapshotParser(snapshot, STAMP).parse();
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testSnapshotRebuildsTextModelWithLazyPaths() throws Exception {
+        new SnapshotParser(snapshot, STAMP, true).parse();
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testLoadUsesSnapshot() {
+        assertTrue(new NetworkLoader(snapshot, STAMP, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testLoadWritesSnapshot() {
+        assertTrue(snapshot.delete());
+        assertFalse(new NetworkLoader(snapshot, STAMP, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+        NetworkLoaderTest.clear();
+        assertTrue(new NetworkLoader(snapshot, STAMP, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testCorruptPayload() throws Exception {
+        flipByte(snapshot.length() / 2);
+        assertInvalid(STAMP);
+        assertFalse(new NetworkLoader(snapshot, STAMP, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testCorruptFirstPayloadByte() throws Exception {
+        flipByte(PAYLOAD_OFFSET);
+        assertInvalid(STAMP);
+        assertFalse(new NetworkLoader(snapshot, STAMP, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testStale() throws Exception {
+        assertInvalid(STAMP + 1);
+        assertFalse(new NetworkLoader(snapshot, STAMP + 1, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+        // the loader replaced the stale snapshot with one of the current stamp
+        NetworkLoaderTest.clear();
+        assertTrue(new NetworkLoader(snapshot, STAMP + 1, 1).load());
+    }
+
+    @Test
+    public void testOtherVersion() throws Exception {
+        RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+        try {
+            file.seek(VERSION_OFFSET);
+            file.writeInt(SnapshotParser.VERSION + 1);
+        } finally {
+            file.close();
+        }
+        assertInvalid(STAMP);
+        assertFalse(new NetworkLoader(snapshot, STAMP, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        truncate(snapshot.length() - 1);
+        assertInvalid(STAMP);
+        assertFalse(new NetworkLoader(snapshot, STAMP, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    @Test
+    public void testTruncatedHeader() throws Exception {
+        truncate(PAYLOAD_OFFSET - 1);
+        assertInvalid(STAMP);
+        assertFalse(new NetworkLoader(snapshot, STAMP, 1).load());
+        assertEquals(textModel, NetworkLoaderTest.describe());
+    }
+
+    // the parser rejects the snapshot, and adds nothing to the managers
+    private void assertInvalid(long stamp) throws IOException {
+        try {
+            new SnapshotParser(snapshot, stamp).parse();
+            fail("expected the snapshot to be rejected");
+        } catch (SnapshotInvalidException e) {
+            assertEquals(0, StopManager.getInstance().getNumStops());
+        }
+    }
+
+    private void flipByte(long position) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+        try {
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0x01);
+        } finally {
+            file.close();
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+}
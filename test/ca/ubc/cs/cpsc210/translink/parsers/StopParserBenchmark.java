@@ -0,0 +1,105 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing stops.json through a JSONArray built from the whole file with streaming it
+ * through the pull parser.  The JMH benchmarks measure the wall time of each; main measures the
+ * peak heap taken by each, which JMH does not report.
+ *
+ * Run from the project directory, so that res/raw is found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StopParserBenchmark {
+    private static final File STOPS = new File("res/raw/stops.json");
+    private static final int HEAP_RUNS = 5;
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        StopManager.getInstance().clearStops();
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Benchmark
+    public void dom() throws Exception {
+        parseDom();
+    }
+
+    @Benchmark
+    public void stream() throws Exception {
+        parseStream();
+    }
+
+    private static void parseDom() throws Exception {
+        new StopParser(NetworkLoader.STOPS_FILE).parseStops(new String(Files.readAllBytes(STOPS.toPath()), "UTF-8"));
+    }
+
+    private static void parseStream() throws Exception {
+        new StopParser(NetworkLoader.STOPS_FILE).parseStops(new FileInputStream(STOPS));
+    }
+
+    /**
+     * Print the peak heap taken while parsing the stops each way, over the heap in use before,
+     * as the least of HEAP_RUNS runs.  Run with a heap large enough that the parse does not
+     * collect, such as -Xmx1g -Xmn512m, so that the peak counts everything allocated.
+     */
+    public static void main(String[] args) throws Exception {
+        long dom = Long.MAX_VALUE;
+        long stream = Long.MAX_VALUE;
+        for (int run = 0; run < HEAP_RUNS; run++) {
+            dom = Math.min(dom, peakHeap(true));
+            stream = Math.min(stream, peakHeap(false));
+        }
+        System.out.println("peak heap, dom:    " + dom / 1024 + " KB");
+        System.out.println("peak heap, stream: " + stream / 1024 + " KB");
+    }
+
+    private static long peakHeap(boolean dom) throws Exception {
+        new StopParserBenchmark().clear();
+        System.gc();
+        long before = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                before += pool.getUsage().getUsed();
+            }
+        }
+        if (dom) {
+            parseDom();
+        } else {
+            parseStream();
+        }
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak - before;
+    }
+}
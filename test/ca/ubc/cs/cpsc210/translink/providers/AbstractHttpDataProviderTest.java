@@ -0,0 +1,253 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import ca.ubc.cs.cpsc210.translink.util.Clock;
+import ca.ubc.cs.cpsc210.translink.util.LatencyHistogram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the retries, adaptive timeouts and hedged requests of Http data providers, against the
+ * RTTI stub with a slow tail injected.  The tests assert on the counts of requests sent and
+ * answered rather than on how long they took, and wait for hedges that lost to be answered
+ * before comparing counts.
+ */
+public class AbstractHttpDataProviderTest {
+    private static final int STOP = 53456;
+    private static final String ENDPOINT = "stub estimates";
+    private static final int WARM_UP = 30;
+    private static final long NANOS_PER_MS = 1000000L;
+    // the longest wait for requests still in flight to be answered
+    private static final long QUIET_TIMEOUT_MS = 10000;
+
+    private RttiStub stub;
+    private EndpointLatency latency;
+
+    /**
+     * A clock that moves on by a fixed step each time it is read, so that each request sent
+     * alone is timed at exactly one step
+     */
+    private static class SteppingClock implements Clock {
+        private final long step;
+        private long now;
+
+        SteppingClock(long step) {
+            this.step = step;
+        }
+
+        @Override
+        public synchronized long nanoTime() {
+            now += step;
+            return now;
+        }
+
+        @Override
+        public synchronized void sleep(long nanos) {
+            now += nanos;
+        }
+    }
+
+    /**
+     * A permit that counts the permits taken, and can refuse those not waited for
+     */
+    private static class CountingPermit implements AbstractHttpDataProvider.RequestPermit {
+        private final AtomicInteger taken = new AtomicInteger();
+        private final boolean refuseTry;
+
+        CountingPermit(boolean refuseTry) {
+            this.refuseTry = refuseTry;
+        }
+
+        @Override
+        public void acquire() {
+            taken.incrementAndGet();
+        }
+
+        @Override
+        public boolean tryAcquire() {
+            if (refuseTry) {
+                return false;
+            }
+            taken.incrementAndGet();
+            return true;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        stub = new RttiStub(64);
+        latency = EndpointLatency.forEndpoint(ENDPOINT);
+        latency.clear();
+    }
+
+    @After
+    public void tearDown() {
+        stub.stop();
+        latency.clear();
+        latency.setClock(Clock.SYSTEM);
+    }
+
+    @Test
+    public void testServerErrorRetried() {
+        stub.setFailFraction(1);
+        HttpResult result = stub.provider(STOP, ENDPOINT).fetch();
+        assertEquals(503, result.getCode());
+        assertEquals(AbstractHttpDataProvider.MAX_ATTEMPTS, stub.getRequests());
+        assertEquals(AbstractHttpDataProvider.MAX_ATTEMPTS - 1, latency.getRetries());
+    }
+
+    @Test
+    public void testClientErrorNotRetried() {
+        stub.provider(RttiStub.NO_STOP, ENDPOINT).fetch();
+        assertEquals(1, stub.getRequests());
+        assertEquals(0, latency.getRetries());
+    }
+
+    @Test
+    public void testReadTimeoutFollowsLatency() throws InterruptedException {
+        assertEquals(AbstractHttpDataProvider.READ_TIMEOUT, latency.getReadTimeout());
+        assertEquals(-1, latency.getHedgeDelay());
+        // every request is timed at 200 ms, however long it takes
+        latency.setClock(new SteppingClock(200 * NANOS_PER_MS));
+        warmUp();
+        // three times a p99 of 200 ms is under the floor
+        assertEquals(EndpointLatency.MIN_READ_TIMEOUT, latency.getReadTimeout());
+        // to within the precision of the histogram, rounded up
+        long hedgeDelay = latency.getHedgeDelay();
+        assertTrue(hedgeDelay >= 200 * NANOS_PER_MS);
+        assertTrue(hedgeDelay <= 200 * NANOS_PER_MS * (LatencyHistogram.SUB_BUCKETS + 1) / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void testReadTimeoutCapped() throws InterruptedException {
+        latency.setClock(new SteppingClock(5000 * NANOS_PER_MS));
+        warmUp();
+        assertEquals(AbstractHttpDataProvider.READ_TIMEOUT, latency.getReadTimeout());
+    }
+
+    @Test
+    public void testSlowRequestHedged() throws InterruptedException {
+        warmUp();
+        stub.setTail(0.03, 600);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(stub.provider(STOP, ENDPOINT).fetch().isOk());
+        }
+        assertTrue(latency.getHedges() > 0);
+        assertTrue(latency.getHedgesWon() > 0);
+        awaitQuiet(200);
+        assertEquals(sent(200), stub.getRequests());
+    }
+
+    @Test
+    public void testPermitTakenForEveryRequest() throws InterruptedException {
+        warmUp();
+        stub.setTail(0.2, 200);
+        stub.setFailFraction(0.2);
+        CountingPermit permit = new CountingPermit(false);
+        for (int i = 0; i < 50; i++) {
+            AbstractHttpDataProvider provider = stub.provider(STOP, ENDPOINT);
+            provider.setPermit(permit);
+            provider.fetch();
+        }
+        assertTrue(latency.getRetries() > 0);
+        assertTrue(latency.getHedges() > 0);
+        // taken before each request is sent, so counted before any hedge that lost is answered
+        assertEquals(sent(50), permit.taken.get());
+        awaitQuiet(50);
+        assertEquals(permit.taken.get(), stub.getRequests());
+    }
+
+    @Test
+    public void testNoHedgeWithoutFreePermit() throws InterruptedException {
+        warmUp();
+        stub.setTail(0.2, 200);
+        CountingPermit permit = new CountingPermit(true);
+        for (int i = 0; i < 20; i++) {
+            AbstractHttpDataProvider provider = stub.provider(STOP, ENDPOINT);
+            provider.setPermit(permit);
+            assertTrue(provider.fetch().isOk());
+        }
+        assertEquals(0, latency.getHedges());
+        assertEquals(20, stub.getRequests());
+        assertEquals(20, permit.taken.get());
+    }
+
+    @Test
+    public void testHedgePoolBounded() throws Exception {
+        warmUp();
+        stub.setTail(1, 300);
+        ExecutorService callers = Executors.newFixedThreadPool(40);
+        List<Future<HttpResult>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            results.add(callers.submit(new Callable<HttpResult>() {
+                @Override
+                public HttpResult call() {
+                    return stub.provider(STOP, ENDPOINT).fetch();
+                }
+            }));
+        }
+        // sample the hedging threads until every fetch is done
+        int hedgeThreads = 0;
+        for (Future<HttpResult> result : results) {
+            while (!result.isDone()) {
+                hedgeThreads = Math.max(hedgeThreads, countHedgeThreads());
+                Thread.yield();
+            }
+            assertTrue(result.get().isOk());
+        }
+        callers.shutdown();
+        assertTrue(hedgeThreads + " hedging threads", hedgeThreads <= AbstractHttpDataProvider.HEDGE_THREADS);
+        assertTrue(countHedgeThreads() <= AbstractHttpDataProvider.HEDGE_THREADS);
+    }
+
+    private static int countHedgeThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("HttpHedge")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // the requests sent by the given number of fetches since the counts were cleared: one for
+    // each fetch, and one more for each retry and each hedge
+    private long sent(int fetches) {
+        return fetches + latency.getRetries() + latency.getHedges();
+    }
+
+    // wait until every request sent by the given number of fetches, including hedges that lost
+    // and are still in flight, has been answered and recorded
+    private void awaitQuiet(int fetches) throws InterruptedException {
+        long deadline = System.nanoTime() + QUIET_TIMEOUT_MS * NANOS_PER_MS;
+        while (latency.getRequests() < sent(fetches) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(sent(fetches), latency.getRequests());
+    }
+
+    // record enough fast requests that timeouts are adapted and requests are hedged; some of
+    // them may be hedged already, so wait for the requests that lost to be answered, then clear
+    // the counts of the stub and the endpoint, keeping the latencies
+    private void warmUp() throws InterruptedException {
+        stub.setLatency(10, 10);
+        for (int i = 0; i < WARM_UP; i++) {
+            stub.provider(STOP, ENDPOINT).fetch();
+        }
+        awaitQuiet(WARM_UP);
+        stub.clearCounts();
+        latency.clearCounts();
+    }
+}
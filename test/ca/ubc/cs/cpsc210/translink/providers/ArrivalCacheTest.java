@@ -0,0 +1,190 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.util.Clock;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the arrival cache against the RTTI stub, with a fake clock by which arrivals expire
+ */
+public class ArrivalCacheTest {
+    private static final long NANOS_PER_MS = 1000000L;
+    private static final Stop STOP = new Stop(52345, "Stub Stop", new LatLon(49.26, -123.25));
+    private static final Stop NO_STOP = new Stop(RttiStub.NO_STOP, "No Stop", new LatLon(49.26, -123.25));
+
+    private RttiStub stub;
+    private ArrivalCache cache;
+    private FakeClock clock = new FakeClock();
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    /**
+     * A clock that moves only when told to
+     */
+    private static class FakeClock implements Clock {
+        private long now;
+
+        @Override
+        public synchronized long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public synchronized void sleep(long nanos) {
+            now += nanos;
+        }
+
+        synchronized void advance(long ms) {
+            now += ms * NANOS_PER_MS;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        stub = new RttiStub(16);
+        cache = ArrivalCache.getInstance();
+        cache.clear();
+        cache.setClock(clock);
+        cache.setFetcher(new ArrivalCache.Fetcher() {
+            @Override
+            public HttpResult fetch(Stop stop) {
+                fetches.incrementAndGet();
+                return stub.provider(stop.getNumber(), "arrival cache").fetch();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        stub.stop();
+        cache.clear();
+        cache.setClock(Clock.SYSTEM);
+        cache.setFetcher(new ArrivalCache.Fetcher() {
+            @Override
+            public HttpResult fetch(Stop stop) {
+                return new HttpArrivalDataProvider(stop).fetch();
+            }
+        });
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneFetch() throws Exception {
+        stub.setLatency(300, 0);
+        int callers = 10;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<ArrivalCache.Entry>> entries = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            entries.add(executor.submit(new Callable<ArrivalCache.Entry>() {
+                @Override
+                public ArrivalCache.Entry call() throws Exception {
+                    start.await();
+                    return cache.get(STOP);
+                }
+            }));
+        }
+        start.countDown();
+        ArrivalCache.Entry first = entries.get(0).get();
+        for (Future<ArrivalCache.Entry> entry : entries) {
+            assertSame(first, entry.get());
+        }
+        executor.shutdown();
+
+        assertTrue(first.getResult().isOk());
+        assertEquals(36, first.getArrivals().size());
+        assertEquals(1, stub.getRequests(STOP.getNumber()));
+        assertEquals(1, cache.getMisses());
+        assertEquals(callers - 1, cache.getSavedRequests());
+    }
+
+    @Test
+    public void testAsyncRequestsJoinFetchInFlight() throws Exception {
+        stub.setLatency(300, 0);
+        final CountDownLatch called = new CountDownLatch(2);
+        DataCallback<ArrivalCache.Entry> callback = new DataCallback<ArrivalCache.Entry>() {
+            @Override
+            public void onData(ArrivalCache.Entry entry) {
+                called.countDown();
+            }
+
+            @Override
+            public void onError(IOException e) {
+            }
+        };
+        Future<ArrivalCache.Entry> first = cache.getAsync(STOP, callback);
+        Future<ArrivalCache.Entry> second = cache.getAsync(STOP, callback);
+        assertSame(first.get(), second.get());
+        assertTrue(called.await(1, TimeUnit.SECONDS));
+        assertEquals(1, stub.getRequests(STOP.getNumber()));
+        assertEquals(1, cache.getCoalesced());
+    }
+
+    @Test
+    public void testArrivalsHeldUntilSoonestIsCloser() throws Exception {
+        ArrivalCache.Entry entry = cache.get(STOP);
+        // the soonest bus of the stub is 3 minutes away
+        long ttl = ArrivalCache.timeToLive(entry.getArrivals());
+        assertEquals(3 * ArrivalCache.TTL_PER_MINUTE_MS, ttl);
+
+        clock.advance(ttl - 1);
+        assertSame(entry, cache.get(STOP));
+        assertEquals(1, fetches.get());
+        assertEquals(1, cache.getHits());
+
+        clock.advance(1);
+        ArrivalCache.Entry fetched = cache.get(STOP);
+        assertTrue(fetched != entry);
+        assertEquals(2, fetches.get());
+        assertEquals(1.0 / 3, cache.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    public void testStopWithoutEstimatesHeldBriefly() throws Exception {
+        ArrivalCache.Entry entry = cache.get(NO_STOP);
+        assertEquals(HttpResult.Status.HTTP_ERROR, entry.getResult().getStatus());
+        assertEquals(404, entry.getResult().getCode());
+
+        clock.advance(ArrivalCache.MIN_TTL_MS - 1);
+        assertSame(entry, cache.get(NO_STOP));
+        assertEquals(1, stub.getRequests(NO_STOP.getNumber()));
+
+        clock.advance(1);
+        cache.get(NO_STOP);
+        assertEquals(2, stub.getRequests(NO_STOP.getNumber()));
+    }
+
+    @Test
+    public void testFailuresNotHeld() throws Exception {
+        stub.stop();
+        ArrivalCache.Entry entry = cache.get(STOP);
+        assertEquals(HttpResult.Status.NETWORK_ERROR, entry.getResult().getStatus());
+        cache.get(STOP);
+        assertEquals(2, fetches.get());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        cache.get(STOP);
+        cache.remove(STOP);
+        cache.get(STOP);
+        assertEquals(2, stub.getRequests(STOP.getNumber()));
+    }
+}
@@ -0,0 +1,151 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.util.Clock;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.TokenBucket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of fetching the arrivals at many stops at once from the RTTI stub, through the arrival
+ * cache.  Each test sends fewer than EndpointLatency.MIN_SAMPLES requests to a fresh endpoint,
+ * so no request is hedged and every request has reached the stub by the time its fetch returns.
+ */
+public class BatchArrivalFetcherTest {
+    private static final String ENDPOINT = "stub batch";
+    private static final int THREADS = 3;
+
+    private RttiStub stub;
+    private ArrivalCache cache;
+    private TokenBucket bucket;
+    private BatchArrivalFetcher fetcher;
+    // if set, the fetch of a stop waits for the latch of the same index as the stop in stops()
+    private List<CountDownLatch> gates;
+
+    @Before
+    public void setUp() throws IOException {
+        stub = new RttiStub(16);
+        EndpointLatency.forEndpoint(ENDPOINT).clear();
+        cache = ArrivalCache.getInstance();
+        cache.clear();
+        bucket = new TokenBucket(100, 100, Clock.SYSTEM);
+        fetcher = new BatchArrivalFetcher(THREADS, bucket, cache, new BatchArrivalFetcher.Fetcher() {
+            @Override
+            public HttpResult fetch(Stop stop, AbstractHttpDataProvider.RequestPermit permit) {
+                if (gates != null) {
+                    try {
+                        gates.get(stop.getNumber() % 100).await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                AbstractHttpDataProvider provider = stub.provider(stop.getNumber(), ENDPOINT);
+                provider.setPermit(permit);
+                return provider.fetch();
+            }
+        }, Clock.SYSTEM);
+    }
+
+    @After
+    public void tearDown() {
+        fetcher.shutdown();
+        stub.stop();
+        cache.clear();
+        EndpointLatency.forEndpoint(ENDPOINT).clear();
+    }
+
+    @Test
+    public void testConcurrencyBounded() throws Exception {
+        stub.setLatency(50, 0);
+        List<Stop> stops = stops(12);
+        List<BatchArrivalFetcher.Result> results = takeAll(fetcher.fetch(stops));
+
+        assertEquals(stops.size(), results.size());
+        Set<Stop> fetched = new HashSet<>();
+        for (BatchArrivalFetcher.Result result : results) {
+            assertTrue(result.getEntry().getResult().isOk());
+            fetched.add(result.getStop());
+        }
+        assertEquals(new HashSet<>(stops), fetched);
+        assertTrue("at most " + stub.getMaxInFlight() + " at once", stub.getMaxInFlight() <= THREADS);
+        assertEquals(stops.size(), stub.getRequests());
+    }
+
+    @Test
+    public void testOneTokenPerRequestSent() throws Exception {
+        // at most 3 attempts of each of 6 stops, still too few to hedge
+        stub.setFailFraction(0.5);
+        takeAll(fetcher.fetch(stops(6)));
+
+        assertTrue(EndpointLatency.forEndpoint(ENDPOINT).getRetries() > 0);
+        assertEquals(stub.getRequests(), bucket.getAcquired());
+        assertEquals(stub.getRequests(), fetcher.getLatencies().getCount() + EndpointLatency.forEndpoint(ENDPOINT).getRetries());
+    }
+
+    @Test
+    public void testResultsInCompletionOrder() throws Exception {
+        List<Stop> stops = stops(THREADS);
+        gates = new ArrayList<>();
+        for (int i = 0; i < stops.size(); i++) {
+            gates.add(new CountDownLatch(1));
+        }
+        BatchArrivalFetcher.Batch batch = fetcher.fetch(stops);
+        int[] order = {2, 0, 1};
+        for (int i : order) {
+            gates.get(i).countDown();
+            assertTrue(batch.hasNext());
+            assertSame(stops.get(i), batch.next().getStop());
+        }
+        assertFalse(batch.hasNext());
+    }
+
+    @Test
+    public void testCacheHitsSpendNoToken() throws Exception {
+        List<Stop> stops = stops(4);
+        List<BatchArrivalFetcher.Result> first = takeAll(fetcher.fetch(stops.subList(0, 3)));
+        assertEquals(3, bucket.getAcquired());
+
+        List<BatchArrivalFetcher.Result> second = takeAll(fetcher.fetch(stops));
+        assertEquals(4, bucket.getAcquired());
+        assertEquals(4, stub.getRequests());
+        assertEquals(3, cache.getHits());
+        for (BatchArrivalFetcher.Result held : first) {
+            for (BatchArrivalFetcher.Result result : second) {
+                if (result.getStop() == held.getStop()) {
+                    assertSame(held.getEntry(), result.getEntry());
+                }
+            }
+        }
+    }
+
+    // stops numbered so that the number modulo 100 is the index of the stop
+    private static List<Stop> stops(int count) {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            stops.add(new Stop(51400 + i, "Stub Stop " + i, new LatLon(49.26, -123.25)));
+        }
+        return stops;
+    }
+
+    private static List<BatchArrivalFetcher.Result> takeAll(BatchArrivalFetcher.Batch batch) throws InterruptedException {
+        List<BatchArrivalFetcher.Result> results = new ArrayList<>();
+        while (batch.hasNext()) {
+            results.add(batch.next());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,190 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of passing the outcome of a task to its callbacks, and of reading a raw resource
+ * asynchronously.  Run from the project directory, so that res/raw is found.
+ */
+public class CallbackFutureTest {
+    private static final File RAW = new File("res/raw");
+
+    /**
+     * A callback that records what it was passed, and on which thread
+     */
+    private static class Recorder<T> implements DataCallback<T> {
+        private final CountDownLatch called = new CountDownLatch(1);
+        private volatile T data;
+        private volatile IOException error;
+        private volatile Thread thread;
+        private volatile int calls;
+
+        @Override
+        public void onData(T data) {
+            this.data = data;
+            record();
+        }
+
+        @Override
+        public void onError(IOException e) {
+            this.error = e;
+            record();
+        }
+
+        private void record() {
+            thread = Thread.currentThread();
+            calls++;
+            called.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(called.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Before
+    public void setUp() {
+        FileDataProvider.setDirectory(RAW);
+    }
+
+    @After
+    public void tearDown() {
+        FileDataProvider.setDirectory(null);
+    }
+
+    @Test
+    public void testCallbackAddedAfterCompletionRunsOnCaller() {
+        CallbackFuture<String> future = new CallbackFuture<>(value("done"), null);
+        future.run();
+        Recorder<String> callback = new Recorder<>();
+        future.addCallback(callback);
+        assertEquals("done", callback.data);
+        assertSame(Thread.currentThread(), callback.thread);
+        assertEquals(1, callback.calls);
+    }
+
+    @Test
+    public void testCallbacksAddedBeforeCompletionRunOnCompletingThread() throws Exception {
+        Recorder<String> first = new Recorder<>();
+        Recorder<String> second = new Recorder<>();
+        final CallbackFuture<String> future = new CallbackFuture<>(value("done"), first);
+        future.addCallback(second);
+        Thread runner = new Thread(future, "runner");
+        runner.start();
+        runner.join();
+
+        for (Recorder<String> callback : Arrays.asList(first, second)) {
+            assertEquals("done", callback.data);
+            assertSame(runner, callback.thread);
+            assertEquals(1, callback.calls);
+        }
+    }
+
+    @Test
+    public void testCancellationReportsError() {
+        Recorder<String> before = new Recorder<>();
+        CallbackFuture<String> future = new CallbackFuture<>(value("never"), before);
+        assertTrue(future.cancel(false));
+        Recorder<String> after = new Recorder<>();
+        future.addCallback(after);
+        // running a cancelled task does nothing more
+        future.run();
+
+        for (Recorder<String> callback : Arrays.asList(before, after)) {
+            assertNull(callback.data);
+            assertNotNull(callback.error);
+            assertTrue(callback.error.getCause() instanceof CancellationException);
+            assertEquals(1, callback.calls);
+        }
+    }
+
+    @Test
+    public void testIOExceptionPassedOn() {
+        final IOException failure = new FileNotFoundException("missing");
+        CallbackFuture<String> future = new CallbackFuture<>(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                throw failure;
+            }
+        }, null);
+        future.run();
+        Recorder<String> callback = new Recorder<>();
+        future.addCallback(callback);
+        assertSame(failure, callback.error);
+    }
+
+    @Test
+    public void testOtherExceptionWrapped() {
+        final RuntimeException failure = new IllegalStateException("broken");
+        CallbackFuture<String> future = new CallbackFuture<>(new Callable<String>() {
+            @Override
+            public String call() {
+                throw failure;
+            }
+        }, null);
+        future.run();
+        Recorder<String> callback = new Recorder<>();
+        future.addCallback(callback);
+        assertSame(failure, callback.error.getCause());
+        assertNull(callback.data);
+    }
+
+    @Test
+    public void testBufferAsyncMatchesBytes() throws Exception {
+        for (String resource : Arrays.asList("stops", "allroutes", "allroutemapstxt")) {
+            FileDataProvider provider = new FileDataProvider(resource);
+            byte[] expected = provider.dataSourceToBytes();
+            Recorder<ByteBuffer> callback = new Recorder<>();
+            ByteBuffer fromFuture = provider.dataSourceToBufferAsync(callback).get(5, TimeUnit.SECONDS);
+            callback.await();
+
+            assertNotNull(callback.data);
+            assertSame(fromFuture, callback.data);
+            assertEquals("AsyncData", callback.thread.getName());
+            assertArrayEquals(resource, expected, remaining(callback.data));
+        }
+    }
+
+    @Test
+    public void testBufferAsyncOfMissingResource() throws Exception {
+        Recorder<ByteBuffer> callback = new Recorder<>();
+        new FileDataProvider("no such resource").dataSourceToBufferAsync(callback);
+        callback.await();
+        assertNull(callback.data);
+        assertNotNull(callback.error);
+    }
+
+    private static <T> Callable<T> value(final T value) {
+        return new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        };
+    }
+
+    private static byte[] remaining(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
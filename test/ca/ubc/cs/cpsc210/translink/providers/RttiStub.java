@@ -0,0 +1,275 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the estimates call of the TransLink RTTI API, for measuring and testing
+ * the Http providers offline.  GET /rttiapi/v1/stops/{stop}/estimates answers with the arrivals
+ * of six routes, gzip compressed when asked, after a latency that can be made to vary and to have
+ * a slow tail.  A share of requests can be failed with 503, and stops from NO_STOP up are
+ * answered with 404, as the API answers for a stop with no estimates.
+ *
+ * The server runs on an ephemeral port of the loopback interface.
+ */
+public class RttiStub {
+    static {
+        // otherwise small responses wait on Nagle's algorithm; read when the first server starts
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public static final int NO_STOP = 90000;
+    private static final String[] ROUTES = {"099", "014", "004", "084", "025", "009"};
+    private static final int SCHEDULES = 6;
+
+    private final HttpServer server;
+    private final Random random = new Random(7);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final ConcurrentMap<Integer, AtomicInteger> requestsPerStop = new ConcurrentHashMap<>();
+
+    private volatile int latencyMs;
+    private volatile int jitterMs;
+    private volatile double slowFraction;
+    private volatile int slowMs;
+    private volatile double failFraction;
+
+    /**
+     * Start a stub answering on the given number of threads
+     *
+     * @param threads   the number of requests answered at once
+     * @throws IOException  when the server cannot be started
+     */
+    public RttiStub(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.setExecutor(Executors.newFixedThreadPool(threads));
+        server.createContext("/rttiapi/v1/stops/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                answer(exchange);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Stop the server, dropping requests in progress
+     */
+    public void stop() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    /**
+     * @param stop  the number of the stop
+     * @return      the URL of the estimates for the stop
+     */
+    public URL url(int stop) throws MalformedURLException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/rttiapi/v1/stops/" + stop
+                + "/estimates?apikey=stub");
+    }
+
+    /**
+     * Get a provider of the estimates for a stop from this stub, whose latencies are recorded
+     * under the given endpoint
+     *
+     * @param stop      the number of the stop
+     * @param endpoint  the name of the endpoint
+     * @return          the provider
+     */
+    public AbstractHttpDataProvider provider(final int stop, final String endpoint) {
+        return new AbstractHttpDataProvider() {
+            @Override
+            protected URL getURL() throws MalformedURLException {
+                return url(stop);
+            }
+
+            @Override
+            protected String getEndpoint() {
+                return endpoint;
+            }
+        };
+    }
+
+    /**
+     * @param latencyMs     the time taken to answer each request, in ms
+     * @param jitterMs      the most time added at random to the latency, in ms
+     */
+    public void setLatency(int latencyMs, int jitterMs) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+    }
+
+    /**
+     * @param slowFraction  the share of requests answered slowly
+     * @param slowMs        the time added to the latency of a slow request, in ms
+     */
+    public void setTail(double slowFraction, int slowMs) {
+        this.slowFraction = slowFraction;
+        this.slowMs = slowMs;
+    }
+
+    /**
+     * @param failFraction  the share of requests answered with 503
+     */
+    public void setFailFraction(double failFraction) {
+        this.failFraction = failFraction;
+    }
+
+    /**
+     * @return  the number of requests received
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @param stop  the number of the stop
+     * @return      the number of requests received for the estimates at the stop
+     */
+    public int getRequests(int stop) {
+        AtomicInteger count = requestsPerStop.get(stop);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return  the number of bytes of response bodies sent, as sent
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return  the number of distinct client ports from which requests were received, which is
+     *          the number of connections opened
+     */
+    public int getConnections() {
+        return clientPorts.size();
+    }
+
+    /**
+     * @return  the most requests waiting out their latency at once
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /**
+     * Forget the requests received
+     */
+    public void clearCounts() {
+        requests.set(0);
+        maxInFlight.set(0);
+        bytesSent.set(0);
+        clientPorts.clear();
+        requestsPerStop.clear();
+    }
+
+    /**
+     * Get the body of the answer for a stop with estimates
+     *
+     * @param stop  the number of the stop
+     * @return      the estimates, as JSON
+     */
+    public static String estimates(int stop) {
+        StringBuilder json = new StringBuilder("[");
+        for (int r = 0; r < ROUTES.length; r++) {
+            if (r > 0) {
+                json.append(',');
+            }
+            json.append("{\"RouteNo\":\"").append(ROUTES[r]).append("\",\"RouteName\":\"ROUTE ").append(ROUTES[r])
+                    .append("\",\"Direction\":\"WEST\",\"RouteMap\":{\"Href\":\"https://nb.translink.ca/geodata/")
+                    .append(ROUTES[r]).append(".kmz\"},\"Schedules\":[");
+            for (int s = 0; s < SCHEDULES; s++) {
+                if (s > 0) {
+                    json.append(',');
+                }
+                int countdown = 3 + 7 * s + r;
+                json.append("{\"Pattern\":\"WB1\",\"Destination\":\"UBC\",\"ExpectedLeaveTime\":\"4:")
+                        .append(10 + countdown).append("pm 2016-10-18\",\"ExpectedCountdown\":").append(countdown)
+                        .append(",\"ScheduleStatus\":\"").append(s % 3 == 0 ? "*" : s % 3 == 1 ? "-" : "+")
+                        .append("\",\"CancelledTrip\":false,\"CancelledStop\":false,\"AddedTrip\":false,")
+                        .append("\"AddedStop\":false,\"LastUpdate\":\"03:41:22 pm\"}");
+            }
+            json.append("]}");
+        }
+        return json.append("]").toString();
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        int stop = Integer.parseInt(exchange.getRequestURI().getPath().split("/")[4]);
+        AtomicInteger count = requestsPerStop.putIfAbsent(stop, new AtomicInteger(1));
+        if (count != null) {
+            count.incrementAndGet();
+        }
+
+        int delay = latencyMs;
+        boolean fail;
+        synchronized (random) {
+            if (jitterMs > 0) {
+                delay += random.nextInt(jitterMs);
+            }
+            if (random.nextDouble() < slowFraction) {
+                delay += slowMs;
+            }
+            fail = random.nextDouble() < failFraction;
+        }
+        // in flight until the response is sent, after which the client may send its next request
+        int answering = inFlight.incrementAndGet();
+        int most = maxInFlight.get();
+        while (answering > most && !maxInFlight.compareAndSet(most, answering)) {
+            most = maxInFlight.get();
+        }
+        try {
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        int code = stop >= NO_STOP ? 404 : fail ? 503 : 200;
+        byte[] body = (code == 200 ? estimates(stop)
+                : "{\"Code\":\"3005\",\"Message\":\"No stop estimates found.\"}").getBytes("UTF-8");
+        String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (encoding != null && encoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+        bytesSent.addAndGet(body.length);
+    }
+}
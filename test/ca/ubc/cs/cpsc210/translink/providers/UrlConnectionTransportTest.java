@@ -0,0 +1,119 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the default transport and of the results of Http data providers, against the RTTI stub
+ */
+public class UrlConnectionTransportTest {
+    private static final int STOP = 51234;
+
+    private RttiStub stub;
+    private HttpTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        stub = new RttiStub(4);
+        transport = new UrlConnectionTransport();
+    }
+
+    @After
+    public void tearDown() {
+        stub.stop();
+    }
+
+    @Test
+    public void testConnectionKeptAlive() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            HttpResponse response = transport.get(stub.url(STOP), 1000, 1000);
+            assertEquals(200, response.getCode());
+            response.readBody();
+        }
+        assertEquals(20, stub.getRequests());
+        assertEquals(1, stub.getConnections());
+    }
+
+    @Test
+    public void testConnectionKeptAliveAfterError() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            transport.get(stub.url(i % 2 == 0 ? STOP : RttiStub.NO_STOP), 1000, 1000).readBody();
+        }
+        assertEquals(1, stub.getConnections());
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        byte[] body = transport.get(stub.url(STOP), 1000, 1000).readBody();
+        byte[] expected = RttiStub.estimates(STOP).getBytes("UTF-8");
+        assertArrayEquals(expected, body);
+        assertTrue(stub.getBytesSent() < expected.length / 4);
+    }
+
+    @Test
+    public void testReadTimeout() throws IOException {
+        stub.setLatency(1000, 0);
+        try {
+            transport.get(stub.url(STOP), 1000, 100);
+            fail("expected a timeout");
+        } catch (SocketTimeoutException e) {
+            assertEquals(HttpResult.Status.TIMEOUT, HttpResult.failure(e).getStatus());
+        }
+    }
+
+    @Test
+    public void testResultOk() {
+        HttpResult result = stub.provider(STOP, "transport ok").fetch();
+        assertEquals(HttpResult.Status.OK, result.getStatus());
+        assertEquals(200, result.getCode());
+        assertEquals(RttiStub.estimates(STOP), result.getBodyAsString());
+    }
+
+    @Test
+    public void testResultNotFound() {
+        HttpResult result = stub.provider(RttiStub.NO_STOP, "transport not found").fetch();
+        assertEquals(HttpResult.Status.HTTP_ERROR, result.getStatus());
+        assertEquals(404, result.getCode());
+        assertTrue(result.getBodyAsString().contains("3005"));
+        // a client error is not retried
+        assertEquals(1, stub.getRequests());
+    }
+
+    @Test
+    public void testResultNoServer() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        final int port = socket.getLocalPort();
+        socket.close();
+        HttpResult result = new AbstractHttpDataProvider() {
+            @Override
+            protected URL getURL() throws MalformedURLException {
+                return new URL("http://127.0.0.1:" + port + "/rttiapi/v1/stops/" + STOP + "/estimates");
+            }
+        }.fetch();
+        assertEquals(HttpResult.Status.NETWORK_ERROR, result.getStatus());
+        assertEquals(-1, result.getCode());
+        assertTrue(result.getError() != null);
+    }
+
+    @Test
+    public void testDataSourceToStringThrowsOnError() {
+        try {
+            stub.provider(RttiStub.NO_STOP, "transport string").dataSourceToString();
+            fail("expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("404"));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.parsers.RouteMapParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares clipping the paths of every pattern in res/raw/allroutemapstxt.txt against random
+ * viewports over the area served: the segment test Geometry had before the clipping engine, on
+ * LatLon points; clipLine on each segment of the packed coordinates; and clipPolyline on each
+ * whole path, which also builds the clipped runs.  Run from the project directory, so that
+ * res/raw is found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClippingBenchmark {
+    private static final int VIEWPORTS = 64;
+
+    private double[][] paths;
+    private LatLon[][] points;
+    private double[][] viewports = new double[VIEWPORTS][];
+    private VisibleRunBuilder runs = new VisibleRunBuilder();
+    private double[] range = new double[2];
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        byte[] routeMap = Files.readAllBytes(new File("res/raw/allroutemapstxt.txt").toPath());
+        new RouteMapParser("allroutemapstxt", false).parse(routeMap, 0, routeMap.length);
+        List<double[]> coords = new ArrayList<>();
+        for (Route route : RouteManager.getInstance()) {
+            for (RoutePattern pattern : route.getPatterns()) {
+                coords.add(pattern.getCoordinates());
+            }
+        }
+        paths = coords.toArray(new double[coords.size()][]);
+        points = new LatLon[paths.length][];
+        for (int i = 0; i < paths.length; i++) {
+            points[i] = new LatLon[paths[i].length / 2];
+            for (int j = 0; j < points[i].length; j++) {
+                points[i][j] = new LatLon(paths[i][2 * j], paths[i][2 * j + 1]);
+            }
+        }
+
+        // viewports from a few streets across to the whole city
+        Random random = new Random(210);
+        for (int i = 0; i < VIEWPORTS; i++) {
+            double lat = 49.0 + random.nextDouble() * 0.4;
+            double lon = -123.3 + random.nextDouble() * 0.6;
+            double half = 0.005 + random.nextDouble() * 0.1;
+            viewports[i] = new double[] {lat + half, lon - half, lat - half, lon + half};
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Benchmark
+    public int baseline() {
+        double[] v = nextViewport();
+        LatLon northWest = new LatLon(v[0], v[1]);
+        LatLon southEast = new LatLon(v[2], v[3]);
+        int found = 0;
+        for (LatLon[] path : points) {
+            for (int j = 0; j + 1 < path.length; j++) {
+                if (baselineIntersectsLine(northWest, southEast, path[j], path[j + 1])) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int clipLine() {
+        double[] v = nextViewport();
+        int found = 0;
+        for (double[] path : paths) {
+            for (int j = 0; j + 3 < path.length; j += 2) {
+                if (Geometry.clipLine(v[0], v[1], v[2], v[3], path[j], path[j + 1], path[j + 2], path[j + 3], null)) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int clipPolyline() {
+        double[] v = nextViewport();
+        runs.clear();
+        for (double[] path : paths) {
+            Geometry.clipPolyline(v[0], v[1], v[2], v[3], path, 0, path.length / 2, runs, range);
+        }
+        return runs.getNumRuns();
+    }
+
+    private double[] nextViewport() {
+        next = (next + 1) % VIEWPORTS;
+        return viewports[next];
+    }
+
+    // the segment test of Geometry.rectangleIntersectsLine before the clipping engine replaced it
+    private static boolean baselineIntersectsLine(LatLon northWest, LatLon southEast, LatLon src, LatLon dst) {
+        if (baselineContainsPoint(northWest, southEast, src) && baselineContainsPoint(northWest, southEast, dst)) {
+            return true;
+        } else if (baselineContainsPoint(northWest, southEast, src) || baselineContainsPoint(northWest, southEast, dst)) {
+            return true;
+        }
+        double point1 = ((src.getLatitude() - dst.getLatitude()) * northWest.getLongitude()
+                + (src.getLongitude() - dst.getLongitude()) * northWest.getLatitude()
+                + (src.getLongitude() * dst.getLatitude() - dst.getLongitude() * src.getLatitude()));
+        double point2 = ((src.getLatitude() - dst.getLatitude()) * northWest.getLongitude()
+                + (src.getLongitude() - dst.getLongitude()) * southEast.getLatitude()
+                + (src.getLongitude() * dst.getLatitude() - dst.getLongitude() * src.getLatitude()));
+        double point3 = ((src.getLatitude() - dst.getLatitude()) * southEast.getLongitude()
+                + (src.getLongitude() - dst.getLongitude()) * southEast.getLatitude()
+                + (src.getLongitude() * dst.getLatitude() - dst.getLongitude() * src.getLatitude()));
+        double point4 = ((src.getLatitude() - dst.getLatitude()) * southEast.getLongitude()
+                + (src.getLongitude() - dst.getLongitude()) * northWest.getLatitude()
+                + (src.getLongitude() * dst.getLatitude() - dst.getLongitude() * src.getLatitude()));
+        if ((point1 > 0 && point2 > 0 && point3 > 0 && point4 > 0)
+                || (point1 < 0 && point2 < 0 && point3 < 0 && point4 < 0)) {
+            return false;
+        }
+        return baselineLineSegment(northWest, southEast, src, dst);
+    }
+
+    private static boolean baselineLineSegment(LatLon northWest, LatLon southEast, LatLon src, LatLon dst) {
+        if (src.getLongitude() < northWest.getLongitude() && dst.getLongitude() < northWest.getLongitude()) {
+            return false;
+        } else if (src.getLongitude() > southEast.getLongitude() && dst.getLongitude() > southEast.getLongitude()) {
+            return false;
+        } else if (src.getLatitude() > northWest.getLatitude() && dst.getLatitude() > northWest.getLatitude()) {
+            return false;
+        } else if (src.getLatitude() < southEast.getLatitude() && dst.getLatitude() < southEast.getLatitude()) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean baselineContainsPoint(LatLon northWest, LatLon southEast, LatLon point) {
+        double upperLat = Math.max(northWest.getLatitude(), southEast.getLatitude());
+        double lowerLat = Math.min(northWest.getLatitude(), southEast.getLatitude());
+        double upperLon = Math.max(northWest.getLongitude(), southEast.getLongitude());
+        double lowerLon = Math.min(northWest.getLongitude(), southEast.getLongitude());
+        return lowerLat <= point.getLatitude() && point.getLatitude() <= upperLat
+                && lowerLon <= point.getLongitude() && point.getLongitude() <= upperLon;
+    }
+}
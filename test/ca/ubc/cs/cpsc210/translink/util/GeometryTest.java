@@ -0,0 +1,174 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of clipping lines and polylines to the rectangle from latitude 0 to 2 and longitude 0 to 4
+ */
+public class GeometryTest {
+    private static final double NORTH = 2;
+    private static final double WEST = 0;
+    private static final double SOUTH = 0;
+    private static final double EAST = 4;
+    private static final double DELTA = 1e-12;
+
+    private double[] range = new double[2];
+
+    @Test
+    public void testLineInside() {
+        assertClipped(1, 1, 1, 3, 0, 1);
+    }
+
+    @Test
+    public void testLineCrossing() {
+        assertClipped(1, -2, 1, 6, 0.25, 0.75);
+        assertClipped(-1, 1, 3, 3, 0.25, 0.75);
+    }
+
+    @Test
+    public void testLineEntering() {
+        assertClipped(1, -2, 1, 2, 0.5, 1);
+        assertClipped(1, 2, 3, 2, 0, 0.5);
+    }
+
+    @Test
+    public void testLineAlongEdge() {
+        assertClipped(2, -1, 2, 5, 1.0 / 6, 5.0 / 6);
+        assertClipped(0, 1, 0, 3, 0, 1);
+    }
+
+    @Test
+    public void testLineTouchingCorner() {
+        // through the north east corner, outside on either side of it
+        assertClipped(3, 3, 1, 5, 0.5, 0.5);
+        assertMissed(3, 3.1, 1, 5.1);
+    }
+
+    @Test
+    public void testLineEndingOnEdge() {
+        assertClipped(1, -1, 1, 0, 1, 1);
+        assertClipped(2, 1, 3, 1, 0, 0);
+    }
+
+    @Test
+    public void testLineMissing() {
+        assertMissed(3, -1, 3, 5);
+        assertMissed(-1, 5, 3, 9);
+        // passes the south west corner diagonally, within the bounding box of the rectangle
+        assertMissed(-1, 0.5, 0.5, -1);
+    }
+
+    @Test
+    public void testDegenerateLine() {
+        assertClipped(1, 1, 1, 1, 0, 1);
+        assertClipped(2, 4, 2, 4, 0, 1);
+        assertMissed(3, 1, 3, 1);
+        assertMissed(1, 4.000001, 1, 4.000001);
+    }
+
+    @Test
+    public void testIntersectsAgreesWithClip() {
+        Random random = new Random(14);
+        for (int i = 0; i < 10000; i++) {
+            double srcLat = random.nextDouble() * 6 - 2;
+            double srcLon = random.nextDouble() * 8 - 2;
+            double dstLat = random.nextDouble() * 6 - 2;
+            double dstLon = random.nextDouble() * 8 - 2;
+            boolean clipped = Geometry.clipLine(NORTH, WEST, SOUTH, EAST, srcLat, srcLon, dstLat, dstLon, null);
+            assertEquals(clipped, Geometry.rectangleIntersectsLine(NORTH, WEST, SOUTH, EAST,
+                    srcLat, srcLon, dstLat, dstLon));
+            assertEquals(clipped, Geometry.rectangleIntersectsLine(new LatLon(NORTH, WEST), new LatLon(SOUTH, EAST),
+                    new LatLon(srcLat, srcLon), new LatLon(dstLat, dstLon)));
+        }
+    }
+
+    @Test
+    public void testPolylineInside() {
+        VisibleRunBuilder runs = clip(1, 1, 1.5, 2, 1, 3);
+        assertEquals(1, runs.getNumRuns());
+        assertRun(runs, 0, 1, 1, 1.5, 2, 1, 3);
+    }
+
+    @Test
+    public void testPolylineEnteringAndLeaving() {
+        VisibleRunBuilder runs = clip(1, -2, 1, 2, 3, 2);
+        assertEquals(1, runs.getNumRuns());
+        assertRun(runs, 0, 1, 0, 1, 2, 2, 2);
+    }
+
+    @Test
+    public void testPolylineLeavingAndReentering() {
+        VisibleRunBuilder runs = clip(1, 1, 1, 6, 1.5, 3, 3, 3, 1, 2);
+        assertEquals(3, runs.getNumRuns());
+        assertRun(runs, 0, 1, 1, 1, 4);
+        assertRun(runs, 1, 4.0 / 3, 4, 1.5, 3, 2, 3);
+        assertRun(runs, 2, 2, 2.5, 1, 2);
+    }
+
+    @Test
+    public void testPolylineOutside() {
+        assertEquals(0, clip(3, -1, 3, 5, -1, 5).getNumRuns());
+    }
+
+    @Test
+    public void testPolylineThroughCorner() {
+        VisibleRunBuilder runs = clip(3, 3, 1, 5);
+        assertEquals(1, runs.getNumRuns());
+        assertRun(runs, 0, 2, 4, 2, 4);
+    }
+
+    @Test
+    public void testPolylineWithRepeatedPoints() {
+        VisibleRunBuilder runs = clip(1, 1, 1, 1, 1, 2, 1, 2);
+        assertEquals(1, runs.getNumRuns());
+        assertRun(runs, 0, 1, 1, 1, 1, 1, 2, 1, 2);
+    }
+
+    @Test
+    public void testPolylineOfPart() {
+        double[] coords = {1, -2, 1, 1, 1, 2, 1, 3, 1, 6};
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        Geometry.clipPolyline(NORTH, WEST, SOUTH, EAST, coords, 1, 3, runs, range);
+        assertEquals(1, runs.getNumRuns());
+        assertRun(runs, 0, 1, 1, 1, 2);
+    }
+
+    private void assertClipped(double srcLat, double srcLon, double dstLat, double dstLon,
+                               double enter, double leave) {
+        assertTrue(Geometry.clipLine(NORTH, WEST, SOUTH, EAST, srcLat, srcLon, dstLat, dstLon, range));
+        assertEquals(enter, range[0], DELTA);
+        assertEquals(leave, range[1], DELTA);
+        // and the same line the other way
+        assertTrue(Geometry.clipLine(NORTH, WEST, SOUTH, EAST, dstLat, dstLon, srcLat, srcLon, range));
+        assertEquals(1 - leave, range[0], DELTA);
+        assertEquals(1 - enter, range[1], DELTA);
+    }
+
+    private void assertMissed(double srcLat, double srcLon, double dstLat, double dstLon) {
+        assertFalse(Geometry.clipLine(NORTH, WEST, SOUTH, EAST, srcLat, srcLon, dstLat, dstLon, range));
+        assertFalse(Geometry.clipLine(NORTH, WEST, SOUTH, EAST, dstLat, dstLon, srcLat, srcLon, range));
+    }
+
+    private VisibleRunBuilder clip(double... coords) {
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        Geometry.clipPolyline(NORTH, WEST, SOUTH, EAST, coords, 0, coords.length / 2, runs, range);
+        return runs;
+    }
+
+    // the run holds exactly the given points, as interleaved latitudes and longitudes
+    private static void assertRun(VisibleRunBuilder runs, int run, double... coords) {
+        double[] actual = new double[2 * runs.getRunLength(run)];
+        for (int i = 0; i < runs.getRunLength(run); i++) {
+            actual[2 * i] = runs.getLatitude(run, i);
+            actual[2 * i + 1] = runs.getLongitude(run, i);
+        }
+        assertArrayEquals(coords, actual, DELTA);
+    }
+}
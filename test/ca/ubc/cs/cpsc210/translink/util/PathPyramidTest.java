@@ -0,0 +1,141 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the simplified levels of a path against a recursive Douglas-Peucker at each zoom level
+ */
+public class PathPyramidTest {
+
+    @Test
+    public void testRandomPathsMatchRecursiveDouglasPeucker() {
+        Random random = new Random(15);
+        for (int n = 0; n < 500; n++) {
+            double[] coords = randomWalk(random, 2 + random.nextInt(300));
+            PathPyramid pyramid = new PathPyramid(coords);
+            for (int zoom = PathPyramid.MIN_ZOOM; zoom <= PathPyramid.MAX_ZOOM; zoom++) {
+                assertArrayEquals("path " + n + " at zoom " + zoom,
+                        douglasPeucker(coords, PathPyramid.toleranceForZoom(zoom)), pyramid.getCoordinates(zoom), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testLevelsShrinkAsZoomFalls() {
+        double[] coords = randomWalk(new Random(16), 1000);
+        PathPyramid pyramid = new PathPyramid(coords);
+        int previous = coords.length;
+        for (int zoom = PathPyramid.MAX_ZOOM; zoom >= PathPyramid.MIN_ZOOM; zoom--) {
+            int length = pyramid.getCoordinates(zoom).length;
+            assertTrue(length <= previous);
+            previous = length;
+        }
+        assertArrayEquals(pyramid.getCoordinates(PathPyramid.MIN_ZOOM), pyramid.getCoordinates(0), 0);
+    }
+
+    @Test
+    public void testEndsAlwaysKept() {
+        // a straight line keeps only its ends
+        double[] coords = {49.2, -123.2, 49.21, -123.19, 49.22, -123.18, 49.23, -123.17};
+        PathPyramid pyramid = new PathPyramid(coords);
+        assertArrayEquals(new double[] {49.2, -123.2, 49.23, -123.17},
+                pyramid.getCoordinates(PathPyramid.MAX_ZOOM), 0);
+        // as does a path back to where it started
+        double[] loop = {49.2, -123.2, 49.2, -123.2};
+        assertArrayEquals(loop, new PathPyramid(loop).getCoordinates(PathPyramid.MIN_ZOOM), 0);
+    }
+
+    @Test
+    public void testEmptyAndSinglePoint() {
+        assertEquals(0, new PathPyramid(new double[0]).getCoordinates(PathPyramid.MIN_ZOOM).length);
+        double[] point = {49.2, -123.2};
+        assertArrayEquals(point, new PathPyramid(point).getCoordinates(PathPyramid.MIN_ZOOM), 0);
+    }
+
+    @Test
+    public void testBuildsCounted() {
+        PathPyramid.clearCounts();
+        new PathPyramid(randomWalk(new Random(17), 100));
+        new PathPyramid(randomWalk(new Random(18), 100));
+        assertEquals(2, PathPyramid.getNumBuilt());
+        PathPyramid.clearCounts();
+        assertEquals(0, PathPyramid.getNumBuilt());
+        assertEquals(0, PathPyramid.getBuildTime());
+    }
+
+    // a walk around Vancouver in steps of up to a few hundred metres, with some repeated points
+    private static double[] randomWalk(Random random, int numPoints) {
+        double[] coords = new double[numPoints * 2];
+        double lat = 49.25;
+        double lon = -123.1;
+        for (int i = 0; i < numPoints; i++) {
+            if (random.nextInt(20) != 0) {
+                lat += (random.nextDouble() - 0.5) * 0.004;
+                lon += (random.nextDouble() - 0.5) * 0.006;
+            }
+            coords[2 * i] = lat;
+            coords[2 * i + 1] = lon;
+        }
+        return coords;
+    }
+
+    // the textbook recursive Douglas-Peucker, on the points projected onto world coordinates
+    private static double[] douglasPeucker(double[] coords, double tolerance) {
+        int numPoints = coords.length / 2;
+        int[] world = WebMercator.project(coords);
+        boolean[] kept = new boolean[numPoints];
+        kept[0] = true;
+        kept[numPoints - 1] = true;
+        simplify(world, 0, numPoints - 1, tolerance * tolerance, kept);
+
+        double[] result = new double[coords.length];
+        int j = 0;
+        for (int i = 0; i < numPoints; i++) {
+            if (kept[i]) {
+                result[j++] = coords[2 * i];
+                result[j++] = coords[2 * i + 1];
+            }
+        }
+        return Arrays.copyOf(result, j);
+    }
+
+    private static void simplify(int[] world, int first, int last, double squaredTolerance, boolean[] kept) {
+        int farthest = -1;
+        double farthestDistance = -1;
+        for (int i = first + 1; i < last; i++) {
+            double d = squaredDistanceToSegment(world, i, first, last);
+            if (d > farthestDistance) {
+                farthest = i;
+                farthestDistance = d;
+            }
+        }
+        if (farthest >= 0 && farthestDistance > squaredTolerance) {
+            kept[farthest] = true;
+            simplify(world, first, farthest, squaredTolerance, kept);
+            simplify(world, farthest, last, squaredTolerance, kept);
+        }
+    }
+
+    private static double squaredDistanceToSegment(int[] world, int point, int first, int last) {
+        double x = world[2 * point];
+        double y = world[2 * point + 1];
+        double x0 = world[2 * first];
+        double y0 = world[2 * first + 1];
+        double dx = world[2 * last] - x0;
+        double dy = world[2 * last + 1] - y0;
+
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((x - x0) * dx + (y - y0) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x - (x0 + t * dx);
+        double ey = y - (y0 + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
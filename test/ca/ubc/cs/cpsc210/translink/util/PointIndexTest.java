@@ -0,0 +1,136 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests that the range and within queries of a k-d tree find exactly the points that a linear
+ * scan finds, for random points with some repeated, in random rectangles and circles
+ */
+public class PointIndexTest {
+    private static final int QUERIES = 3000;
+
+    @Test
+    public void testSortKeepsPointsWithTheirIds() {
+        Random random = new Random(16);
+        int n = 1000;
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        randomPoints(random, xs, ys, n);
+        int[] sortedXs = xs.clone();
+        int[] sortedYs = ys.clone();
+        int[] ids = identity(n);
+        PointIndex.sort(sortedXs, sortedYs, ids, n);
+
+        int[] seen = ids.clone();
+        Arrays.sort(seen);
+        assertArrayEquals(identity(n), seen);
+        for (int i = 0; i < n; i++) {
+            assertEquals(xs[ids[i]], sortedXs[i]);
+            assertEquals(ys[ids[i]], sortedYs[i]);
+        }
+    }
+
+    @Test
+    public void testRangeMatchesLinearScan() {
+        Random random = new Random(17);
+        IntList found = new IntList();
+        for (int q = 0; q < QUERIES; q++) {
+            int n = random.nextInt(500);
+            int[] xs = new int[n];
+            int[] ys = new int[n];
+            randomPoints(random, xs, ys, n);
+            PointIndex.sort(xs, ys, identity(n), n);
+
+            long minX = random.nextInt(1 << 20) - 1000;
+            long minY = random.nextInt(1 << 20) - 1000;
+            long maxX = minX + random.nextInt(1 << 19);
+            long maxY = minY + random.nextInt(1 << 19);
+            PointIndex.range(xs, ys, n, minX, minY, maxX, maxY, found);
+
+            boolean[] expected = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                expected[i] = xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY;
+            }
+            assertFound("query " + q, expected, found);
+        }
+    }
+
+    @Test
+    public void testWithinMatchesLinearScan() {
+        Random random = new Random(18);
+        IntList found = new IntList();
+        for (int q = 0; q < QUERIES; q++) {
+            int n = random.nextInt(500);
+            int[] xs = new int[n];
+            int[] ys = new int[n];
+            randomPoints(random, xs, ys, n);
+            PointIndex.sort(xs, ys, identity(n), n);
+
+            // centred on a point of the tree as often as not, as when clustering
+            int x = n > 0 && random.nextBoolean() ? xs[random.nextInt(n)] : random.nextInt(1 << 20);
+            int y = n > 0 && random.nextBoolean() ? ys[random.nextInt(n)] : random.nextInt(1 << 20);
+            long r = random.nextInt(1 << 18);
+            PointIndex.within(xs, ys, n, x, y, r, found);
+
+            boolean[] expected = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                long dx = xs[i] - x;
+                long dy = ys[i] - y;
+                expected[i] = dx * dx + dy * dy <= r * r;
+            }
+            assertFound("query " + q, expected, found);
+        }
+    }
+
+    @Test
+    public void testWholeWorld() {
+        int n = 4;
+        int[] xs = {0, WebMercator.WORLD_SIZE, 0, WebMercator.WORLD_SIZE};
+        int[] ys = {0, 0, WebMercator.WORLD_SIZE, WebMercator.WORLD_SIZE};
+        PointIndex.sort(xs, ys, identity(n), n);
+        IntList found = new IntList();
+        PointIndex.range(xs, ys, n, 0, 0, WebMercator.WORLD_SIZE, WebMercator.WORLD_SIZE, found);
+        assertEquals(n, found.size());
+        PointIndex.within(xs, ys, n, 0, 0, WebMercator.WORLD_SIZE, found);
+        assertEquals(3, found.size());
+    }
+
+    // points in a square of side 2^20, a tenth of them repeating an earlier point
+    private static void randomPoints(Random random, int[] xs, int[] ys, int n) {
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && random.nextInt(10) == 0) {
+                int j = random.nextInt(i);
+                xs[i] = xs[j];
+                ys[i] = ys[j];
+            } else {
+                xs[i] = random.nextInt(1 << 20);
+                ys[i] = random.nextInt(1 << 20);
+            }
+        }
+    }
+
+    private static int[] identity(int n) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    // each expected point is found exactly once, and no other point is found
+    private static void assertFound(String message, boolean[] expected, IntList found) {
+        boolean[] actual = new boolean[expected.length];
+        for (int i = 0; i < found.size(); i++) {
+            assertFalse(message, actual[found.get(i)]);
+            actual[found.get(i)] = true;
+        }
+        assertArrayEquals(message, expected, actual);
+    }
+}
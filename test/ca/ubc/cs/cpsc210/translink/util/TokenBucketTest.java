@@ -0,0 +1,148 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the token bucket on a fake clock, which moves only when told to or slept on
+ */
+public class TokenBucketTest {
+    private static final long NANOS_PER_MS = 1000000L;
+    private static final int CAPACITY = 3;
+    // a token every 500 ms
+    private static final double RATE = 2;
+
+    private FakeClock clock;
+    private TokenBucket bucket;
+
+    /**
+     * A clock that moves only when told to, or when slept on; sleeping while interrupted throws
+     */
+    private static class FakeClock implements Clock {
+        private long now;
+        private List<Long> sleeps = new ArrayList<>();
+
+        @Override
+        public synchronized long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public synchronized void sleep(long nanos) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            sleeps.add(nanos / NANOS_PER_MS);
+            now += nanos;
+        }
+
+        synchronized void advance(long ms) {
+            now += ms * NANOS_PER_MS;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        bucket = new TokenBucket(CAPACITY, RATE, clock);
+    }
+
+    @Test
+    public void testBurstUpToCapacity() {
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+        assertEquals(CAPACITY, bucket.getAcquired());
+        assertEquals(0, bucket.getWaited());
+    }
+
+    @Test
+    public void testRefilledAtRate() {
+        drain();
+        clock.advance(499);
+        assertFalse(bucket.tryAcquire());
+        clock.advance(1);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testRefillCappedAtCapacity() {
+        drain();
+        clock.advance(60000);
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testAcquireSleepsOnClock() throws InterruptedException {
+        drain();
+        clock.advance(100);
+        bucket.acquire();
+        assertEquals(Arrays.asList(400L), clock.sleeps);
+        assertEquals(500 * NANOS_PER_MS, clock.nanoTime());
+        assertEquals(1, bucket.getWaited());
+    }
+
+    @Test
+    public void testAcquireWithTokenHeldDoesNotSleep() throws InterruptedException {
+        bucket.acquire();
+        assertTrue(clock.sleeps.isEmpty());
+        assertEquals(0, bucket.getWaited());
+    }
+
+    @Test
+    public void testReservationsQueue() {
+        drain();
+        assertEquals(500 * NANOS_PER_MS, bucket.reserve());
+        assertEquals(1000 * NANOS_PER_MS, bucket.reserve());
+        assertEquals(1500 * NANOS_PER_MS, bucket.reserve());
+        assertEquals(3, bucket.getWaited());
+    }
+
+    @Test
+    public void testRateNeverExceeded() throws InterruptedException {
+        int acquires = 50;
+        for (int i = 0; i < acquires; i++) {
+            bucket.acquire();
+        }
+        // the burst is free, and each token after it takes 500 ms
+        assertEquals((acquires - CAPACITY) * 500 * NANOS_PER_MS, clock.nanoTime());
+        assertEquals(acquires, bucket.getAcquired());
+        assertEquals(acquires - CAPACITY, bucket.getWaited());
+    }
+
+    @Test
+    public void testInterruptedAcquireRefunded() {
+        drain();
+        Thread.currentThread().interrupt();
+        try {
+            bucket.acquire();
+            fail("acquire not interrupted");
+        } catch (InterruptedException e) {
+            // expected
+        }
+        assertEquals(CAPACITY, bucket.getAcquired());
+        assertEquals(0, bucket.getWaited());
+        // the next waiter waits for the next token, not the one after
+        assertEquals(500 * NANOS_PER_MS, bucket.reserve());
+    }
+
+    private void drain() {
+        while (bucket.tryAcquire()) {
+            // take every token held
+        }
+    }
+}
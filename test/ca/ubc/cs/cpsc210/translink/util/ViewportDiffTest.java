@@ -0,0 +1,89 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the items entering and leaving a viewport as it moves
+ */
+public class ViewportDiffTest {
+    private ViewportDiff<String> diff;
+    private Set<String> shown;
+
+    @Before
+    public void setUp() {
+        diff = new ViewportDiff<>();
+        shown = new HashSet<>();
+    }
+
+    @Test
+    public void testEnteringLeavingAndStaying() {
+        shown.addAll(Arrays.asList("a", "b", "c"));
+        diff.compute(shown, Arrays.asList("b", "d", "c", "e"));
+        assertEquals(Arrays.asList("d", "e"), diff.getEntering());
+        assertEquals(Collections.singletonList("a"), diff.getLeaving());
+        // b and c stay, so are in neither list
+        apply();
+        assertEquals(new HashSet<>(Arrays.asList("b", "c", "d", "e")), shown);
+    }
+
+    @Test
+    public void testNothingShown() {
+        diff.compute(shown, Arrays.asList("a", "b"));
+        assertEquals(Arrays.asList("a", "b"), diff.getEntering());
+        assertTrue(diff.getLeaving().isEmpty());
+    }
+
+    @Test
+    public void testNothingVisible() {
+        shown.addAll(Arrays.asList("a", "b"));
+        diff.compute(shown, Collections.<String>emptyList());
+        assertTrue(diff.getEntering().isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(diff.getLeaving()));
+    }
+
+    @Test
+    public void testRepeatsInNowVisible() {
+        shown.add("a");
+        diff.compute(shown, Arrays.asList("b", "a", "b", "a", "c", "b"));
+        assertEquals(Arrays.asList("b", "c"), diff.getEntering());
+        assertTrue(diff.getLeaving().isEmpty());
+    }
+
+    @Test
+    public void testListsReusedAcrossCalls() {
+        shown.addAll(Arrays.asList("a", "b"));
+        diff.compute(shown, Arrays.asList("b", "c"));
+        List<String> entering = diff.getEntering();
+        List<String> leaving = diff.getLeaving();
+        apply();
+
+        diff.compute(shown, Arrays.asList("c", "d"));
+        assertSame(entering, diff.getEntering());
+        assertSame(leaving, diff.getLeaving());
+        // replaced, not added to
+        assertEquals(Collections.singletonList("d"), entering);
+        assertEquals(Collections.singletonList("b"), leaving);
+        apply();
+
+        diff.compute(shown, Arrays.asList("c", "d"));
+        assertTrue(entering.isEmpty());
+        assertTrue(leaving.isEmpty());
+    }
+
+    // apply the changes to the items shown, as the caller does
+    private void apply() {
+        shown.removeAll(diff.getLeaving());
+        shown.addAll(diff.getEntering());
+    }
+}
@@ -0,0 +1,249 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the viewport worker on an executor that runs its tasks only when told to, with a
+ * fake clock
+ */
+public class ViewportWorkerTest {
+    private ManualExecutor executor;
+    private FakeClock clock;
+    private ViewportWorker<Integer, String> worker;
+    // viewports computed and results published, in order
+    private List<Integer> computed;
+    private List<String> published;
+    // run during the next computation, as if the user moved the map meanwhile
+    private Runnable duringCompute;
+
+    /**
+     * An executor that queues its tasks until they are run one at a time
+     */
+    private static class ManualExecutor implements Executor {
+        private final Queue<Runnable> tasks = new LinkedList<>();
+        private boolean rejecting;
+
+        @Override
+        public void execute(Runnable task) {
+            if (rejecting) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(task);
+        }
+
+        int size() {
+            return tasks.size();
+        }
+
+        void runNext() {
+            tasks.remove().run();
+        }
+    }
+
+    /**
+     * A clock that moves only when told to
+     */
+    private static class FakeClock implements Clock {
+        private long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void sleep(long nanos) {
+            advance(nanos);
+        }
+
+        void advance(long nanos) {
+            now += nanos;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = new ManualExecutor();
+        clock = new FakeClock();
+        computed = new ArrayList<>();
+        published = new ArrayList<>();
+        worker = new ViewportWorker<>(new ViewportWorker.Computation<Integer, String>() {
+            @Override
+            public String compute(Integer viewport, long generation) {
+                computed.add(viewport);
+                clock.advance(1000);
+                if (duringCompute != null) {
+                    Runnable during = duringCompute;
+                    duringCompute = null;
+                    during.run();
+                }
+                return viewport < 0 ? null : "result " + viewport;
+            }
+        }, executor, new ViewportWorker.Listener<String>() {
+            @Override
+            public void onResult(String result, long generation) {
+                published.add(result);
+            }
+        }, clock);
+    }
+
+    @Test
+    public void testSingleViewportPublished() {
+        clock.advance(500);
+        long generation = worker.submit(1);
+        assertEquals(1, executor.size());
+        assertTrue(published.isEmpty());
+        executor.runNext();
+
+        assertEquals(Arrays.asList("result 1"), published);
+        assertTrue(worker.isCurrent(generation));
+        assertEquals(1, worker.getNumComputed());
+        assertEquals(0, worker.getNumDropped());
+        assertEquals(0, worker.getNumSkipped());
+        assertEquals(1000, worker.getLastComputeNanos());
+        assertEquals(1000, worker.getLastLatencyNanos());
+        assertEquals(0, executor.size());
+    }
+
+    @Test
+    public void testSubmitsDuringComputationQueueOneTask() {
+        worker.submit(0);
+        duringCompute = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 50; i++) {
+                    worker.submit(i);
+                }
+                // nothing more is handed to the executor while the computation runs
+                assertEquals(0, executor.size());
+            }
+        };
+        executor.runNext();
+        assertEquals(1, executor.size());
+        executor.runNext();
+        assertEquals(0, executor.size());
+
+        assertEquals(Arrays.asList(0, 50), computed);
+        assertEquals(Arrays.asList("result 50"), published);
+        assertEquals(51, worker.getNumSubmitted());
+        assertEquals(49, worker.getNumSkipped());
+        assertEquals(2, worker.getNumComputed());
+        assertEquals(1, worker.getNumDropped());
+    }
+
+    @Test
+    public void testResultSupersededWhileComputedDropped() {
+        worker.submit(1);
+        duringCompute = new Runnable() {
+            @Override
+            public void run() {
+                clock.advance(200);
+                worker.submit(2);
+            }
+        };
+        executor.runNext();
+        assertTrue(published.isEmpty());
+        assertEquals(1, worker.getNumDropped());
+
+        executor.runNext();
+        assertEquals(Arrays.asList("result 2"), published);
+        // submitted as the first finished, so its latency is its own computation
+        assertEquals(1000, worker.getLastLatencyNanos());
+        assertEquals(1, worker.getNumDropped());
+        assertEquals(2, worker.getNumComputed());
+    }
+
+    @Test
+    public void testSupersededBeforeStartSkipped() {
+        worker.submit(1);
+        long generation = worker.submit(2);
+        assertFalse(worker.isCurrent(generation - 1));
+        // the first is already with the executor, and the second waits for it
+        assertEquals(1, executor.size());
+
+        executor.runNext();
+        assertTrue(computed.isEmpty());
+        assertEquals(1, worker.getNumSkipped());
+        assertEquals(0, worker.getNumComputed());
+        assertEquals(0, worker.getNumDropped());
+
+        executor.runNext();
+        assertEquals(Arrays.asList(2), computed);
+        assertEquals(Arrays.asList("result 2"), published);
+        assertEquals(1, worker.getNumSkipped());
+        assertEquals(1, worker.getNumComputed());
+        assertEquals(0, worker.getNumDropped());
+    }
+
+    @Test
+    public void testOnlyLatestPublished() {
+        for (int round = 0; round < 5; round++) {
+            worker.submit(10 * round);
+            worker.submit(10 * round + 1);
+            worker.submit(10 * round + 2);
+            while (executor.size() > 0) {
+                executor.runNext();
+            }
+        }
+        assertEquals(Arrays.asList("result 2", "result 12", "result 22", "result 32", "result 42"), published);
+        assertEquals(15, worker.getNumSubmitted());
+        assertEquals(worker.getNumSubmitted(), worker.getNumSkipped() + worker.getNumComputed());
+    }
+
+    @Test
+    public void testNoResultNotPublished() {
+        worker.submit(-1);
+        executor.runNext();
+        assertTrue(published.isEmpty());
+        assertEquals(1, worker.getNumComputed());
+        assertEquals(0, worker.getNumDropped());
+    }
+
+    @Test
+    public void testFailedComputationDoesNotStopWorker() {
+        ViewportWorker<Integer, String> failing = new ViewportWorker<>(new ViewportWorker.Computation<Integer, String>() {
+            @Override
+            public String compute(Integer viewport, long generation) {
+                if (viewport == 1) {
+                    throw new IllegalStateException("test failure");
+                }
+                return "result " + viewport;
+            }
+        }, executor, new ViewportWorker.Listener<String>() {
+            @Override
+            public void onResult(String result, long generation) {
+                published.add(result);
+            }
+        }, clock);
+        failing.submit(1);
+        executor.runNext();
+        failing.submit(2);
+        executor.runNext();
+        assertEquals(Arrays.asList("result 2"), published);
+        assertEquals(2, failing.getNumComputed());
+    }
+
+    @Test
+    public void testRejectedViewportRetriedOnNextSubmit() {
+        executor.rejecting = true;
+        worker.submit(1);
+        assertEquals(0, executor.size());
+        executor.rejecting = false;
+        worker.submit(2);
+        executor.runNext();
+        assertEquals(Arrays.asList("result 2"), published);
+    }
+}
@@ -0,0 +1,173 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of building runs in the buffers of a VisibleRunBuilder
+ */
+public class VisibleRunBuilderTest {
+    // (0,0), (1,10), (2,20), ...
+    private static double[] path(int numPoints) {
+        double[] coords = new double[numPoints * 2];
+        for (int i = 0; i < numPoints; i++) {
+            coords[2 * i] = i;
+            coords[2 * i + 1] = 10 * i;
+        }
+        return coords;
+    }
+
+    @Test
+    public void testAddRun() {
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        runs.addRun(path(10), 2, 5);
+        runs.addRun(path(10), 7, 10);
+        assertEquals(2, runs.getNumRuns());
+        assertEquals(6, runs.getNumPoints());
+        assertRun(runs, 0, 2, 3);
+        assertRun(runs, 1, 7, 3);
+    }
+
+    @Test
+    public void testShortRunNotAdded() {
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        runs.addRun(path(10), 2, 3);
+        runs.addRun(path(10), 4, 4);
+        assertEquals(0, runs.getNumRuns());
+        assertEquals(0, runs.getNumPoints());
+        runs.addRun(path(10), 4, 6);
+        runs.addRun(path(10), 8, 9);
+        assertEquals(1, runs.getNumRuns());
+        assertEquals(2, runs.getNumPoints());
+        assertRun(runs, 0, 4, 2);
+    }
+
+    @Test
+    public void testPointByPoint() {
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        runs.beginRun();
+        runs.addPoint(0, 0);
+        runs.addPoint(1, 10);
+        runs.addPoint(2, 20);
+        runs.endRun();
+        assertEquals(1, runs.getNumRuns());
+        assertRun(runs, 0, 0, 3);
+    }
+
+    @Test
+    public void testShortPointByPointRunDropped() {
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        runs.addRun(path(10), 0, 3);
+        runs.beginRun();
+        runs.addPoint(5, 50);
+        runs.endRun();
+        runs.beginRun();
+        runs.endRun();
+        assertEquals(1, runs.getNumRuns());
+        assertEquals(3, runs.getNumPoints());
+
+        // the points of the dropped runs are reused
+        runs.beginRun();
+        runs.addPoint(6, 60);
+        runs.addPoint(7, 70);
+        runs.endRun();
+        assertEquals(2, runs.getNumRuns());
+        assertEquals(5, runs.getNumPoints());
+        assertRun(runs, 0, 0, 3);
+        assertRun(runs, 1, 6, 2);
+    }
+
+    @Test
+    public void testGrowth() {
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        double[] coords = path(1000);
+        // more runs, and more points, than the buffers first hold
+        for (int i = 0; i + 3 <= 1000; i += 4) {
+            runs.addRun(coords, i, i + 3);
+        }
+        runs.beginRun();
+        for (int i = 0; i < 600; i++) {
+            runs.addPoint(i, 10 * i);
+        }
+        runs.endRun();
+        assertEquals(251, runs.getNumRuns());
+        assertEquals(750 + 600, runs.getNumPoints());
+        for (int r = 0; r < 250; r++) {
+            assertRun(runs, r, 4 * r, 3);
+        }
+        assertRun(runs, 250, 0, 600);
+    }
+
+    @Test
+    public void testClearReused() {
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        runs.addRun(path(500), 0, 500);
+        runs.clear();
+        assertEquals(0, runs.getNumRuns());
+        assertEquals(0, runs.getNumPoints());
+        runs.addRun(path(10), 3, 6);
+        assertEquals(1, runs.getNumRuns());
+        assertEquals(3, runs.getNumPoints());
+        assertRun(runs, 0, 3, 3);
+    }
+
+    @Test
+    public void testVisibleRunsClipped() {
+        VisibleRunBuilder runs = new VisibleRunBuilder();
+        // a path from (0,0) to (9,90) through a rectangle from latitude 2.5 to 4.5
+        double[] coords = path(10);
+        runs.addVisibleRuns(coords, new PathIndex(coords), 4.5, -100, 2.5, 100);
+        assertEquals(1, runs.getNumRuns());
+        assertEquals(4, runs.getRunLength(0));
+        assertEquals(2.5, runs.getLatitude(0, 0), 1e-12);
+        assertEquals(25, runs.getLongitude(0, 0), 1e-12);
+        assertEquals(3, runs.getLatitude(0, 1), 0);
+        assertEquals(4, runs.getLatitude(0, 2), 0);
+        assertEquals(4.5, runs.getLatitude(0, 3), 1e-12);
+        assertEquals(45, runs.getLongitude(0, 3), 1e-12);
+    }
+
+    @Test
+    public void testIndexedRunsMatchWholePathClipped() {
+        Random random = new Random(13);
+        VisibleRunBuilder indexed = new VisibleRunBuilder();
+        VisibleRunBuilder whole = new VisibleRunBuilder();
+        for (int trial = 0; trial < 3000; trial++) {
+            // a random walk, which leaves and re-enters the rectangle
+            double[] coords = new double[2 * (2 + random.nextInt(300))];
+            for (int i = 2; i < coords.length; i += 2) {
+                coords[i] = coords[i - 2] + random.nextGaussian();
+                coords[i + 1] = coords[i - 1] + random.nextGaussian();
+            }
+            double lat = random.nextGaussian() * 5;
+            double lon = random.nextGaussian() * 5;
+            double half = random.nextDouble() * 5;
+
+            indexed.clear();
+            indexed.addVisibleRuns(coords, new PathIndex(coords), lat + half, lon - half, lat - half, lon + half);
+            whole.clear();
+            Geometry.clipPolyline(lat + half, lon - half, lat - half, lon + half, coords, 0, coords.length / 2, whole,
+                    new double[2]);
+            assertEquals(whole.getNumRuns(), indexed.getNumRuns());
+            for (int r = 0; r < whole.getNumRuns(); r++) {
+                assertEquals(whole.getRunLength(r), indexed.getRunLength(r));
+                for (int i = 0; i < whole.getRunLength(r); i++) {
+                    assertEquals(whole.getLatitude(r, i), indexed.getLatitude(r, i), 0);
+                    assertEquals(whole.getLongitude(r, i), indexed.getLongitude(r, i), 0);
+                }
+            }
+        }
+    }
+
+    // the run holds the given number of points of path(), from the given point on
+    private static void assertRun(VisibleRunBuilder runs, int run, int from, int length) {
+        assertEquals(length, runs.getRunLength(run));
+        for (int i = 0; i < length; i++) {
+            assertEquals(from + i, runs.getLatitude(run, i), 0);
+            assertEquals(10 * (from + i), runs.getLongitude(run, i), 0);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the projection onto world coordinates: its round trip, its edges and that it keeps
+ * the order of points
+ */
+public class WebMercatorTest {
+    // half the diagonal of a world unit at the equator, where units are largest, in metres
+    private static final double MAX_ERROR = 0.027;
+
+    @Test
+    public void testRoundTripWithinHalfAUnit() {
+        Random random = new Random(19);
+        double worst = 0;
+        for (int i = 0; i < 100000; i++) {
+            double lat = (random.nextDouble() * 2 - 1) * WebMercator.MAX_LATITUDE;
+            double lon = (random.nextDouble() * 2 - 1) * 180;
+            int x = WebMercator.lonToX(lon);
+            int y = WebMercator.latToY(lat);
+            double error = SphericalGeometry.distanceBetween(lat, lon, WebMercator.yToLat(y), WebMercator.xToLon(x));
+            worst = Math.max(worst, error);
+            // and back again to the same unit
+            assertEquals(x, WebMercator.lonToX(WebMercator.xToLon(x)));
+            assertEquals(y, WebMercator.latToY(WebMercator.yToLat(y)));
+        }
+        assertTrue("worst error " + worst + " m", worst < MAX_ERROR);
+    }
+
+    @Test
+    public void testEdgesOfTheWorld() {
+        assertEquals(0, WebMercator.lonToX(-180));
+        assertEquals(WebMercator.WORLD_SIZE / 2, WebMercator.lonToX(0));
+        assertEquals(WebMercator.WORLD_SIZE - 1, WebMercator.lonToX(180));
+        assertEquals(0, WebMercator.latToY(WebMercator.MAX_LATITUDE));
+        assertEquals(WebMercator.WORLD_SIZE / 2, WebMercator.latToY(0));
+        assertEquals(WebMercator.WORLD_SIZE - 1, WebMercator.latToY(-WebMercator.MAX_LATITUDE));
+    }
+
+    @Test
+    public void testClampedBeyondTheEdges() {
+        assertEquals(0, WebMercator.lonToX(-200));
+        assertEquals(WebMercator.WORLD_SIZE - 1, WebMercator.lonToX(200));
+        assertEquals(0, WebMercator.latToY(90));
+        assertEquals(WebMercator.WORLD_SIZE - 1, WebMercator.latToY(-90));
+        assertFalse(WebMercator.canProject(89, 0));
+        assertFalse(WebMercator.canProject(0, 181));
+        assertTrue(WebMercator.canProject(-WebMercator.MAX_LATITUDE, -180));
+    }
+
+    @Test
+    public void testMonotonic() {
+        int lastX = -1;
+        for (double lon = -180; lon <= 180; lon += 0.001) {
+            int x = WebMercator.lonToX(lon);
+            // a thousandth of a degree is hundreds of units
+            assertTrue(x > lastX);
+            lastX = x;
+        }
+        int lastY = WebMercator.WORLD_SIZE;
+        for (double lat = -WebMercator.MAX_LATITUDE; lat <= WebMercator.MAX_LATITUDE; lat += 0.001) {
+            int y = WebMercator.latToY(lat);
+            assertTrue(y < lastY);
+            lastY = y;
+        }
+    }
+
+    @Test
+    public void testMonotonicAtUnitScale() {
+        // steps of under a unit around Vancouver never move backwards
+        int lastX = WebMercator.lonToX(-123.2);
+        int lastY = WebMercator.latToY(49.2);
+        for (int i = 1; i < 100000; i++) {
+            int x = WebMercator.lonToX(-123.2 + i * 1e-7);
+            int y = WebMercator.latToY(49.2 + i * 1e-7);
+            assertTrue(x >= lastX && x <= lastX + 1);
+            assertTrue(y <= lastY && y >= lastY - 1);
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    @Test
+    public void testProjectPacked() {
+        double[] coords = {49.26, -123.25, 0, 0};
+        int[] world = WebMercator.project(coords);
+        assertEquals(WebMercator.lonToX(-123.25), world[0]);
+        assertEquals(WebMercator.latToY(49.26), world[1]);
+        assertEquals(WebMercator.WORLD_SIZE / 2, world[2]);
+        assertEquals(WebMercator.WORLD_SIZE / 2, world[3]);
+    }
+
+    @Test
+    public void testPixelSize() {
+        assertEquals(1, WebMercator.pixelSize(WebMercator.MAX_ZOOM));
+        assertEquals(WebMercator.WORLD_SIZE, WebMercator.pixelSize(0) * WebMercator.TILE_SIZE);
+    }
+}